@@ -0,0 +1,515 @@
+package com.enhanced.burpgpt.loadtest;
+
+import com.enhanced.burpgpt.Config;
+import com.enhanced.burpgpt.analysis.ChunkMapReduce;
+import com.enhanced.burpgpt.analysis.ContentReducer;
+import com.enhanced.burpgpt.analysis.Finding;
+import com.enhanced.burpgpt.analysis.PromptTemplate;
+import com.enhanced.burpgpt.analysis.StructuredChunker;
+import com.enhanced.burpgpt.analysis.Tokenizer;
+import com.enhanced.burpgpt.api.Cassette;
+import com.enhanced.burpgpt.api.ChatRequestBody;
+import com.enhanced.burpgpt.api.OpenAIProvider;
+import com.enhanced.burpgpt.api.ToolExecutor;
+import com.enhanced.burpgpt.mcp.MCPClient;
+import com.enhanced.burpgpt.mcp.MCPManager;
+import com.enhanced.burpgpt.metrics.Histogram;
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
+import com.enhanced.burpgpt.ui.MarkdownRenderer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// End-to-end load harness against the local mock servers. Runs concurrent analyses through
+// OpenAIProvider, the tool loop with MCP tools, raw MCPClient calls and the chunked pipeline,
+// then prints throughput and latency percentiles and writes a JSON report.
+//
+//   gradle loadTest -PloadTestArgs="--concurrency 16 --requests 200 --max-p95-ms 1500"
+//   gradle loadTest -PloadTestArgs="--scenario tools --record build/loadtest/session.cassette.gz"
+//   gradle loadTest -PloadTestArgs="--scenario replay --cassette build/loadtest/session.cassette.gz"
+//   gradle loadTest -PloadTestArgs="--scenario body --body-kb 256 --iterations 500"
+//   gradle loadTest -PloadTestArgs="--scenario prompt --body-kb 1024 --iterations 500"
+//   gradle loadTest -PloadTestArgs="--scenario markdown --body-kb 100 --iterations 50"
+//
+// With --max-p95-ms set, the run fails if any scenario's p95 exceeds it or any request errors.
+public class LoadTest {
+    private static final String SYSTEM_PROMPT = "You are a security analyst. Review the HTTP traffic for vulnerabilities.";
+
+    private final Map<String, String> options = new HashMap<>();
+    private final Map<String, Object> report = new LinkedHashMap<>();
+    private final MockOpenAIServer llm = new MockOpenAIServer();
+    private boolean failed = false;
+
+    public static void main(String[] args) throws Exception {
+        LoadTest test = new LoadTest();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            test.options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int exit = test.run() ? 0 : 1;
+        System.exit(exit);
+    }
+
+    private String opt(String name, String def) {
+        return options.getOrDefault(name, def);
+    }
+
+    private int intOpt(String name, int def) {
+        return Integer.parseInt(opt(name, String.valueOf(def)));
+    }
+
+    private boolean run() throws Exception {
+        // Defaults only; never read or write the user's ~/.burpgpt_config.json
+        Config.responseCacheEnabled = false;
+        Config.streamingEnabled = Boolean.parseBoolean(opt("stream", "true"));
+        Config.model = opt("model", "gpt-4o-mini");
+
+        llm.firstTokenLatencyMs = intOpt("latency-ms", 200);
+        llm.chunkDelayMs = intOpt("chunk-delay-ms", 5);
+        llm.answerWords = intOpt("answer-words", 200);
+        llm.rateLimitEvery = intOpt("rate-limit-every", 0);
+        llm.start(0);
+        Config.apiUrl = llm.getUrl();
+        Config.apiKey = "mock-key";
+
+        String scenario = opt("scenario", "all");
+        System.out.println("Load test: scenario=" + scenario + " concurrency=" + intOpt("concurrency", 8)
+            + " requests=" + intOpt("requests", 64) + " stream=" + Config.streamingEnabled);
+        if (options.containsKey("record")) {
+            Cassette.startRecording(new File(opt("record", "")));
+        }
+        try {
+            if (scenario.equals("replay")) runReplay();
+            if (scenario.equals("body")) runRequestBody();
+            if (scenario.equals("prompt")) runPrompt();
+            if (scenario.equals("markdown")) runMarkdown();
+            if (scenario.equals("all") || scenario.equals("llm")) runLlm();
+            if (scenario.equals("all") || scenario.equals("tools")) runTools();
+            if (scenario.equals("all") || scenario.equals("mcp")) runMcp();
+            if (scenario.equals("all") || scenario.equals("chunks")) runChunks();
+        } finally {
+            Cassette.close();
+            MCPManager.stopAll();
+            llm.stop();
+        }
+
+        report.put("llmRequests", llm.getRequestCount());
+        report.put("llmRateLimited", llm.getRateLimitedCount());
+        report.put("metrics", MetricsRegistry.snapshot());
+        File out = new File(opt("report", "build/loadtest/report.json"));
+        out.getAbsoluteFile().getParentFile().mkdirs();
+        Files.writeString(out.toPath(), new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+        System.out.println("Mock API served " + llm.getRequestCount() + " requests (" + llm.getRateLimitedCount() + " rate limited)");
+        System.out.println("Report written to " + out.getAbsolutePath());
+        return !failed;
+    }
+
+    private void runLlm() throws Exception {
+        llm.toolScript = new ArrayList<>();
+        AtomicInteger seq = new AtomicInteger(0);
+        measure("llm", intOpt("requests", 64), () -> {
+            OpenAIProvider provider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, null);
+            return provider.sendRequest(SYSTEM_PROMPT, "Analyze request #" + seq.incrementAndGet() + "\n" + sampleTraffic(2048), 2000);
+        });
+    }
+
+    // Agent loop with MCP tool calls: each analysis makes --tool-calls MCP calls before answering
+    private void runTools() throws Exception {
+        startMcpServers();
+        List<String> script = new ArrayList<>();
+        for (int i = 0; i < intOpt("tool-calls", 2); i++) script.add("mock_lookup");
+        llm.toolScript = script;
+
+        AtomicInteger seq = new AtomicInteger(0);
+        measure("tools", intOpt("requests", 64), () -> {
+            OpenAIProvider provider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, null);
+            return provider.sendRequest(SYSTEM_PROMPT, "Investigate target #" + seq.incrementAndGet() + " using tools.", 2000);
+        });
+        llm.toolScript = new ArrayList<>();
+    }
+
+    private void startMcpServers() throws InterruptedException {
+        ToolExecutor.initialize(null);
+        Config.mcpEnabled = true;
+        Config.mcpServers = new ArrayList<>();
+        Config.mcpServers.add(new Config.MCPServerConfig("mock", stdioCommand()));
+        CountDownLatch ready = new CountDownLatch(1);
+        MCPManager.reloadAsync(ready::countDown);
+        ready.await(30, TimeUnit.SECONDS);
+    }
+
+    // Raw MCPClient round trips over both transports
+    private void runMcp() throws Exception {
+        int requests = intOpt("requests", 64) * 4;
+        Map<String, Object> args = Map.of("query", "load-test");
+
+        MCPClient stdio = new MCPClient("mock-stdio", stdioCommand(), "stdio");
+        stdio.start();
+        try {
+            measure("mcp.stdio", requests, () -> stdio.callTool("mock_lookup", args));
+        } finally {
+            stdio.stop();
+        }
+
+        MockMCPServer sseServer = new MockMCPServer();
+        sseServer.toolLatencyMs = intOpt("mcp-latency-ms", 20);
+        sseServer.startSse(0);
+        MCPClient sse = new MCPClient("mock-sse", sseServer.getSseUrl(), "sse");
+        sse.start();
+        try {
+            measure("mcp.sse", requests, () -> sse.callTool("mock_lookup", args));
+        } finally {
+            sse.stop();
+            sseServer.stop();
+        }
+    }
+
+    // Chunked analysis of a large response, as the editor tab runs it: map-reduce (default) runs
+    // --chunk-concurrency chunks of one analysis at a time; sequential chains them in order
+    private void runChunks() throws Exception {
+        llm.toolScript = new ArrayList<>();
+        Tokenizer tokenizer = Tokenizer.forModel(Config.model);
+        String body = sampleTraffic(intOpt("body-kb", 256) * 1024);
+        if ("true".equals(opt("reduce", "false"))) {
+            ContentReducer.Result reduced = ContentReducer.reduce(body);
+            System.out.println("Reduced sample from " + tokenizer.count(body) + " to " + tokenizer.count(reduced.text)
+                + " tokens: " + reduced.describe());
+            body = reduced.text;
+        }
+        boolean structured = !"false".equals(opt("structured", "true"));
+        // Off by default so every iteration does the full map work; entries use the mock model's scope
+        Config.chunkCacheEnabled = "true".equals(opt("chunk-cache", "false"));
+        List<StructuredChunker.Chunk> chunks = StructuredChunker.split(body, tokenizer, Config.maxChunkTokens, Config.chunkOverlapTokens, structured);
+        boolean sequential = Config.CHUNK_MODE_SEQUENTIAL.equals(opt("chunk-mode", Config.CHUNK_MODE_MAP_REDUCE));
+        int chunkConcurrency = intOpt("chunk-concurrency", Config.chunkConcurrency);
+        System.out.println("Chunks per analysis: " + chunks.size() + (structured ? ", structured" : ", token windows") + (sequential ? " (sequential)" : " (map-reduce, " + chunkConcurrency + " parallel)"));
+
+        AtomicInteger seq = new AtomicInteger(0);
+        measure("chunks", Math.max(1, intOpt("requests", 64) / 8), () -> {
+            String head = "Analysis " + seq.incrementAndGet() + ". Response:\n";
+            if (!sequential) {
+                PromptTemplate template = PromptTemplate.compile(head + "{RESPONSE}");
+                ChunkMapReduce mapReduce = new ChunkMapReduce(
+                    () -> new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, null), tokenizer, chunkConcurrency);
+                if (Config.chunkCacheEnabled) mapReduce.setCacheScope(Config.model, "loadtest");
+                String report = mapReduce.run(SYSTEM_PROMPT, template, new PromptTemplate.Values(), chunks, 2000, 8000, () -> "", new ChunkMapReduce.Listener() {
+                    @Override
+                    public void onChunkDone(int index, int total, List<Finding> findings, boolean cached) {
+                        MetricsRegistry.increment("loadtest.findings", findings.size());
+                    }
+
+                    @Override
+                    public void onChunkFailed(int index, int total, String error) {
+                        System.err.println("[chunks] part " + (index + 1) + ": " + error);
+                    }
+                });
+                return report != null ? report : "Error: cancelled";
+            }
+            OpenAIProvider provider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, null);
+            String last = null;
+            for (int i = 0; i < chunks.size(); i++) {
+                long start = System.nanoTime();
+                last = provider.sendRequest(SYSTEM_PROMPT, head, chunks.get(i).text + "\n\nAnalyze Part " + (i + 1) + " above.", 2000);
+                ChunkMapReduce.recordChunkMetrics(tokenizer.count(chunks.get(i).text), start);
+                if (last.startsWith("Error")) break;
+            }
+            return last;
+        });
+    }
+
+    // Re-drives a recorded session from its cassette with no network; each iteration replays
+    // every top-level prompt in order, so only client-side work is measured
+    private void runReplay() throws Exception {
+        File file = new File(opt("cassette", Cassette.getFile().getPath()));
+        Cassette.load(file);
+        List<JsonNode> prompts = Cassette.getPrompts();
+        if (prompts.isEmpty()) {
+            System.out.println("Cassette " + file + " has no prompts to replay");
+            failed = true;
+            return;
+        }
+        measure("replay", intOpt("iterations", 10), 1, () -> {
+            Cassette.load(file);
+            OpenAIProvider provider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, null);
+            String last = null;
+            for (JsonNode prompt : prompts) {
+                last = provider.sendRequest(prompt.path("system").asText(null), prompt.path("user").asText(), prompt.path("max_tokens").asInt(2000));
+            }
+            return last;
+        });
+    }
+
+    // Single-threaded microbenchmark of one turn's request body written to a sink: the JsonNode
+    // tree serialized to a String the provider used to build, against ChatRequestBody streaming
+    private void runRequestBody() throws Exception {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        messages.add(new HashMap<>(Map.of("role", "system", "content", SYSTEM_PROMPT)));
+        messages.add(new HashMap<>(Map.of("role", "user", "content", "Analyze:\n" + sampleTraffic(intOpt("body-kb", 256) * 1024))));
+        for (int i = 0; i < 4; i++) {
+            messages.add(new HashMap<>(Map.of("role", "assistant", "content", "Checking endpoint " + i)));
+            messages.add(new HashMap<>(Map.of("role", "user", "content", "Tool output " + i + ": " + sampleTraffic(4096))));
+        }
+        StringBuilder tools = new StringBuilder("[");
+        for (int i = 0; i < 20; i++) {
+            if (i > 0) tools.append(',');
+            tools.append("{\"type\":\"function\",\"function\":{\"name\":\"tool_").append(i)
+                .append("\",\"description\":\"Mock tool\",\"parameters\":{\"type\":\"object\",\"properties\":{\"q\":{\"type\":\"string\"}}}}}");
+        }
+        String toolsJson = tools.append(']').toString();
+        ObjectMapper mapper = new ObjectMapper();
+        Buffer sink = new Buffer();
+
+        java.util.function.Supplier<RequestBody> tree = () -> {
+            ObjectNode body = mapper.createObjectNode();
+            body.put("model", Config.model);
+            body.put("max_tokens", 2000);
+            ArrayNode array = mapper.valueToTree(messages);
+            body.set("messages", array);
+            body.putRawValue("tools", new RawValue(toolsJson));
+            body.put("tool_choice", "auto");
+            body.put("stream", true);
+            body.putObject("stream_options").put("include_usage", true);
+            try {
+                return RequestBody.create(mapper.writeValueAsString(body), MediaType.parse("application/json"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        java.util.function.Supplier<RequestBody> streamed = () -> new ChatRequestBody(Config.model, 2000, messages, toolsJson, true);
+        String expected = write(tree.get(), sink);
+        if (!mapper.readTree(expected).equals(mapper.readTree(write(streamed.get(), sink)))) {
+            System.out.println("  FAILED: streamed body differs from the tree body");
+            failed = true;
+            return;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("bytes", expected.length());
+        result.put("tree_to_string", benchmark("tree", intOpt("iterations", 200), () -> String.valueOf(writeSize(tree.get(), sink))));
+        result.put("streamed", benchmark("streamed", intOpt("iterations", 200), () -> String.valueOf(writeSize(streamed.get(), sink))));
+        report.put("body", result);
+    }
+
+    private static String write(RequestBody body, Buffer sink) throws IOException {
+        body.writeTo(sink);
+        return sink.readUtf8();
+    }
+
+    private static long writeSize(RequestBody body, Buffer sink) {
+        try {
+            body.writeTo(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long size = sink.size();
+        sink.clear();
+        return size;
+    }
+
+    // Single-threaded microbenchmark of prompt expansion, without the mock API: the chained
+    // String.replace calls the analysis used to make against the compiled template. Reports
+    // time and bytes allocated per expansion after a warm-up.
+    private void runPrompt() {
+        String req = "GET /item?id=1 HTTP/1.1\nHost: example.com\nCookie: session=abc\n\n";
+        String resp = sampleTraffic(intOpt("body-kb", 256) * 1024);
+        int iterations = intOpt("iterations", 200);
+        PromptTemplate compiled = PromptTemplate.compile(Config.prompt);
+        PromptTemplate.Values values = new PromptTemplate.Values()
+            .set(PromptTemplate.Placeholder.REQUEST, req)
+            .set(PromptTemplate.Placeholder.RESPONSE, resp);
+        String expected = Config.prompt.replace("{REQUEST}", req).replace("{RESPONSE}", resp);
+        if (!expected.equals(compiled.render(values))) {
+            System.out.println("  FAILED: compiled template output differs from String.replace");
+            failed = true;
+            return;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("chars", expected.length());
+        result.put("replace", benchmark("replace", iterations, () -> Config.prompt.replace("{REQUEST}", req).replace("{RESPONSE}", resp)));
+        result.put("compiled", benchmark("compiled", iterations, () -> compiled.render(values)));
+        report.put("prompt", result);
+    }
+
+    // Single-threaded: the regex renderer the editor tab used to run against MarkdownRenderer,
+    // once on a whole report and as a stream re-rendered every --flush-chars characters
+    private void runMarkdown() {
+        String markdown = sampleMarkdown(intOpt("body-kb", 100) * 1024);
+        int iterations = intOpt("iterations", 50);
+        int flushChars = intOpt("flush-chars", 256);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("chars", markdown.length());
+        result.put("regex", benchmark("regex", iterations, () -> legacyRenderMarkdown(markdown)));
+        result.put("single_pass", benchmark("single", iterations, () -> MarkdownRenderer.render(markdown)));
+
+        int streamIterations = Math.max(1, iterations / 10);
+        result.put("stream_regex", benchmark("stream-re", streamIterations, () -> {
+            String html = "";
+            for (int end = flushChars; end < markdown.length() + flushChars; end += flushChars) {
+                html = legacyRenderMarkdown(markdown.substring(0, Math.min(end, markdown.length())));
+            }
+            return html;
+        }));
+        result.put("stream_incremental", benchmark("stream-inc", streamIterations, () -> {
+            MarkdownRenderer renderer = new MarkdownRenderer();
+            String html = "";
+            for (int start = 0; start < markdown.length(); start += flushChars) {
+                html = renderer.append(markdown.substring(start, Math.min(start + flushChars, markdown.length()))).html();
+            }
+            return html;
+        }));
+        report.put("markdown", result);
+    }
+
+    // GPTEditorTab.renderMarkdown before the single-pass renderer, kept as the baseline
+    private static String legacyRenderMarkdown(String markdown) {
+        String html = markdown.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        html = html.replaceAll("(?m)^### (.*)$", "<h3>$1</h3>");
+        html = html.replaceAll("(?m)^## (.*)$", "<h2>$1</h2>");
+        html = html.replaceAll("(?m)^# (.*)$", "<h1>$1</h1>");
+        html = html.replaceAll("\\*\\*(.*?)\\*\\*", "<b>$1</b>");
+        html = html.replaceAll("\\*(.*?)\\*", "<i>$1</i>");
+        html = html.replaceAll("`([^`]+)`", "<code style='background-color: #f0f0f0; padding: 2px; border-radius: 3px;'>$1</code>");
+        html = html.replaceAll("```([\\s\\S]*?)```", "<pre style='background-color: #f5f5f5; padding: 10px; border-radius: 5px; overflow-x: auto;'>$1</pre>");
+        html = html.replaceAll("(?m)^- (.*)$", "<li>$1</li>");
+        html = html.replace("\n", "<br>");
+        html = html.replace("</h1><br>", "</h1>");
+        html = html.replace("</h2><br>", "</h2>");
+        html = html.replace("</h3><br>", "</h3>");
+        html = html.replace("</pre><br>", "</pre>");
+        return html;
+    }
+
+    private Map<String, Object> benchmark(String name, int iterations, java.util.function.Supplier<String> op) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) sink += op.get().length(); // Warm-up
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sink += op.get().length();
+        double micros = (System.nanoTime() - start) / 1e3 / iterations;
+        long allocated = (threads.getCurrentThreadAllocatedBytes() - bytes) / iterations;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("us_per_op", micros);
+        result.put("bytes_per_op", allocated);
+        System.out.printf("%-10s %6d ops %10.1f us/op %12d B/op   (%d)%n", name, iterations, micros, allocated, sink % 10);
+        return result;
+    }
+
+    private interface Job {
+        String call() throws Exception;
+    }
+
+    private void measure(String name, int requests, Job job) throws Exception {
+        measure(name, requests, intOpt("concurrency", 8), job);
+    }
+
+    private void measure(String name, int requests, int concurrency, Job job) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        Histogram latency = new Histogram();
+        AtomicInteger errors = new AtomicInteger(0);
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            futures.add(pool.submit(() -> {
+                long t0 = System.nanoTime();
+                try {
+                    String result = job.call();
+                    if (result == null || result.startsWith("Error")) {
+                        errors.incrementAndGet();
+                        System.err.println("[" + name + "] " + result);
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                    System.err.println("[" + name + "] " + e);
+                }
+                latency.record((System.nanoTime() - t0) / 1_000_000);
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", requests);
+        result.put("errors", errors.get());
+        result.put("seconds", seconds);
+        result.put("throughput", requests / seconds);
+        for (double p : MetricsRegistry.PERCENTILES) {
+            result.put("p" + (int) p + "_ms", latency.percentile(p));
+        }
+        result.put("max_ms", latency.getMax());
+        report.put(name, result);
+
+        System.out.printf("%-10s %6d req %4d err %8.2f s %9.1f req/s   p50 %6d  p95 %6d  p99 %6d  max %6d ms%n",
+            name, requests, errors.get(), seconds, requests / seconds,
+            latency.percentile(50), latency.percentile(95), latency.percentile(99), latency.getMax());
+
+        long maxP95 = intOpt("max-p95-ms", 0);
+        if (maxP95 > 0 && (latency.percentile(95) > maxP95 || errors.get() > 0)) {
+            System.out.println("  FAILED: p95 " + latency.percentile(95) + " ms (limit " + maxP95 + "), " + errors.get() + " errors");
+            failed = true;
+        }
+    }
+
+    // Runs MockMCPServer in a child JVM with this JVM's classpath
+    private String stdioCommand() {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return "\"" + java + "\" -cp \"" + System.getProperty("java.class.path") + "\" "
+            + MockMCPServer.class.getName() + " " + intOpt("mcp-latency-ms", 20) + " 512";
+    }
+
+    // A long analysis report: headings, findings lists, tables and code blocks
+    private static String sampleMarkdown(int bytes) {
+        StringBuilder sb = new StringBuilder("# Security Analysis Report\n\n");
+        int i = 0;
+        while (sb.length() < bytes) {
+            sb.append("## Finding ").append(i).append(": Reflected input in `q` parameter\n\n")
+                .append("The response echoes the **q** parameter without *encoding*, see `/search?q=").append(i).append("`.\n\n")
+                .append("- **[HIGH] Cross-site scripting** (GET /search)\n")
+                .append("  Evidence: `<script>alert(").append(i).append(")</script>`\n")
+                .append("- **[LOW] Missing header** X-Content-Type-Options\n")
+                .append("  - nested detail with a [reference](https://owasp.org/xss)\n\n")
+                .append("| Parameter | Context | Risk |\n|---|---|:---:|\n")
+                .append("| q | HTML body | High |\n| page | attribute | Low |\n\n")
+                .append("```http\nGET /search?q=%3Cscript%3E HTTP/1.1\nHost: example.com\n```\n\n");
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static String sampleTraffic(int bytes) {
+        StringBuilder sb = new StringBuilder("HTTP/1.1 200 OK\nContent-Type: text/html\n\n<html><body>\n");
+        int i = 0;
+        while (sb.length() < bytes) {
+            sb.append("<div class=\"row\" id=\"r").append(i).append("\"><a href=\"/item?id=").append(i)
+                .append("\">Item ").append(i).append("</a><script>var token='abc").append(i % 97).append("';</script></div>\n");
+            i++;
+        }
+        return sb.append("</body></html>\n").toString();
+    }
+}
@@ -0,0 +1,205 @@
+package com.enhanced.burpgpt.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Fake MCP server exposing two tools: mock_lookup (fixed latency, configurable output size)
+// and mock_slow (sleeps for the requested time, honours notifications/cancelled).
+// Runs over stdio as its own process (main) or over SSE in-process (startSse).
+public class MockMCPServer {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "MockMCP");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger callCount = new AtomicInteger(0);
+
+    public int toolLatencyMs = 20;
+    public int outputBytes = 512;
+
+    private HttpServer server;
+    private final Map<String, BlockingQueue<String>> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionIds = new AtomicInteger(0);
+
+    // java ... MockMCPServer [latencyMs] [outputBytes]  (stdio transport)
+    public static void main(String[] args) throws IOException {
+        MockMCPServer mock = new MockMCPServer();
+        if (args.length > 0) mock.toolLatencyMs = Integer.parseInt(args[0]);
+        if (args.length > 1) mock.outputBytes = Integer.parseInt(args[1]);
+
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        Consumer<String> reply = line -> {
+            synchronized (out) {
+                out.println(line);
+                out.flush();
+            }
+        };
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!line.isBlank()) mock.accept(line, reply);
+        }
+    }
+
+    public int getCallCount() {
+        return callCount.get();
+    }
+
+    // Handles one JSON-RPC message; the reply (if any) is sent from a worker thread
+    public void accept(String message, Consumer<String> reply) {
+        JsonNode request;
+        try {
+            request = mapper.readTree(message);
+        } catch (IOException e) {
+            System.err.println("MockMCPServer: bad message " + message);
+            return;
+        }
+        String method = request.path("method").asText();
+        if (!request.has("id")) {
+            if ("notifications/cancelled".equals(method)) {
+                cancelled.add(request.path("params").path("requestId").asText());
+            }
+            return;
+        }
+        workers.submit(() -> {
+            try {
+                ObjectNode response = handle(request);
+                if (response != null) reply.accept(mapper.writeValueAsString(response));
+            } catch (Exception e) {
+                System.err.println("MockMCPServer error: " + e.getMessage());
+            }
+        });
+    }
+
+    private ObjectNode handle(JsonNode request) throws InterruptedException {
+        ObjectNode response = mapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        ObjectNode result = response.putObject("result");
+
+        switch (request.path("method").asText()) {
+            case "initialize":
+                result.put("protocolVersion", "2024-11-05");
+                result.putObject("capabilities").putObject("tools");
+                result.putObject("serverInfo").put("name", "mock-mcp").put("version", "1.0");
+                break;
+            case "tools/list":
+                ArrayNode tools = result.putArray("tools");
+                tools.add(tool("mock_lookup", "Looks up a value (mock, fixed latency).", "query"));
+                tools.add(tool("mock_slow", "Sleeps for millis (mock, cancellable).", "millis"));
+                break;
+            case "tools/call":
+                callCount.incrementAndGet();
+                String id = request.get("id").asText();
+                JsonNode params = request.path("params");
+                long sleepMs = "mock_slow".equals(params.path("name").asText())
+                    ? params.path("arguments").path("millis").asLong(1000) : toolLatencyMs;
+                long deadline = System.currentTimeMillis() + sleepMs;
+                while (System.currentTimeMillis() < deadline) {
+                    if (cancelled.remove(id)) return null; // Per spec, no reply to a cancelled request
+                    Thread.sleep(Math.min(10, Math.max(1, deadline - System.currentTimeMillis())));
+                }
+                StringBuilder text = new StringBuilder("result for ").append(params.path("arguments")).append(": ");
+                while (text.length() < outputBytes) text.append("lorem ipsum ");
+                ObjectNode content = result.putArray("content").addObject();
+                content.put("type", "text");
+                content.put("text", text.toString());
+                break;
+            default:
+                response.remove("result");
+                response.putObject("error").put("code", -32601).put("message", "Method not found");
+        }
+        return response;
+    }
+
+    private ObjectNode tool(String name, String description, String argument) {
+        ObjectNode tool = mapper.createObjectNode();
+        tool.put("name", name);
+        tool.put("description", description);
+        ObjectNode schema = tool.putObject("inputSchema");
+        schema.put("type", "object");
+        schema.putObject("properties").putObject(argument).put("type", "mock_slow".equals(name) ? "integer" : "string");
+        return tool;
+    }
+
+    // SSE transport: GET /sse announces a per-session POST endpoint; replies go back on the stream
+    public void startSse(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/sse", this::handleStream);
+        server.createContext("/messages", this::handlePost);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "MockMCP-SSE");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+    }
+
+    public String getSseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/sse";
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void handleStream(HttpExchange exchange) throws IOException {
+        String session = "s" + sessionIds.incrementAndGet();
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        sessions.put(session, queue);
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(("event: endpoint\ndata: /messages?session=" + session + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                String message = queue.poll(15, TimeUnit.SECONDS);
+                String frame = message != null ? "event: message\ndata: " + message + "\n\n" : ": keepalive\n\n";
+                out.write(frame.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client went away
+        } finally {
+            sessions.remove(session);
+        }
+    }
+
+    private void handlePost(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        BlockingQueue<String> queue = query != null && query.startsWith("session=") ? sessions.get(query.substring(8)) : null;
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (queue == null) {
+            exchange.sendResponseHeaders(404, -1);
+        } else {
+            accept(body, queue::add);
+            exchange.sendResponseHeaders(202, -1);
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,232 @@
+package com.enhanced.burpgpt.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Local stand-in for an OpenAI-compatible /chat/completions endpoint. Latency, streaming,
+// a scripted sequence of tool calls and 429 injection are configurable, so the provider,
+// tool loop and retry paths can be exercised without a paid API.
+public class MockOpenAIServer {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicInteger requestCount = new AtomicInteger(0);
+    private final AtomicInteger rateLimitedCount = new AtomicInteger(0);
+    private final AtomicInteger callIds = new AtomicInteger(0);
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // Delay before the first byte of the answer
+    public int firstTokenLatencyMs = 200;
+    // Delay between streamed chunks
+    public int chunkDelayMs = 5;
+    // Number of words in the final answer; one streamed chunk per word
+    public int answerWords = 200;
+    // Every Nth request gets a 429 (0 = never)
+    public int rateLimitEvery = 0;
+    public int retryAfterMs = 100;
+    // Tool called on each of the first turns, in order; the answer follows once all have results
+    public List<String> toolScript = new ArrayList<>();
+    public String toolArguments = "{\"query\":\"load-test\"}";
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "MockOpenAI");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+        if (executor != null) executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            int n = requestCount.incrementAndGet();
+            JsonNode body = mapper.readTree(exchange.getRequestBody());
+
+            if (rateLimitEvery > 0 && n % rateLimitEvery == 0) {
+                rateLimitedCount.incrementAndGet();
+                exchange.getResponseHeaders().add("retry-after-ms", String.valueOf(retryAfterMs));
+                send(exchange, 429, "application/json", "{\"error\":{\"message\":\"Rate limit exceeded (mock)\"}}");
+                return;
+            }
+
+            sleep(firstTokenLatencyMs);
+
+            int promptTokens = estimateTokens(body.path("messages"));
+            int toolResults = 0;
+            for (JsonNode message : body.path("messages")) {
+                if ("tool".equals(message.path("role").asText())) toolResults++;
+            }
+            String tool = toolResults < toolScript.size() ? toolScript.get(toolResults) : null;
+            JsonNode messages = body.path("messages");
+            boolean wantsJson = messages.size() > 0 && messages.get(messages.size() - 1).path("content").asText("").contains("JSON array");
+
+            if (body.path("stream").asBoolean(false)) {
+                stream(exchange, tool, promptTokens, wantsJson);
+            } else {
+                send(exchange, 200, "application/json", mapper.writeValueAsString(completion(tool, promptTokens, wantsJson)));
+            }
+        } catch (Exception e) {
+            System.err.println("MockOpenAIServer error: " + e.getMessage());
+            try {
+                send(exchange, 500, "application/json", "{\"error\":{\"message\":\"mock failure\"}}");
+            } catch (IOException ignored) {
+                // Connection already gone
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private ObjectNode completion(String tool, int promptTokens, boolean wantsJson) {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("id", "chatcmpl-mock");
+        root.put("model", "mock");
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        if (tool != null) {
+            message.putNull("content");
+            ObjectNode call = message.putArray("tool_calls").addObject();
+            call.put("id", "call_" + callIds.incrementAndGet());
+            call.put("type", "function");
+            call.putObject("function").put("name", tool).put("arguments", toolArguments);
+            choice.put("finish_reason", "tool_calls");
+        } else {
+            message.put("content", answer(wantsJson));
+            choice.put("finish_reason", "stop");
+        }
+        root.set("usage", usage(promptTokens, tool != null ? 20 : answerWords));
+        return root;
+    }
+
+    private void stream(HttpExchange exchange, String tool, int promptTokens, boolean wantsJson) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+
+        if (tool != null) {
+            ObjectNode delta = mapper.createObjectNode();
+            ObjectNode call = delta.putArray("tool_calls").addObject();
+            call.put("index", 0);
+            call.put("id", "call_" + callIds.incrementAndGet());
+            call.put("type", "function");
+            call.putObject("function").put("name", tool).put("arguments", toolArguments);
+            writeChunk(out, delta, "tool_calls");
+        } else {
+            String[] words = answer(wantsJson).split(" ");
+            for (int i = 0; i < words.length; i++) {
+                ObjectNode delta = mapper.createObjectNode();
+                delta.put("content", i == 0 ? words[i] : " " + words[i]);
+                writeChunk(out, delta, null);
+                sleep(chunkDelayMs);
+            }
+            writeChunk(out, mapper.createObjectNode(), "stop");
+        }
+
+        ObjectNode usageChunk = mapper.createObjectNode();
+        usageChunk.putArray("choices");
+        usageChunk.set("usage", usage(promptTokens, tool != null ? 20 : answerWords));
+        writeEvent(out, mapper.writeValueAsString(usageChunk));
+        writeEvent(out, "[DONE]");
+    }
+
+    private void writeChunk(OutputStream out, ObjectNode delta, String finishReason) throws IOException {
+        ObjectNode chunk = mapper.createObjectNode();
+        chunk.put("id", "chatcmpl-mock");
+        ArrayNode choices = chunk.putArray("choices");
+        ObjectNode choice = choices.addObject();
+        choice.put("index", 0);
+        choice.set("delta", delta);
+        if (finishReason != null) choice.put("finish_reason", finishReason);
+        else choice.putNull("finish_reason");
+        writeEvent(out, mapper.writeValueAsString(chunk));
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private ObjectNode usage(int promptTokens, int completionTokens) {
+        ObjectNode usage = mapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    // Chunk analyses ask for a JSON array of findings; the shared finding exercises dedupe
+    private String answer(boolean json) {
+        if (json) {
+            int n = callIds.incrementAndGet();
+            return "[{\"title\": \"Hardcoded client token\", \"severity\": \"medium\", \"location\": \"inline script\", "
+                + "\"evidence\": \"var token='abc1'\", \"detail\": \"A static token is embedded in the page.\"}, "
+                + "{\"title\": \"Reflected id parameter " + n + "\", \"severity\": \"low\", \"location\": \"/item?id=" + n + "\", "
+                + "\"evidence\": \"href=/item?id=" + n + "\", \"detail\": \"Parameter value is echoed into a link.\"}]";
+        }
+        StringBuilder sb = new StringBuilder("Analysis:");
+        for (int i = 1; i < answerWords; i++) {
+            sb.append(i % 40 == 0 ? " finding." : " token");
+        }
+        return sb.toString();
+    }
+
+    // Rough count (4 chars per token); the harness only needs plausible numbers
+    private static int estimateTokens(JsonNode messages) {
+        int chars = 0;
+        for (JsonNode message : messages) {
+            chars += message.path("content").asText("").length();
+        }
+        return chars / 4 + 1;
+    }
+
+    private static void send(HttpExchange exchange, int code, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(int millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -8,6 +8,10 @@ import com.enhanced.burpgpt.ui.GPTEditorTabProvider;
 import com.enhanced.burpgpt.ui.SettingsPanel;
 import com.enhanced.burpgpt.mcp.MCPManager;
 
+import com.enhanced.burpgpt.api.HttpClientManager;
+import com.enhanced.burpgpt.api.AgentExecutor;
+import com.enhanced.burpgpt.api.ArtifactStore;
+import com.enhanced.burpgpt.api.Cassette;
 import com.enhanced.burpgpt.api.ToolExecutor;
 
 public class ExtensionEntry implements BurpExtension {
@@ -20,6 +24,8 @@ public class ExtensionEntry implements BurpExtension {
         
         // Load Configuration
         Config.load();
+        Cassette.configure();
+        Config.addSaveListener(Cassette::configure);
         
         // Initialize MCP Manager
         if (Config.mcpEnabled) {
@@ -37,6 +43,16 @@ public class ExtensionEntry implements BurpExtension {
         // Register Settings Tab
         api.userInterface().registerSuiteTab("BurpAgent Settings", new SettingsPanel());
         
+        // Release shared resources when the extension is unloaded
+        api.extension().registerUnloadingHandler(() -> {
+            MCPManager.stopAll();
+            ToolExecutor.shutdown();
+            AgentExecutor.shutdown();
+            ArtifactStore.clear();
+            Cassette.close();
+            HttpClientManager.shutdown();
+        });
+        
         api.logging().logToOutput("BurpAgent loaded successfully.");
     }
 }
@@ -1,5 +1,6 @@
 package com.enhanced.burpgpt;
 
+import com.enhanced.burpgpt.analysis.PromptTemplate;
 import com.enhanced.burpgpt.skills.Skill;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -11,16 +12,80 @@ public class Config {
     public static String apiKey = "";
     public static String apiUrl = "https://api.openai.com/v1/chat/completions";
     public static String model = "gpt-4o";
-    public static int maxChunkSize = 10000; // Default 10k chars per chunk
+    public static int maxChunkTokens = 4000; // Tokens per chunk, capped by the model's context window
+    public static int chunkOverlapTokens = 200;
+    public static final String CHUNK_MODE_MAP_REDUCE = "map_reduce";
+    public static final String CHUNK_MODE_SEQUENTIAL = "sequential";
+    public static String chunkMode = CHUNK_MODE_MAP_REDUCE;
+    public static int chunkConcurrency = 4;
+    public static boolean structuredChunking = true; // Cut at JSON/JS/HTML/multipart boundaries instead of token windows
+    public static boolean reduceContent = true; // Strip binary bodies, data URIs, repeated rows and whitespace before prompting
+    public static boolean skipKnownLibraries = true; // Replace bodies of fingerprinted vendor scripts (jQuery, React, ...) with a note
+    public static int contextWindowOverride = 0; // 0 = use ModelRegistry
     public static String toolsPath = ""; // Path to tools directory
     public static String commandBlacklist = "del,rm,shutdown,restart,format"; // Comma separated commands
     public static String prompt = "Analyze this request and response for security vulnerabilities:\n\nRequest:\n{REQUEST}\n\nResponse:\n{RESPONSE}";
     public static boolean mcpEnabled = true;
     public static java.util.List<MCPServerConfig> mcpServers = new java.util.ArrayList<>();
     public static java.util.List<Skill> customSkills = new java.util.ArrayList<>();
+    private static PromptTemplate promptTemplate;
+    private static String promptTemplateSource;
+
+    // Shared LLM HTTP client (connection pool / dispatcher)
+    public static int httpMaxIdleConnections = 16;
+    public static int httpKeepAliveSeconds = 300;
+    public static int httpMaxRequests = 64;
+    public static int httpMaxRequestsPerEndpoint = 16;
+    public static boolean streamingEnabled = true;
+
+    // Agent loop budgets
+    public static int agentMaxTurns = 25;
+    public static int agentMaxSeconds = 600;
+    public static int agentMaxTokens = 500000;
+    public static int toolConcurrency = 4;
+    public static int historyMaxTokens = 32000; // Message history budget per agent run
+    public static int historyKeepTurns = 4; // Most recent assistant turns never compacted
+    public static boolean historySummarize = false; // Summarize older turns with an extra LLM call
+    public static int artifactThresholdBytes = 8192; // Tool outputs above this become artifacts (0 = off)
+    public static int artifactMaxMB = 256;
+
+    // Rate-limit retries for LLM calls
+    public static int llmMaxRetries = 5;
+    public static int llmMaxBackoffSeconds = 60;
+
+    // Additional OpenAI-compatible backends routed alongside apiUrl / apiKey / model
+    public static java.util.List<LLMBackendConfig> llmBackends = new java.util.ArrayList<>();
+
+    // Response cache (memory LRU + ~/.burpgpt_cache)
+    public static boolean responseCacheEnabled = true;
+    public static boolean coalesceRequests = true;
+    public static String cassetteMode = "off"; // "off", "record" or "replay"
+    public static String cassettePath = ""; // Empty = ~/.burpgpt_cassettes/session.cassette.gz
+    public static int cacheTtlHours = 24;
+    public static int cacheMaxDiskMB = 50;
+    public static boolean chunkCacheEnabled = true; // Reuse map-step answers for identical chunks across hosts and sessions
+    public static int chunkCacheDays = 30;
+    public static int cacheMemoryEntries = 200;
 
     private static final String CONFIG_FILE = System.getProperty("user.home") + File.separator + ".burpgpt_config.json";
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final java.util.List<Runnable> saveListeners = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    public static void addSaveListener(Runnable listener) {
+        saveListeners.add(listener);
+    }
+
+    // Parsed when the config is loaded or saved; recompiled here only if prompt was assigned
+    // without a save
+    public static synchronized PromptTemplate promptTemplate() {
+        if (promptTemplate == null || promptTemplateSource != prompt) compilePrompt();
+        return promptTemplate;
+    }
+
+    private static synchronized void compilePrompt() {
+        promptTemplate = PromptTemplate.compile(prompt);
+        promptTemplateSource = prompt;
+    }
 
     public static void load() {
         try {
@@ -31,18 +96,58 @@ public class Config {
                     apiKey = data.apiKey != null ? data.apiKey : "";
                     apiUrl = data.apiUrl != null ? data.apiUrl : "https://api.openai.com/v1/chat/completions";
                     model = data.model != null ? data.model : "gpt-4o";
-                    maxChunkSize = data.maxChunkSize > 0 ? data.maxChunkSize : 10000;
+                    if (data.maxChunkTokens > 0) {
+                        maxChunkTokens = data.maxChunkTokens;
+                    } else if (data.maxChunkSize != null && data.maxChunkSize > 0) {
+                        maxChunkTokens = Math.max(500, data.maxChunkSize / 4); // Migrate old char-based setting
+                    } else {
+                        maxChunkTokens = 4000;
+                    }
+                    chunkOverlapTokens = data.chunkOverlapTokens >= 0 ? data.chunkOverlapTokens : 200;
+                    chunkMode = data.chunkMode != null ? data.chunkMode : CHUNK_MODE_MAP_REDUCE;
+                    chunkConcurrency = data.chunkConcurrency > 0 ? data.chunkConcurrency : 4;
+                    structuredChunking = data.structuredChunking;
+                    reduceContent = data.reduceContent;
+                    skipKnownLibraries = data.skipKnownLibraries;
+                    contextWindowOverride = Math.max(0, data.contextWindowOverride);
                     toolsPath = data.toolsPath != null ? data.toolsPath : "";
                     commandBlacklist = data.commandBlacklist != null ? data.commandBlacklist : "del,rm,shutdown,restart,format";
                     prompt = data.prompt != null ? data.prompt : "Analyze this request and response for security vulnerabilities:\n\nRequest:\n{REQUEST}\n\nResponse:\n{RESPONSE}";
                     mcpEnabled = data.mcpEnabled;
                     mcpServers = data.mcpServers != null ? data.mcpServers : new java.util.ArrayList<>();
                     customSkills = data.customSkills != null ? data.customSkills : new java.util.ArrayList<>();
+                    httpMaxIdleConnections = data.httpMaxIdleConnections > 0 ? data.httpMaxIdleConnections : 16;
+                    httpKeepAliveSeconds = data.httpKeepAliveSeconds > 0 ? data.httpKeepAliveSeconds : 300;
+                    httpMaxRequests = data.httpMaxRequests > 0 ? data.httpMaxRequests : 64;
+                    httpMaxRequestsPerEndpoint = data.httpMaxRequestsPerEndpoint > 0 ? data.httpMaxRequestsPerEndpoint : 16;
+                    streamingEnabled = data.streamingEnabled;
+                    agentMaxTurns = data.agentMaxTurns > 0 ? data.agentMaxTurns : 25;
+                    agentMaxSeconds = data.agentMaxSeconds > 0 ? data.agentMaxSeconds : 600;
+                    agentMaxTokens = data.agentMaxTokens > 0 ? data.agentMaxTokens : 500000;
+                    toolConcurrency = data.toolConcurrency > 0 ? data.toolConcurrency : 4;
+                    historyMaxTokens = data.historyMaxTokens > 0 ? data.historyMaxTokens : 32000;
+                    historyKeepTurns = data.historyKeepTurns > 0 ? data.historyKeepTurns : 4;
+                    historySummarize = data.historySummarize;
+                    artifactThresholdBytes = data.artifactThresholdBytes >= 0 ? data.artifactThresholdBytes : 8192;
+                    artifactMaxMB = data.artifactMaxMB > 0 ? data.artifactMaxMB : 256;
+                    llmMaxRetries = Math.max(0, data.llmMaxRetries);
+                    llmMaxBackoffSeconds = data.llmMaxBackoffSeconds > 0 ? data.llmMaxBackoffSeconds : 60;
+                    llmBackends = data.llmBackends != null ? data.llmBackends : new java.util.ArrayList<>();
+                    responseCacheEnabled = data.responseCacheEnabled;
+                    coalesceRequests = data.coalesceRequests;
+                    cassetteMode = data.cassetteMode != null ? data.cassetteMode : "off";
+                    cassettePath = data.cassettePath != null ? data.cassettePath : "";
+                    cacheTtlHours = data.cacheTtlHours > 0 ? data.cacheTtlHours : 24;
+                    cacheMaxDiskMB = data.cacheMaxDiskMB > 0 ? data.cacheMaxDiskMB : 50;
+                    chunkCacheEnabled = data.chunkCacheEnabled;
+                    chunkCacheDays = data.chunkCacheDays > 0 ? data.chunkCacheDays : 30;
+                    cacheMemoryEntries = data.cacheMemoryEntries > 0 ? data.cacheMemoryEntries : 200;
                 }
             }
         } catch (Exception e) {
             System.err.println("Error loading config: " + e.getMessage());
         }
+        compilePrompt();
     }
 
     public static void save() {
@@ -51,19 +156,56 @@ public class Config {
             data.apiKey = apiKey;
             data.apiUrl = apiUrl;
             data.model = model;
-            data.maxChunkSize = maxChunkSize;
+            data.maxChunkTokens = maxChunkTokens;
+            data.chunkOverlapTokens = chunkOverlapTokens;
+            data.chunkMode = chunkMode;
+            data.chunkConcurrency = chunkConcurrency;
+            data.structuredChunking = structuredChunking;
+            data.reduceContent = reduceContent;
+            data.skipKnownLibraries = skipKnownLibraries;
+            data.contextWindowOverride = contextWindowOverride;
             data.toolsPath = toolsPath;
             data.commandBlacklist = commandBlacklist;
             data.prompt = prompt;
             data.mcpEnabled = mcpEnabled;
             data.mcpServers = mcpServers;
             data.customSkills = customSkills;
+            data.httpMaxIdleConnections = httpMaxIdleConnections;
+            data.httpKeepAliveSeconds = httpKeepAliveSeconds;
+            data.httpMaxRequests = httpMaxRequests;
+            data.httpMaxRequestsPerEndpoint = httpMaxRequestsPerEndpoint;
+            data.streamingEnabled = streamingEnabled;
+            data.agentMaxTurns = agentMaxTurns;
+            data.agentMaxSeconds = agentMaxSeconds;
+            data.agentMaxTokens = agentMaxTokens;
+            data.toolConcurrency = toolConcurrency;
+            data.historyMaxTokens = historyMaxTokens;
+            data.historyKeepTurns = historyKeepTurns;
+            data.historySummarize = historySummarize;
+            data.artifactThresholdBytes = artifactThresholdBytes;
+            data.artifactMaxMB = artifactMaxMB;
+            data.llmMaxRetries = llmMaxRetries;
+            data.llmMaxBackoffSeconds = llmMaxBackoffSeconds;
+            data.llmBackends = llmBackends;
+            data.responseCacheEnabled = responseCacheEnabled;
+            data.coalesceRequests = coalesceRequests;
+            data.cassetteMode = cassetteMode;
+            data.cassettePath = cassettePath;
+            data.cacheTtlHours = cacheTtlHours;
+            data.cacheMaxDiskMB = cacheMaxDiskMB;
+            data.chunkCacheEnabled = chunkCacheEnabled;
+            data.chunkCacheDays = chunkCacheDays;
+            data.cacheMemoryEntries = cacheMemoryEntries;
             
             String json = gson.toJson(data);
             Files.write(Paths.get(CONFIG_FILE), json.getBytes());
         } catch (Exception e) {
             System.err.println("Error saving config: " + e.getMessage());
         }
+        compilePrompt();
+        for (Runnable listener : saveListeners) {
+            listener.run();
+        }
     }
 
     public static class MCPServerConfig {
@@ -87,16 +229,73 @@ public class Config {
         }
     }
 
+    public static class LLMBackendConfig {
+        public String name;
+        public String apiUrl;
+        public String apiKey;
+        public String model; // Empty means use the default model
+        public int weight = 1;
+        public boolean enabled = true;
+
+        public LLMBackendConfig() {}
+        public LLMBackendConfig(String name, String apiUrl, String apiKey, String model, int weight) {
+            this.name = name;
+            this.apiUrl = apiUrl;
+            this.apiKey = apiKey;
+            this.model = model;
+            this.weight = weight > 0 ? weight : 1;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + apiUrl + ", " + model + ", weight " + weight + ")";
+        }
+    }
+
     private static class ConfigData {
         String apiKey;
         String apiUrl;
         String model;
-        int maxChunkSize;
+        Integer maxChunkSize; // Legacy, chars; read for migration only
+        int maxChunkTokens;
+        int chunkOverlapTokens = 200;
+        String chunkMode;
+        int chunkConcurrency;
+        boolean structuredChunking = true;
+        boolean reduceContent = true;
+        boolean skipKnownLibraries = true;
+        int contextWindowOverride;
         String toolsPath;
         String commandBlacklist;
         String prompt;
         boolean mcpEnabled = true;
         java.util.List<MCPServerConfig> mcpServers;
         java.util.List<Skill> customSkills;
+        int httpMaxIdleConnections;
+        int httpKeepAliveSeconds;
+        int httpMaxRequests;
+        int httpMaxRequestsPerEndpoint;
+        boolean streamingEnabled = true;
+        int agentMaxTurns;
+        int agentMaxSeconds;
+        int agentMaxTokens;
+        int toolConcurrency;
+        int historyMaxTokens;
+        int historyKeepTurns;
+        boolean historySummarize;
+        int artifactThresholdBytes = 8192;
+        int artifactMaxMB;
+        int llmMaxRetries = 5;
+        int llmMaxBackoffSeconds;
+        java.util.List<LLMBackendConfig> llmBackends;
+        boolean responseCacheEnabled = true;
+        boolean coalesceRequests = true;
+        String cassetteMode;
+        String cassettePath;
+        int cacheTtlHours;
+        int cacheMaxDiskMB;
+        boolean chunkCacheEnabled = true;
+        int chunkCacheDays;
+        int cacheMemoryEntries;
     }
 }
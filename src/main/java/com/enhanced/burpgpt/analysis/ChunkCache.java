@@ -0,0 +1,145 @@
+package com.enhanced.burpgpt.analysis;
+
+import com.enhanced.burpgpt.Config;
+import com.enhanced.burpgpt.api.Hashing;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Map-step answers keyed by chunk content rather than by prompt. A chunk answer only
+// describes what is in the chunk, so the same vendor bundle or API payload served by another
+// host, tab or session reuses it; the request and the part number stay out of the key.
+// In-memory LRU plus ~/.burpgpt_cache/chunks, with a TTL in days and the response cache's
+// disk budget.
+public class ChunkCache {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final File CACHE_DIR = new File(System.getProperty("user.home") + File.separator + ".burpgpt_cache" + File.separator + "chunks");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Map<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > Math.max(1, Config.cacheMemoryEntries);
+        }
+    };
+
+    private static class Entry {
+        final String answer;
+        final long createdAt;
+
+        Entry(String answer, long createdAt) {
+            this.answer = answer;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // Everything besides the chunk that shapes the answer: model, active skills, prompt
+    // template (with placeholders, not the filled-in request) and the map instructions
+    public static String scope(String model, String systemPrompt, String template, String instructions) {
+        return Hashing.sha256("chunk-v1", model, systemPrompt, template, instructions);
+    }
+
+    // Whitespace-insensitive, so re-indented or re-wrapped copies of the same code match
+    public static String key(String scope, String chunk) {
+        return Hashing.sha256(scope, SPACES.matcher(chunk).replaceAll(" ").strip());
+    }
+
+    public static String get(String key) {
+        if (!Config.chunkCacheEnabled) return null;
+        long ttl = Config.chunkCacheDays * 86_400_000L;
+        long now = System.currentTimeMillis();
+
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt <= ttl) return entry.answer;
+                memory.remove(key);
+            }
+        }
+
+        File file = new File(CACHE_DIR, key + ".json");
+        if (!file.exists()) return null;
+        try {
+            JsonNode node = mapper.readTree(file);
+            long createdAt = node.path("created").asLong();
+            if (now - createdAt > ttl) {
+                file.delete();
+                return null;
+            }
+            String answer = node.path("answer").asText(null);
+            if (answer != null) {
+                synchronized (memory) {
+                    memory.put(key, new Entry(answer, createdAt));
+                }
+            }
+            return answer;
+        } catch (Exception e) {
+            System.err.println("Error reading chunk cache entry: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static void put(String key, String answer) {
+        if (!Config.chunkCacheEnabled || answer == null) return;
+        long now = System.currentTimeMillis();
+        synchronized (memory) {
+            memory.put(key, new Entry(answer, now));
+        }
+
+        try {
+            if (!CACHE_DIR.exists()) CACHE_DIR.mkdirs();
+            ObjectNode node = mapper.createObjectNode();
+            node.put("created", now);
+            node.put("answer", answer);
+
+            // Write then rename so concurrent readers never see a partial file. Identical chunks
+            // finish concurrently, so each writer gets its own temp file and the rename must be
+            // atomic (REPLACE_EXISTING alone deletes the target first and races).
+            File tmp = Files.createTempFile(CACHE_DIR.toPath(), key, ".tmp").toFile();
+            mapper.writeValue(tmp, node);
+            Files.move(tmp.toPath(), new File(CACHE_DIR, key + ".json").toPath(), StandardCopyOption.ATOMIC_MOVE);
+            evictDisk();
+        } catch (Exception e) {
+            System.err.println("Error writing chunk cache entry: " + e.getMessage());
+        }
+    }
+
+    public static void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        File[] files = CACHE_DIR.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+    }
+
+    // Drops expired files, then the oldest ones until the directory fits the size budget
+    private static synchronized void evictDisk() {
+        File[] files = CACHE_DIR.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) return;
+
+        long ttl = Config.chunkCacheDays * 86_400_000L;
+        long maxBytes = Config.cacheMaxDiskMB * 1024L * 1024L;
+        long now = System.currentTimeMillis();
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long total = 0;
+        for (File f : files) total += f.length();
+
+        for (File f : files) {
+            boolean expired = now - f.lastModified() > ttl;
+            if (!expired && total <= maxBytes) break;
+            total -= f.length();
+            f.delete();
+        }
+    }
+}
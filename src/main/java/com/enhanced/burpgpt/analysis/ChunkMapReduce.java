@@ -0,0 +1,230 @@
+package com.enhanced.burpgpt.analysis;
+
+import com.enhanced.burpgpt.api.AgentExecutor;
+import com.enhanced.burpgpt.api.CancellationToken;
+import com.enhanced.burpgpt.api.OpenAIProvider;
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+// Map-reduce analysis of an oversized response. Chunks are analyzed concurrently, at most
+// `concurrency` at a time, and each returns a JSON list of findings. The findings are merged
+// locally and one reduce call writes the deduplicated report, so wall time is about
+// ceil(chunks / concurrency) + 1 calls instead of one call per chunk back to back.
+public class ChunkMapReduce {
+    public interface Listener {
+        // Called from worker threads as each chunk finishes, in completion order; cached
+        // chunks report from the calling thread before any request is sent for them
+        void onChunkDone(int index, int total, List<Finding> findings, boolean cached);
+
+        void onChunkFailed(int index, int total, String error);
+    }
+
+    private static final String MAP_INSTRUCTIONS =
+        "You are analyzing one part of a large HTTP response that was split into parts analyzed independently. " +
+        "Report only what is visible in this part. Reply with a JSON array and nothing else; each element is " +
+        "{\"title\": short name, \"severity\": \"critical|high|medium|low|info\", \"location\": where in the part " +
+        "(function, parameter, URL or line), \"evidence\": the exact snippet, \"detail\": one or two sentences}. " +
+        "Reply with [] if this part contains nothing of interest.";
+    private static final String REDUCE_INSTRUCTIONS =
+        "The findings below were collected from %d parts of one large HTTP response, analyzed independently. " +
+        "Merge them into the final report: remove duplicates and near-duplicates, keep the highest severity, drop " +
+        "findings that are clearly false positives, and order by severity. Write the report in Markdown with one " +
+        "section per finding (title, severity, location, evidence, impact, recommendation).";
+
+    private final Supplier<OpenAIProvider> providers;
+    private final Tokenizer tokenizer;
+    private final int concurrency;
+    private final CancellationToken cancellation = new CancellationToken();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong cachedPromptTokens = new AtomicLong();
+    private String cacheModel;
+    private String cacheTemplate;
+
+    // Each call gets its own provider from the supplier; the reduce provider keeps its stream listener
+    public ChunkMapReduce(Supplier<OpenAIProvider> providers, Tokenizer tokenizer, int concurrency) {
+        this.providers = providers;
+        this.tokenizer = tokenizer;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    // Reuse map answers from ChunkCache for chunks analyzed before with the same model, skills
+    // and prompt template. The template is the raw one with {REQUEST}/{RESPONSE} unfilled.
+    public void setCacheScope(String model, String promptTemplate) {
+        this.cacheModel = model;
+        this.cacheTemplate = promptTemplate;
+    }
+
+    public void cancel() {
+        cancellation.cancel();
+    }
+
+    public long getPromptTokensTotal() {
+        return promptTokens.get();
+    }
+
+    public long getCachedPromptTokensTotal() {
+        return cachedPromptTokens.get();
+    }
+
+    // The template is split at {RESPONSE}: the part before it, filled in once, is the stable
+    // prefix of every map call; the part after it follows each chunk with its own {CHUNK_INFO}.
+    // Interventions queued while the map runs go into the chunks not yet started and into the reduce.
+    // Returns the final report, or null if cancelled.
+    public String run(String systemPrompt, PromptTemplate template, PromptTemplate.Values values, List<StructuredChunker.Chunk> chunks,
+                      int answerTokens, int reduceInputTokens, Supplier<String> interventions, Listener listener)
+            throws InterruptedException {
+        int total = chunks.size();
+        PromptTemplate[] parts = template.splitAt(PromptTemplate.Placeholder.RESPONSE);
+        StringBuilder head = new StringBuilder(MAP_INSTRUCTIONS).append("\n\n");
+        String stablePrefix = parts[0].appendTo(head, values.copy().set(PromptTemplate.Placeholder.CHUNK_INFO, overallInfo(total))).toString();
+        AtomicReferenceArray<List<Finding>> results = new AtomicReferenceArray<>(total);
+        StringBuilder allInterventions = new StringBuilder();
+        Semaphore slots = new Semaphore(concurrency);
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        String scope = cacheModel != null ? ChunkCache.scope(cacheModel, systemPrompt, cacheTemplate, MAP_INSTRUCTIONS) : null;
+
+        for (int i = 0; i < total && !cancellation.isCancelled(); i++) {
+            String pending = interventions.get();
+            if (!pending.isEmpty()) allInterventions.append(pending);
+            // Interventions change what the answer should contain, so they bypass the cache
+            String cacheKey = scope != null && allInterventions.length() == 0 ? ChunkCache.key(scope, chunks.get(i).text) : null;
+            String cached = cacheKey != null ? ChunkCache.get(cacheKey) : null;
+            if (cached != null) {
+                MetricsRegistry.increment("chunk_cache.hits");
+                List<Finding> findings = Finding.parse(cached, i);
+                results.set(i, findings);
+                listener.onChunkDone(i, total, findings, true);
+                continue;
+            }
+            if (cacheKey != null) MetricsRegistry.increment("chunk_cache.misses");
+
+            slots.acquire();
+            if (cancellation.isCancelled()) {
+                slots.release();
+                break;
+            }
+            String suffix = chunkSuffix(chunks.get(i), i, total, parts[1], values, allInterventions.toString());
+            int index = i;
+            running.add(CompletableFuture.runAsync(() -> {
+                try {
+                    mapChunk(systemPrompt, stablePrefix, suffix, chunks.get(index).text, index, total, answerTokens, cacheKey, results, listener);
+                } finally {
+                    slots.release();
+                }
+            }, AgentExecutor.blocking()));
+        }
+        CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+        if (cancellation.isCancelled()) return null;
+
+        // A part without a result failed; it must not read as a part without issues
+        List<Finding> all = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < total; i++) {
+            if (results.get(i) != null) all.addAll(results.get(i));
+            else failed++;
+        }
+        if (failed == total) {
+            return "Error: All " + total + " parts failed; nothing was analyzed.";
+        }
+        String failedNote = failed > 0 ? "\n\n(" + failed + " of " + total + " parts failed and were not analyzed.)" : "";
+        List<Finding> merged = Finding.dedupe(all);
+        if (merged.isEmpty()) return Finding.toMarkdown(merged) + failedNote;
+
+        String pending = interventions.get();
+        if (!pending.isEmpty()) allInterventions.append(pending);
+        String report = reduce(systemPrompt, merged, total, answerTokens, reduceInputTokens, allInterventions.toString());
+        return report != null ? report + failedNote : null;
+    }
+
+    // {CHUNK_INFO} in the shared prefix can't name a part, only the split
+    public static String overallInfo(int total) {
+        return "Response split into " + total + " parts";
+    }
+
+    public static String partInfo(int index, int total) {
+        return "Part " + (index + 1) + "/" + total;
+    }
+
+    private static String chunkSuffix(StructuredChunker.Chunk chunk, int index, int total, PromptTemplate templateTail,
+                                      PromptTemplate.Values values, String interventions) {
+        String partInfo = partInfo(index, total);
+        StringBuilder suffix = new StringBuilder();
+        suffix.append("--- ").append(partInfo).append(" ---\n");
+        if (chunk.outline != null) suffix.append("[Structure: ").append(chunk.outline).append("]\n");
+        suffix.append(chunk.text).append("\n--- End of ").append(partInfo).append(" ---");
+        templateTail.appendTo(suffix, values.copy().set(PromptTemplate.Placeholder.CHUNK_INFO, partInfo)).append("\n\n");
+        suffix.append(interventions);
+        suffix.append("Report the findings for ").append(partInfo).append(" above as a JSON array.");
+        return suffix.toString();
+    }
+
+    private void mapChunk(String systemPrompt, String stablePrefix, String suffix, String chunk, int index, int total,
+                          int answerTokens, String cacheKey, AtomicReferenceArray<List<Finding>> results, Listener listener) {
+        OpenAIProvider provider = providers.get();
+        provider.setStreamListener(null); // Raw JSON; the parsed findings are rendered instead
+        CancellationToken.Registration registration = cancellation.onCancel(provider::cancel);
+        try {
+            long start = System.nanoTime();
+            String answer = provider.sendRequest(systemPrompt, stablePrefix, suffix, answerTokens);
+            recordChunkMetrics(tokenizer.count(chunk), start);
+            addTokens(provider);
+            if (cancellation.isCancelled()) return;
+            if (answer == null || answer.startsWith("Error")) {
+                listener.onChunkFailed(index, total, answer);
+                return;
+            }
+            if (cacheKey != null) ChunkCache.put(cacheKey, answer);
+            List<Finding> findings = Finding.parse(answer, index);
+            results.set(index, findings);
+            listener.onChunkDone(index, total, findings, false);
+        } catch (Exception e) {
+            if (!cancellation.isCancelled()) listener.onChunkFailed(index, total, "Error: " + e.getMessage());
+        } finally {
+            registration.close();
+        }
+    }
+
+    // Falls back to the locally merged list if the reduce call fails
+    private String reduce(String systemPrompt, List<Finding> merged, int total, int answerTokens, int inputTokens, String interventions) {
+        String findings = Finding.toJson(merged);
+        String cut = tokenizer.truncate(findings, Math.max(500, inputTokens));
+        if (cut.length() < findings.length()) findings = cut + "\n...[remaining findings truncated]";
+
+        String prompt = String.format(REDUCE_INSTRUCTIONS, total) + "\n\n" + interventions + "Findings:\n" + findings;
+        OpenAIProvider provider = providers.get();
+        CancellationToken.Registration registration = cancellation.onCancel(provider::cancel);
+        try {
+            long start = System.nanoTime();
+            String report = provider.sendRequest(systemPrompt, prompt, answerTokens);
+            MetricsRegistry.recordSince("analysis.reduce_ms", start);
+            addTokens(provider);
+            if (cancellation.isCancelled()) return null;
+            if (report == null || report.startsWith("Error")) {
+                return Finding.toMarkdown(merged) + "\n\n(Merge step failed: " + report + ")";
+            }
+            return report;
+        } finally {
+            registration.close();
+        }
+    }
+
+    private void addTokens(OpenAIProvider provider) {
+        promptTokens.addAndGet(provider.getPromptTokensTotal());
+        cachedPromptTokens.addAndGet(provider.getCachedPromptTokensTotal());
+    }
+
+    public static void recordChunkMetrics(int chunkTokens, long startNanos) {
+        long millis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        MetricsRegistry.record("analysis.chunk_ms", millis);
+        MetricsRegistry.record("analysis.chunk_tokens_per_sec", chunkTokens * 1000L / millis);
+        MetricsRegistry.increment("analysis.chunks");
+        MetricsRegistry.increment("analysis.chunk_tokens", chunkTokens);
+    }
+}
@@ -0,0 +1,414 @@
+package com.enhanced.burpgpt.analysis;
+
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Strips low-value bytes from an HTTP message before it goes into a prompt. Binary and media
+// bodies become a one-line summary, data URIs and long base64 runs are cut, homogeneous JSON
+// arrays keep a few samples and a count, runs of near-identical lines collapse and whitespace
+// is squeezed. Every placeholder says what was removed. Headers are never touched, and SVG
+// with script or event handlers is kept because it is an XSS vector.
+public class ContentReducer {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int MIN_MESSAGE_CHARS = 2048; // Smaller messages are left alone
+    private static final int ARRAY_MIN_ITEMS = 12;
+    private static final int ARRAY_KEEP_ITEMS = 5;
+    private static final int DATA_URI_MIN_CHARS = 256;
+    private static final int BASE64_KEEP_CHARS = 32;
+    private static final int SVG_MIN_CHARS = 1024;
+    private static final int SIMILAR_LINES_MIN = 8;
+    private static final int SIMILAR_LINES_KEEP = 3; // Plus the last line of the run
+    private static final int SIMILAR_LINE_MIN_CHARS = 16;
+    private static final int MAX_BINARY_STRINGS = 10;
+    private static final int BINARY_SCAN_BYTES = 64 * 1024; // Magic number and printable strings come from here
+
+    private static final Pattern CONTENT_TYPE = Pattern.compile("(?im)^content-type:\\s*([^;\\r\\n]+)");
+    private static final Pattern BOUNDARY = Pattern.compile("(?i)boundary=\"?([^\";\\r\\n]+)\"?");
+    private static final Pattern DATA_URI = Pattern.compile("data:([\\w.+-]+/[\\w.+-]+)?((?:;[\\w.+-]+(?:=[\\w.+-]+)?)*);base64,([A-Za-z0-9+/=]+)");
+    private static final Pattern BASE64_RUN = Pattern.compile("[A-Za-z0-9+/]{512,}={0,2}");
+    private static final Pattern SVG = Pattern.compile("(?is)<svg\\b[^>]*>.*?</svg>");
+    private static final Pattern SVG_ACTIVE = Pattern.compile("(?i)<script|\\son\\w+\\s*=|javascript:|<foreignObject");
+    private static final Pattern SPACES = Pattern.compile("[ \\t]{2,}");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pattern PRINTABLE_RUN = Pattern.compile("[\\x20-\\x7e]{12,}");
+
+    public static class Result {
+        // Null when the original body was never decoded (binary bodies)
+        public final String original;
+        public final int originalLength;
+        public final String text;
+        // What was removed, e.g. "3 data URIs" -> count
+        public final Map<String, Integer> actions;
+
+        Result(String original, int originalLength, String text, Map<String, Integer> actions) {
+            this.original = original;
+            this.originalLength = originalLength;
+            this.text = text;
+            this.actions = actions;
+        }
+
+        public boolean changed() {
+            return text.length() < originalLength;
+        }
+
+        public String describe() {
+            List<String> parts = new ArrayList<>();
+            for (Map.Entry<String, Integer> e : actions.entrySet()) {
+                parts.add(e.getValue() + " " + e.getKey());
+            }
+            return String.join(", ", parts);
+        }
+    }
+
+    public static Result reduce(String message) {
+        Map<String, Integer> actions = new LinkedHashMap<>();
+        if (message == null || message.length() < MIN_MESSAGE_CHARS) {
+            String text = message == null ? "" : message;
+            return new Result(text, text.length(), text, actions);
+        }
+        long start = System.nanoTime();
+        int bodyStart = StructuredChunker.bodyOffset(message);
+        String headers = message.substring(0, bodyStart);
+        String body = message.substring(bodyStart);
+        String type = contentType(headers);
+
+        String reduced;
+        if (type.startsWith("multipart/")) {
+            reduced = reduceMultipart(headers, body, actions);
+        } else if (isBinary(type, body)) {
+            reduced = binarySummary(type, body, body.length());
+            count(actions, "binary body replaced by a summary", 1);
+        } else {
+            reduced = reduceText(type, body, actions);
+        }
+
+        String text = message;
+        if (reduced.length() < body.length()) {
+            text = headers + reduced;
+        } else {
+            actions.clear();
+        }
+        MetricsRegistry.recordSince("reduce.ms", start);
+        MetricsRegistry.increment("reduce.saved_chars", message.length() - text.length());
+        return new Result(message, message.length(), text, actions);
+    }
+
+    // Binary bodies are summarized from their first bytes without decoding the rest; anything
+    // else is decoded once with the message's charset and reduced as text
+    public static Result reduce(MessageView view) {
+        if (view.isBinary() && !view.contentType().startsWith("multipart/")) {
+            long start = System.nanoTime();
+            String head = new String(view.bodyBytes(BINARY_SCAN_BYTES), StandardCharsets.ISO_8859_1);
+            String text = view.headers() + binarySummary(view.contentType(), head, view.bodyLength());
+            Map<String, Integer> actions = new LinkedHashMap<>();
+            count(actions, "binary body replaced by a summary", 1);
+            MetricsRegistry.recordSince("reduce.ms", start);
+            MetricsRegistry.increment("reduce.saved_chars", Math.max(0, view.length() - text.length()));
+            return new Result(null, view.length(), text, actions);
+        }
+        return reduce(view.text());
+    }
+
+    private static String contentType(String headers) {
+        Matcher m = CONTENT_TYPE.matcher(headers);
+        return m.find() ? m.group(1).trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static boolean isBinary(String type, String body) {
+        if (body.isEmpty()) return false;
+        if (MessageView.isBinaryType(type)) return true;
+        // Untyped or mislabelled: more than 10% control characters in the first 4 KB
+        int n = Math.min(body.length(), 4096);
+        int control = 0;
+        for (int i = 0; i < n; i++) {
+            char c = body.charAt(i);
+            if ((c < 0x20 && c != '\t' && c != '\n' && c != '\r') || c == '\uFFFD') control++;
+        }
+        return control * 10 > n;
+    }
+
+    // "[binary body omitted: image/png (PNG), 48,213 bytes]" plus a few printable strings,
+    // which is where metadata and embedded secrets show up. head is the start of the body
+    // with one char per byte (Latin-1), so magic numbers compare as chars.
+    private static String binarySummary(String type, String head, int totalBytes) {
+        StringBuilder sb = new StringBuilder("[binary body omitted: ");
+        sb.append(type.isEmpty() ? "unknown type" : type);
+        String magic = magic(head);
+        if (magic != null) sb.append(" (").append(magic).append(")");
+        sb.append(String.format(", %,d bytes]", totalBytes));
+
+        Matcher m = PRINTABLE_RUN.matcher(head);
+        int found = 0;
+        while (m.find() && found < MAX_BINARY_STRINGS) {
+            String s = m.group().trim();
+            if (s.length() < 12) continue;
+            if (found++ == 0) sb.append("\nPrintable strings:");
+            sb.append("\n  ").append(s.length() > 80 ? s.substring(0, 80) + "..." : s);
+        }
+        return sb.toString();
+    }
+
+    private static String magic(String body) {
+        if (body.startsWith("\u0089PNG")) return "PNG";
+        if (body.startsWith("GIF8")) return "GIF";
+        if (body.startsWith("\u00ff\u00d8\u00ff")) return "JPEG";
+        if (body.startsWith("%PDF")) return "PDF";
+        if (body.startsWith("PK\u0003\u0004")) return "ZIP";
+        if (body.startsWith("wOFF")) return "WOFF";
+        if (body.startsWith("wOF2")) return "WOFF2";
+        if (body.startsWith("\u0000asm")) return "WebAssembly";
+        if (body.startsWith("\u001f\u008b")) return "gzip";
+        if (body.length() > 12 && body.startsWith("RIFF") && body.startsWith("WEBP", 8)) return "WebP";
+        return null;
+    }
+
+    private static String reduceMultipart(String headers, String body, Map<String, Integer> actions) {
+        Matcher b = BOUNDARY.matcher(headers);
+        if (!b.find()) return reduceText("", body, actions);
+        String delimiter = "--" + b.group(1).trim();
+        StringBuilder out = new StringBuilder();
+        int pos = 0;
+        int next = body.indexOf(delimiter);
+        while (next >= 0) {
+            out.append(reducePart(body.substring(pos, next), actions));
+            int end = next + delimiter.length();
+            out.append(delimiter);
+            pos = end;
+            next = body.indexOf(delimiter, end);
+        }
+        out.append(reducePart(body.substring(pos), actions));
+        return out.toString();
+    }
+
+    private static String reducePart(String part, Map<String, Integer> actions) {
+        int split = StructuredChunker.bodyOffset(part);
+        if (split == 0) return part;
+        String partHeaders = part.substring(0, split);
+        String partBody = part.substring(split);
+        String type = contentType(partHeaders);
+        if (isBinary(type, partBody)) {
+            count(actions, "binary multipart parts replaced by a summary", 1);
+            return partHeaders + binarySummary(type, partBody, partBody.length()) + "\r\n";
+        }
+        return partHeaders + reduceText(type, partBody, actions);
+    }
+
+    private static String reduceText(String type, String body, Map<String, Integer> actions) {
+        String text = body;
+        String trimmed = body.trim();
+        if (type.contains("json") || trimmed.startsWith("{") || trimmed.startsWith("[")) {
+            String json = reduceJson(trimmed, actions);
+            if (json != null) text = json;
+        }
+        text = reduceSvg(text, actions);
+        text = reduceDataUris(text, actions);
+        text = reduceBase64(text, actions);
+        if (!type.contains("json")) {
+            text = squeezeWhitespace(text, actions);
+            text = collapseSimilarLines(text, actions);
+        }
+        return text;
+    }
+
+    // Parsed JSON comes back compact, which removes its whitespace as well; null if not JSON
+    private static String reduceJson(String body, Map<String, Integer> actions) {
+        try {
+            JsonNode root = mapper.readTree(body);
+            if (root == null || !root.isContainerNode()) return null;
+            if (root.isObject() && root.has("mappings") && root.has("version") && root.path("mappings").isTextual()) {
+                int length = root.path("mappings").asText().length();
+                ((ObjectNode) root).put("mappings", "[" + length + " chars of source map mappings omitted]");
+                count(actions, "source map mappings", 1);
+            }
+            root = truncateArrays(root, actions);
+            String compact = mapper.writeValueAsString(root);
+            if (compact.length() < body.length()) count(actions, "JSON bodies minified", 1);
+            return compact;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static JsonNode truncateArrays(JsonNode node, Map<String, Integer> actions) {
+        if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            List<String> names = new ArrayList<>();
+            while (fields.hasNext()) names.add(fields.next().getKey());
+            for (String name : names) object.set(name, truncateArrays(object.get(name), actions));
+            return object;
+        }
+        if (!node.isArray()) return node;
+
+        ArrayNode array = (ArrayNode) node;
+        boolean truncate = array.size() >= ARRAY_MIN_ITEMS && homogeneous(array);
+        int keep = truncate ? ARRAY_KEEP_ITEMS : array.size();
+        ArrayNode out = mapper.createArrayNode();
+        for (int i = 0; i < keep; i++) out.add(truncateArrays(array.get(i), actions));
+        if (truncate) {
+            out.add(new TextNode("[... " + (array.size() - keep) + " more items of the same shape omitted, "
+                + array.size() + " in total]"));
+            count(actions, "homogeneous JSON arrays truncated", 1);
+        }
+        return out;
+    }
+
+    // Same node type throughout, and for objects the same set of keys
+    private static boolean homogeneous(ArrayNode array) {
+        JsonNode first = array.get(0);
+        TreeSet<String> keys = first.isObject() ? fieldNames(first) : null;
+        for (JsonNode item : array) {
+            if (item.getNodeType() != first.getNodeType()) return false;
+            if (keys != null && !keys.equals(fieldNames(item))) return false;
+        }
+        return true;
+    }
+
+    private static TreeSet<String> fieldNames(JsonNode node) {
+        TreeSet<String> names = new TreeSet<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static String reduceSvg(String text, Map<String, Integer> actions) {
+        Matcher m = SVG.matcher(text);
+        StringBuilder out = new StringBuilder();
+        int removed = 0;
+        while (m.find()) {
+            String svg = m.group();
+            if (svg.length() < SVG_MIN_CHARS || SVG_ACTIVE.matcher(svg).find()) {
+                m.appendReplacement(out, Matcher.quoteReplacement(svg));
+            } else {
+                int tagEnd = svg.indexOf('>') + 1;
+                String open = tagEnd > 200 ? svg.substring(0, 200) + "...>" : svg.substring(0, tagEnd);
+                m.appendReplacement(out, Matcher.quoteReplacement(open + "[" + svg.length() + " chars of SVG omitted]</svg>"));
+                removed++;
+            }
+        }
+        m.appendTail(out);
+        count(actions, "inline SVGs", removed);
+        return out.toString();
+    }
+
+    private static String reduceDataUris(String text, Map<String, Integer> actions) {
+        if (!text.contains(";base64,")) return text;
+        Matcher m = DATA_URI.matcher(text);
+        StringBuilder out = new StringBuilder();
+        int removed = 0;
+        while (m.find()) {
+            String payload = m.group(3);
+            if (payload.length() < DATA_URI_MIN_CHARS) {
+                m.appendReplacement(out, Matcher.quoteReplacement(m.group()));
+                continue;
+            }
+            String mime = m.group(1) != null ? m.group(1) : "";
+            String params = m.group(2) != null ? m.group(2) : "";
+            m.appendReplacement(out, Matcher.quoteReplacement("data:" + mime + params + ";base64,"
+                + payload.substring(0, BASE64_KEEP_CHARS) + "...[" + payload.length() + " base64 chars omitted]"));
+            removed++;
+        }
+        m.appendTail(out);
+        count(actions, "data URIs", removed);
+        return out.toString();
+    }
+
+    // Long runs that look like base64 (mixed case and digits); short tokens and JWTs are untouched
+    private static String reduceBase64(String text, Map<String, Integer> actions) {
+        Matcher m = BASE64_RUN.matcher(text);
+        StringBuilder out = new StringBuilder();
+        int removed = 0;
+        while (m.find()) {
+            String run = m.group();
+            if (!looksLikeBase64(run)) {
+                m.appendReplacement(out, Matcher.quoteReplacement(run));
+                continue;
+            }
+            m.appendReplacement(out, Matcher.quoteReplacement(run.substring(0, BASE64_KEEP_CHARS)
+                + "...[" + run.length() + " base64 chars omitted]"));
+            removed++;
+        }
+        m.appendTail(out);
+        count(actions, "base64 blobs", removed);
+        return out.toString();
+    }
+
+    private static boolean looksLikeBase64(String run) {
+        boolean upper = false, lower = false, digit = false;
+        for (int i = 0; i < run.length() && !(upper && lower && digit); i++) {
+            char c = run.charAt(i);
+            if (c >= 'A' && c <= 'Z') upper = true;
+            else if (c >= 'a' && c <= 'z') lower = true;
+            else if (c >= '0' && c <= '9') digit = true;
+        }
+        return upper && lower && digit;
+    }
+
+    // Drops indentation and trailing spaces, squeezes inner runs and keeps at most one blank line
+    private static String squeezeWhitespace(String text, Map<String, Integer> actions) {
+        StringBuilder out = new StringBuilder(text.length());
+        String[] lines = text.split("\r?\n", -1);
+        boolean previousBlank = false;
+        for (int i = 0; i < lines.length; i++) {
+            String squeezed = SPACES.matcher(lines[i].strip()).replaceAll(" ");
+            boolean blank = squeezed.isEmpty();
+            if (blank && previousBlank && i < lines.length - 1) continue;
+            previousBlank = blank;
+            if (i > 0) out.append('\n');
+            out.append(squeezed);
+        }
+        if (out.length() < text.length()) count(actions, "whitespace runs squeezed", 1);
+        return out.toString();
+    }
+
+    // Runs of lines that differ only in their numbers (table rows, list items, log lines)
+    // keep the first few and the last, with a count in between
+    private static String collapseSimilarLines(String text, Map<String, Integer> actions) {
+        String[] lines = text.split("\n", -1);
+        if (lines.length < SIMILAR_LINES_MIN) return text;
+        StringBuilder out = new StringBuilder(text.length());
+        int removed = 0;
+        int i = 0;
+        while (i < lines.length) {
+            String shape = lines[i].length() >= SIMILAR_LINE_MIN_CHARS ? DIGITS.matcher(lines[i]).replaceAll("0") : null;
+            int j = i + 1;
+            if (shape != null) {
+                while (j < lines.length && lines[j].length() >= SIMILAR_LINE_MIN_CHARS
+                    && DIGITS.matcher(lines[j]).replaceAll("0").equals(shape)) {
+                    j++;
+                }
+            }
+            int run = j - i;
+            if (run >= SIMILAR_LINES_MIN) {
+                for (int k = i; k < i + SIMILAR_LINES_KEEP; k++) out.append(lines[k]).append('\n');
+                out.append("[... ").append(run - SIMILAR_LINES_KEEP - 1).append(" similar lines omitted ...]\n");
+                out.append(lines[j - 1]).append('\n');
+                removed++;
+            } else {
+                for (int k = i; k < j; k++) out.append(lines[k]).append('\n');
+            }
+            i = j;
+        }
+        if (out.length() > 0) out.setLength(out.length() - 1);
+        count(actions, "runs of similar lines collapsed", removed);
+        return out.toString();
+    }
+
+    private static void count(Map<String, Integer> actions, String action, int n) {
+        if (n > 0) actions.merge(action, n, Integer::sum);
+    }
+}
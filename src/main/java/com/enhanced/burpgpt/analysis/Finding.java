@@ -0,0 +1,122 @@
+package com.enhanced.burpgpt.analysis;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// One issue reported for a part of a response. Chunk analyses return these as a JSON array
+// so they can be merged and deduplicated before the final report.
+public class Finding {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Pattern ARRAY_START = Pattern.compile("\\[\\s*[{\\]]");
+    private static final String[] SEVERITIES = { "info", "low", "medium", "high", "critical" };
+
+    public String title = "";
+    public String severity = "info";
+    public String location = "";
+    public String evidence = "";
+    public String detail = "";
+    public final TreeSet<Integer> parts = new TreeSet<>();
+
+    public static int severityRank(String severity) {
+        String s = severity != null ? severity.trim().toLowerCase(Locale.ROOT) : "";
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            if (SEVERITIES[i].equals(s)) return i;
+        }
+        return 0;
+    }
+
+    // Reads the first JSON array in a model answer (fences and prose around it are ignored).
+    // An answer without one becomes a single unstructured finding so nothing is lost.
+    public static List<Finding> parse(String answer, int part) {
+        List<Finding> findings = new ArrayList<>();
+        if (answer == null || answer.isBlank()) return findings;
+        Matcher array = ARRAY_START.matcher(answer);
+        int start = array.find() ? array.start() : -1;
+        int end = answer.lastIndexOf(']');
+        if (start >= 0 && end > start) {
+            try {
+                for (JsonNode node : mapper.readTree(answer.substring(start, end + 1))) {
+                    if (!node.isObject()) continue;
+                    Finding f = new Finding();
+                    f.title = node.path("title").asText("");
+                    f.severity = node.path("severity").asText("info").toLowerCase(Locale.ROOT);
+                    f.location = node.path("location").asText("");
+                    f.evidence = node.path("evidence").asText("");
+                    f.detail = node.path("detail").asText(node.path("description").asText(""));
+                    f.parts.add(part);
+                    if (!f.title.isEmpty()) findings.add(f);
+                }
+                return findings;
+            } catch (Exception e) {
+                // Not valid JSON; fall through
+            }
+        }
+        Finding f = new Finding();
+        f.title = "Notes for part " + (part + 1); // Per part, so dedupe keeps them all
+        f.detail = answer.trim();
+        f.parts.add(part);
+        findings.add(f);
+        return findings;
+    }
+
+    // Merges findings with the same title and location; the higher severity wins
+    public static List<Finding> dedupe(Collection<Finding> findings) {
+        Map<String, Finding> merged = new LinkedHashMap<>();
+        for (Finding f : findings) {
+            String key = f.title.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").trim()
+                + "|" + f.location.toLowerCase(Locale.ROOT).trim();
+            Finding existing = merged.get(key);
+            if (existing == null) {
+                merged.put(key, f);
+                continue;
+            }
+            existing.parts.addAll(f.parts);
+            if (severityRank(f.severity) > severityRank(existing.severity)) existing.severity = f.severity;
+            if (existing.evidence.isEmpty()) existing.evidence = f.evidence;
+            if (f.detail.length() > existing.detail.length()) existing.detail = f.detail;
+        }
+        List<Finding> result = new ArrayList<>(merged.values());
+        result.sort((a, b) -> severityRank(b.severity) - severityRank(a.severity));
+        return result;
+    }
+
+    public static String toJson(List<Finding> findings) {
+        ArrayNode array = mapper.createArrayNode();
+        for (Finding f : findings) {
+            ObjectNode node = array.addObject();
+            node.put("title", f.title);
+            node.put("severity", f.severity);
+            node.put("location", f.location);
+            node.put("evidence", f.evidence);
+            node.put("detail", f.detail);
+            ArrayNode parts = node.putArray("parts");
+            for (int p : f.parts) parts.add(p + 1);
+        }
+        return array.toString();
+    }
+
+    public static String toMarkdown(List<Finding> findings) {
+        if (findings.isEmpty()) return "No issues found.";
+        StringBuilder sb = new StringBuilder();
+        for (Finding f : findings) {
+            sb.append("- **[").append(f.severity.toUpperCase(Locale.ROOT)).append("] ").append(f.title).append("**");
+            if (!f.location.isEmpty()) sb.append(" (").append(f.location).append(")");
+            sb.append("\n");
+            if (!f.evidence.isEmpty()) sb.append("  Evidence: `").append(f.evidence.replace("`", "'")).append("`\n");
+            if (!f.detail.isEmpty()) sb.append("  ").append(f.detail).append("\n");
+        }
+        return sb.toString();
+    }
+}
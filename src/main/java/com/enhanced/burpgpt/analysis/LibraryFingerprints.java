@@ -0,0 +1,130 @@
+package com.enhanced.burpgpt.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Banner signatures of common third-party scripts. A JavaScript response whose body opens
+// with one is vendor code: its body is replaced by a note naming the library and version, so
+// the model still judges the version and the headers without reading the code itself. The
+// signature has to start one of the comments the body opens with (past the /*!, /** or //!
+// decoration), and the body can be no larger than a full build of the library; a bundle
+// that merely starts with a vendor banner is bigger than that and is analyzed as usual.
+public class LibraryFingerprints {
+    private static final int BANNER_BYTES = 2048;
+    private static final Pattern REQUEST_PATH = Pattern.compile("^[A-Z]+ (\\S+?)(?:\\?\\S*)? HTTP/");
+    // Checked in order; more specific names first (jQuery UI before jQuery), and a banner with
+    // a version before the same banner without one
+    private static final List<Signature> SIGNATURES = new ArrayList<>();
+
+    static {
+        // Size limits are the unminified development build plus some headroom
+        add("jQuery UI", 640, "jQuery UI - v(\\d+\\.\\d+\\.\\d+)");
+        add("jQuery Migrate", 64, "jQuery Migrate (?:- )?v(\\d+\\.\\d+\\.\\d+)");
+        add("jQuery", 384, "jQuery (?:JavaScript Library )?v(\\d+\\.\\d+\\.\\d+)");
+        add("React", 1280, "@license React(?: v(\\d+\\.\\d+\\.\\d+))?");
+        add("Vue.js", 768, "Vue\\.js v(\\d+\\.\\d+\\.\\d+)");
+        add("AngularJS", 1536, "(?:@license )?AngularJS v(\\d+\\.\\d+\\.\\d+)");
+        add("Angular", 1536, "@license Angular v(\\d+\\.\\d+\\.\\d+)");
+        // "lodash 3.10.1 (Custom Build)", or a 4.x banner followed by its VERSION constant. The
+        // minified 4.x banner names Underscore.js 1.8.3 on the same line, which is not a Lodash version.
+        add("Lodash", 640, "(?i)@license\\s*\\*?\\s*lodash (\\d+\\.\\d+\\.\\d+)");
+        add("Lodash", 640, "@license\\s*\\*?\\s*Lodash\\b[\\s\\S]*?\\bVERSION = '(\\d+\\.\\d+\\.\\d+)'");
+        add("Lodash", 640, "(?i)@license\\s*\\*?\\s*lodash\\b");
+        add("Underscore.js", 128, "Underscore\\.js (\\d+\\.\\d+\\.\\d+)");
+        add("Bootstrap", 320, "Bootstrap v(\\d+\\.\\d+\\.\\d+)");
+        add("Popper", 128, "@popperjs/core v(\\d+\\.\\d+\\.\\d+)");
+        add("Moment.js", 768, "moment\\.js\\s*(?://! version : (\\d+\\.\\d+\\.\\d+))?");
+        add("Axios", 160, "[Aa]xios v(\\d+\\.\\d+\\.\\d+)");
+        add("D3", 768, "https://d3js\\.org v(\\d+\\.\\d+\\.\\d+)");
+        add("Chart.js", 640, "Chart\\.js v(\\d+\\.\\d+\\.\\d+)");
+        add("core-js", 640, "core-js (\\d+\\.\\d+\\.\\d+)");
+        add("Modernizr", 128, "(?i)modernizr (\\d+\\.\\d+\\.\\d+)");
+        add("Sentry", 320, "@sentry/browser[ @](\\d+\\.\\d+\\.\\d+)");
+    }
+
+    private static class Signature {
+        final String name;
+        final long maxBytes;
+        final Pattern pattern;
+
+        Signature(String name, long maxBytes, Pattern pattern) {
+            this.name = name;
+            this.maxBytes = maxBytes;
+            this.pattern = pattern;
+        }
+    }
+
+    private static void add(String name, int maxKB, String regex) {
+        SIGNATURES.add(new Signature(name, maxKB * 1024L, Pattern.compile(regex)));
+    }
+
+    public static class Library {
+        public final String name;
+        public final String version; // null if the banner has none
+
+        Library(String name, String version) {
+            this.name = name;
+            this.version = version;
+        }
+
+        @Override
+        public String toString() {
+            return version != null ? name + " " + version : name;
+        }
+    }
+
+    // The library a JavaScript response body starts with, or null. HTML, JSON and other
+    // bodies are never matched, so an inline mention can't hide application code. Only the
+    // headers and the first 2 KB of the body are decoded.
+    public static Library detect(MessageView response, MessageView request) {
+        if (response == null || response.bodyLength() == 0) return null;
+        String contentType = response.contentType();
+        boolean script = contentType.contains("javascript") || contentType.contains("ecmascript");
+        if (!script && request != null && contentType.isEmpty()) {
+            Matcher path = REQUEST_PATH.matcher(request.headers());
+            script = path.find() && path.group(1).toLowerCase(Locale.ROOT).endsWith(".js");
+        }
+        if (!script) return null;
+
+        String banner = response.body(BANNER_BYTES);
+        for (int start : leadingComments(banner)) {
+            for (Signature signature : SIGNATURES) {
+                Matcher m = signature.pattern.matcher(banner).region(start, banner.length());
+                if (m.lookingAt()) {
+                    if (response.bodyLength() > signature.maxBytes) return null;
+                    String version = m.groupCount() > 0 ? m.group(1) : null;
+                    return new Library(signature.name, version);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Where the text of each comment the body opens with begins: past the opener and its
+    // decoration (/*!, /**, //!, leading stars), skipping a BOM and whitespace in between
+    private static List<Integer> leadingComments(String text) {
+        List<Integer> starts = new ArrayList<>();
+        int i = 0;
+        while (true) {
+            while (i < text.length() && (Character.isWhitespace(text.charAt(i)) || text.charAt(i) == '\uFEFF')) i++;
+            boolean block = text.startsWith("/*", i);
+            if (!block && !text.startsWith("//", i)) return starts;
+            int start = i + 2;
+            while (start < text.length() && (text.charAt(start) == '!' || text.charAt(start) == '*' || Character.isWhitespace(text.charAt(start)))) start++;
+            starts.add(start);
+            int end = block ? text.indexOf("*/", i + 2) : text.indexOf('\n', i + 2);
+            if (end < 0) return starts; // Cut off by the banner limit
+            i = end + (block ? 2 : 1);
+        }
+    }
+
+    // Headers kept, body replaced by the note; the body itself is never decoded
+    public static String omitBody(MessageView response, Library library) {
+        return response.headers() + "[Known third-party library: " + library + ", "
+            + String.format("%,d", response.bodyLength()) + " bytes of vendor code omitted. The code was not "
+            + "analyzed; assess the library version for known vulnerabilities.]";
+    }
+}
@@ -0,0 +1,161 @@
+package com.enhanced.burpgpt.analysis;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpMessage;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Read-only view of a raw HTTP message that decodes lazily. HttpMessage.toString() decodes
+// the whole message on every call; this reads byte slices from the Montoya ByteArray only
+// for the regions a caller asks for (headers, a body prefix, the whole body) and decodes the
+// body with the charset from Content-Type. Binary bodies can be recognized without decoding.
+public class MessageView {
+    public static final MessageView EMPTY = of(new byte[0]);
+
+    private static final int SNIFF_BYTES = 4096;
+    private static final int META_SNIFF_BYTES = 1024;
+    private static final Pattern CONTENT_TYPE = Pattern.compile("(?im)^content-type:\\s*([^\\r\\n]+)");
+    private static final Pattern CHARSET = Pattern.compile("(?i)charset\\s*=\\s*[\"']?([\\w.:-]+)");
+    private static final Pattern XML_ENCODING = Pattern.compile("(?i)<\\?xml[^>]*encoding\\s*=\\s*[\"']([\\w.:-]+)");
+
+    // Slices of the underlying bytes, [from, to)
+    public interface Source {
+        byte[] read(int from, int to);
+    }
+
+    private final Source source;
+    private final int length;
+    private final int bodyOffset;
+    private String headers;
+    private String contentType;
+    private Charset charset;
+    private String body;
+
+    private MessageView(Source source, int length, int bodyOffset) {
+        this.source = source;
+        this.length = length;
+        this.bodyOffset = Math.max(0, Math.min(bodyOffset, length));
+    }
+
+    public static MessageView of(HttpMessage message) {
+        if (message == null) return EMPTY;
+        ByteArray bytes = message.toByteArray();
+        return new MessageView((from, to) -> from >= to ? new byte[0] : bytes.subArray(from, to).getBytes(),
+            bytes.length(), message.bodyOffset());
+    }
+
+    public static MessageView of(byte[] bytes) {
+        return new MessageView((from, to) -> Arrays.copyOfRange(bytes, from, to), bytes.length, bodyOffset(bytes));
+    }
+
+    private static int bodyOffset(byte[] bytes) {
+        for (int i = 0; i + 1 < bytes.length; i++) {
+            if (bytes[i] != '\n') continue;
+            if (bytes[i + 1] == '\n') return i + 2;
+            if (bytes[i + 1] == '\r' && i + 2 < bytes.length && bytes[i + 2] == '\n') return i + 3;
+        }
+        return bytes.length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int bodyLength() {
+        return length - bodyOffset;
+    }
+
+    // Start line and headers, including the blank line; header bytes are Latin-1 by definition
+    public String headers() {
+        if (headers == null) headers = new String(source.read(0, bodyOffset), StandardCharsets.ISO_8859_1);
+        return headers;
+    }
+
+    // Lower-case media type without parameters, or ""
+    public String contentType() {
+        if (contentType == null) {
+            Matcher m = CONTENT_TYPE.matcher(headers());
+            String value = m.find() ? m.group(1) : "";
+            int semicolon = value.indexOf(';');
+            contentType = (semicolon >= 0 ? value.substring(0, semicolon) : value).trim().toLowerCase(Locale.ROOT);
+        }
+        return contentType;
+    }
+
+    // Content-Type charset, then an HTML/XML <meta> or prolog declaration, then UTF-8
+    public Charset charset() {
+        if (charset == null) {
+            Matcher m = CONTENT_TYPE.matcher(headers());
+            String declared = null;
+            if (m.find()) {
+                Matcher c = CHARSET.matcher(m.group(1));
+                if (c.find()) declared = c.group(1);
+            }
+            if (declared == null && (contentType().contains("html") || contentType().contains("xml"))) {
+                String head = new String(bodyBytes(META_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+                Matcher meta = CHARSET.matcher(head);
+                Matcher prolog = XML_ENCODING.matcher(head);
+                if (meta.find()) declared = meta.group(1);
+                else if (prolog.find()) declared = prolog.group(1);
+            }
+            charset = StandardCharsets.UTF_8;
+            if (declared != null) {
+                try {
+                    charset = Charset.forName(declared);
+                } catch (Exception e) {
+                    // Unknown or unsupported name; keep UTF-8
+                }
+            }
+        }
+        return charset;
+    }
+
+    public byte[] bodyBytes(int maxBytes) {
+        return source.read(bodyOffset, bodyOffset + Math.min(bodyLength(), Math.max(0, maxBytes)));
+    }
+
+    public String body() {
+        if (body == null) body = new String(source.read(bodyOffset, length), charset());
+        return body;
+    }
+
+    // Decodes only the first maxBytes of the body; a character split at the cut becomes U+FFFD
+    public String body(int maxBytes) {
+        if (body != null || maxBytes >= bodyLength()) return body();
+        return new String(bodyBytes(maxBytes), charset());
+    }
+
+    public String text() {
+        return headers() + body();
+    }
+
+    public String text(int maxBodyBytes) {
+        return headers() + body(maxBodyBytes);
+    }
+
+    // Media types that are never worth decoding, or a body whose first 4 KB is more than 10%
+    // control bytes
+    public boolean isBinary() {
+        if (bodyLength() == 0) return false;
+        if (isBinaryType(contentType())) return true;
+        byte[] head = bodyBytes(SNIFF_BYTES);
+        int control = 0;
+        for (byte b : head) {
+            if ((b >= 0 && b < 0x20 && b != '\t' && b != '\n' && b != '\r') || b == 0x7f) control++;
+        }
+        return control * 10 > head.length;
+    }
+
+    public static boolean isBinaryType(String type) {
+        if (type.startsWith("image/")) return !type.contains("svg");
+        return type.startsWith("audio/") || type.startsWith("video/") || type.startsWith("font/")
+            || type.contains("font") || type.equals("application/octet-stream") || type.equals("application/pdf")
+            || type.contains("zip") || type.equals("application/wasm") || type.contains("protobuf")
+            || type.startsWith("application/grpc");
+    }
+}
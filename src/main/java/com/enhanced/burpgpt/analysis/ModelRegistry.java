@@ -0,0 +1,76 @@
+package com.enhanced.burpgpt.analysis;
+
+import com.enhanced.burpgpt.Config;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Context window and tokenizer encoding per model family. Matched by longest prefix of the
+// lower-cased model name, so "gpt-4o-mini-2024-07-18" resolves to the "gpt-4o" entry.
+public class ModelRegistry {
+    public static final int DEFAULT_CONTEXT_WINDOW = 16384;
+
+    private static final Map<String, ModelInfo> MODELS = new LinkedHashMap<>();
+
+    public static class ModelInfo {
+        public final int contextWindow;
+        public final String encoding;
+
+        ModelInfo(int contextWindow, String encoding) {
+            this.contextWindow = contextWindow;
+            this.encoding = encoding;
+        }
+    }
+
+    static {
+        register("gpt-4.1", 1047576, Tokenizer.O200K);
+        register("gpt-4o", 128000, Tokenizer.O200K);
+        register("gpt-5", 400000, Tokenizer.O200K);
+        register("chatgpt-4o", 128000, Tokenizer.O200K);
+        register("o1", 200000, Tokenizer.O200K);
+        register("o3", 200000, Tokenizer.O200K);
+        register("o4", 200000, Tokenizer.O200K);
+        register("gpt-4-turbo", 128000, Tokenizer.CL100K);
+        register("gpt-4-32k", 32768, Tokenizer.CL100K);
+        register("gpt-4", 8192, Tokenizer.CL100K);
+        register("gpt-3.5-turbo", 16385, Tokenizer.CL100K);
+        // Non-OpenAI models use their own vocabularies; cl100k counts are a close enough proxy
+        register("claude", 200000, Tokenizer.CL100K);
+        register("deepseek", 65536, Tokenizer.CL100K);
+        register("qwen", 32768, Tokenizer.CL100K);
+        register("glm", 128000, Tokenizer.CL100K);
+        register("moonshot", 128000, Tokenizer.CL100K);
+        register("llama", 128000, Tokenizer.CL100K);
+        register("gemini", 1000000, Tokenizer.CL100K);
+    }
+
+    private static void register(String prefix, int contextWindow, String encoding) {
+        MODELS.put(prefix, new ModelInfo(contextWindow, encoding));
+    }
+
+    public static ModelInfo lookup(String model) {
+        String name = model != null ? model.toLowerCase(Locale.ROOT) : "";
+        int slash = name.lastIndexOf('/'); // e.g. "openai/gpt-4o" on routers
+        if (slash >= 0) name = name.substring(slash + 1);
+
+        ModelInfo best = null;
+        int bestLength = -1;
+        for (Map.Entry<String, ModelInfo> entry : MODELS.entrySet()) {
+            if (name.startsWith(entry.getKey()) && entry.getKey().length() > bestLength) {
+                best = entry.getValue();
+                bestLength = entry.getKey().length();
+            }
+        }
+        return best != null ? best : new ModelInfo(DEFAULT_CONTEXT_WINDOW, Tokenizer.CL100K);
+    }
+
+    public static int contextWindow(String model) {
+        if (Config.contextWindowOverride > 0) return Config.contextWindowOverride;
+        return lookup(model).contextWindow;
+    }
+
+    public static String encoding(String model) {
+        return lookup(model).encoding;
+    }
+}
@@ -0,0 +1,138 @@
+package com.enhanced.burpgpt.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Prompt template parsed once into literal and placeholder segments. Rendering copies each
+// value once into a result of the exact final size, instead of one full copy of a large
+// payload per String.replace and a rescan of the template on every analysis and every chunk.
+// Unknown {NAMES} are kept as literal text.
+public class PromptTemplate {
+    public static final PromptTemplate EMPTY = compile("");
+
+    private static final int BODY_SNIPPET_BYTES = 2048;
+
+    public enum Placeholder {
+        REQUEST,      // Full request (after reduction)
+        RESPONSE,     // Full response, or the chunk in chunked analysis
+        URL,
+        HEADERS,      // Request and response headers without bodies
+        BODY_SNIPPET, // First 2 KB of the response body
+        CHUNK_INFO;   // Which part of a split response is being analyzed; empty if not split
+
+        final String token = "{" + name() + "}";
+    }
+
+    public static class Values {
+        private final String[] values = new String[Placeholder.values().length];
+
+        public Values set(Placeholder placeholder, String value) {
+            values[placeholder.ordinal()] = value;
+            return this;
+        }
+
+        public String get(Placeholder placeholder) {
+            String value = values[placeholder.ordinal()];
+            return value != null ? value : "";
+        }
+
+        public Values copy() {
+            Values copy = new Values();
+            System.arraycopy(values, 0, copy.values, 0, values.length);
+            return copy;
+        }
+    }
+
+    // literals[i] precedes slots[i]; the last literal follows the last slot
+    private final String[] literals;
+    private final Placeholder[] slots;
+    private final int literalLength;
+
+    private PromptTemplate(String[] literals, Placeholder[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        this.literalLength = length;
+    }
+
+    public static PromptTemplate compile(String source) {
+        if (source == null) source = "";
+        List<String> literals = new ArrayList<>();
+        List<Placeholder> slots = new ArrayList<>();
+        int literalStart = 0;
+        for (int i = source.indexOf('{'); i >= 0; i = source.indexOf('{', i + 1)) {
+            for (Placeholder p : Placeholder.values()) {
+                if (source.startsWith(p.token, i)) {
+                    literals.add(source.substring(literalStart, i));
+                    slots.add(p);
+                    literalStart = i + p.token.length();
+                    i = literalStart - 1;
+                    break;
+                }
+            }
+        }
+        literals.add(source.substring(literalStart));
+        return new PromptTemplate(literals.toArray(new String[0]), slots.toArray(new Placeholder[0]));
+    }
+
+    public boolean uses(Placeholder placeholder) {
+        for (Placeholder slot : slots) {
+            if (slot == placeholder) return true;
+        }
+        return false;
+    }
+
+    // The parts before and after the first use of the placeholder; without one, the whole
+    // template comes first and the second part is empty
+    public PromptTemplate[] splitAt(Placeholder placeholder) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != placeholder) continue;
+            String[] headLiterals = Arrays.copyOfRange(literals, 0, i + 1);
+            String[] tailLiterals = Arrays.copyOfRange(literals, i + 1, literals.length);
+            return new PromptTemplate[] {
+                new PromptTemplate(headLiterals, Arrays.copyOfRange(slots, 0, i)),
+                new PromptTemplate(tailLiterals, Arrays.copyOfRange(slots, i + 1, slots.length))
+            };
+        }
+        return new PromptTemplate[] { this, EMPTY };
+    }
+
+    // URL, headers and body snippet of an exchange; only what the template uses is decoded.
+    // REQUEST, RESPONSE and CHUNK_INFO are left to the caller.
+    public Values values(String url, MessageView request, MessageView response) {
+        Values values = new Values();
+        if (uses(Placeholder.URL)) values.set(Placeholder.URL, url);
+        if (uses(Placeholder.HEADERS)) {
+            values.set(Placeholder.HEADERS, request.headers().stripTrailing() + "\n\n" + response.headers().stripTrailing());
+        }
+        if (uses(Placeholder.BODY_SNIPPET)) values.set(Placeholder.BODY_SNIPPET, response.body(BODY_SNIPPET_BYTES));
+        return values;
+    }
+
+    public int length(Values values) {
+        int length = literalLength;
+        for (Placeholder slot : slots) length += values.get(slot).length();
+        return length;
+    }
+
+    // String.join sizes and fills the result in one allocation; a StringBuilder would copy it
+    // again in toString()
+    public String render(Values values) {
+        String[] parts = new String[literals.length + slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            parts[2 * i] = literals[i];
+            parts[2 * i + 1] = values.get(slots[i]);
+        }
+        parts[parts.length - 1] = literals[slots.length];
+        return String.join("", parts);
+    }
+
+    public StringBuilder appendTo(StringBuilder sb, Values values) {
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(literals[i]).append(values.get(slots[i]));
+        }
+        return sb.append(literals[slots.length]);
+    }
+}
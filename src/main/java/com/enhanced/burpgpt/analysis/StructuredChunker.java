@@ -0,0 +1,562 @@
+package com.enhanced.burpgpt.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Splits an HTTP message into chunks at structural boundaries instead of fixed offsets:
+// top-level JSON elements, JS statements and functions, HTML elements, multipart parts.
+// Each format scanner emits candidate cut points scored by nesting depth; the packer fills
+// a chunk up to the token budget and cuts at the shallowest boundary in its back half.
+// Chunks therefore don't need an overlap. Each one carries a short outline of where it sits
+// (JSON path, enclosing HTML elements) and what it contains (functions, forms, keys).
+public class StructuredChunker {
+    private static final double MIN_FILL = 0.5;
+    private static final int MAX_OUTLINE_CHARS = 300;
+    private static final int HEADER_RESERVE_STEP = 256;
+    private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img", "input",
+        "link", "meta", "param", "source", "track", "wbr", "!doctype");
+    private static final Pattern CONTENT_TYPE = Pattern.compile("(?im)^content-type:\\s*([^\\r\\n]+)");
+    private static final Pattern BOUNDARY = Pattern.compile("(?i)boundary=\"?([^\";\\r\\n]+)\"?");
+    private static final Pattern JS_FUNCTION = Pattern.compile(
+        "function\\s*\\*?\\s*([A-Za-z_$][\\w$]*)|([A-Za-z_$][\\w$.]*)\\s*[:=]\\s*(?:async\\s*)?(?:function\\b|\\([^()]*\\)\\s*=>|[A-Za-z_$][\\w$]*\\s*=>)|class\\s+([A-Za-z_$][\\w$]*)");
+    private static final Pattern HTML_FORM = Pattern.compile("(?i)<form\\b[^>]*?(?:action\\s*=\\s*[\"']?([^\"'\\s>]*))?[^>]*>");
+    private static final Pattern TAG_ID = Pattern.compile("(?i)\\sid\\s*=\\s*[\"']?([^\"'\\s>]+)");
+    private static final Pattern TAG_ACTION = Pattern.compile("(?i)\\saction\\s*=\\s*[\"']?([^\"'\\s>]*)");
+    private static final Pattern HTML_TAG_COUNT = Pattern.compile("(?i)<(script|form|input|iframe|a)\\b");
+    private static final Pattern PART_NAME = Pattern.compile("(?i)content-disposition:[^\\r\\n]*?name=\"([^\"]*)\"(?:;\\s*filename=\"([^\"]*)\")?");
+
+    public enum Format { JSON, HTML, JAVASCRIPT, MULTIPART, TEXT }
+
+    public static class Chunk {
+        public final String text;
+        public final String outline;
+
+        public Chunk(String text, String outline) {
+            this.text = text;
+            this.outline = outline;
+        }
+    }
+
+    // Candidate cut points in increasing position order
+    private static class Boundaries {
+        int[] pos = new int[256];
+        int[] depth = new int[256];
+        int size;
+
+        void add(int p, int d) {
+            if (size > 0 && pos[size - 1] >= p) {
+                if (pos[size - 1] == p) depth[size - 1] = Math.min(depth[size - 1], d);
+                return;
+            }
+            if (size == pos.length) {
+                pos = Arrays.copyOf(pos, size * 2);
+                depth = Arrays.copyOf(depth, size * 2);
+            }
+            pos[size] = p;
+            depth[size] = d;
+            size++;
+        }
+    }
+
+    // structured=false keeps the plain overlapping token windows, without outlines
+    public static List<Chunk> split(String message, Tokenizer tokenizer, int maxTokens, int overlapTokens, boolean structured) {
+        List<Chunk> chunks = new ArrayList<>();
+        if (message == null || message.isEmpty()) return chunks;
+        if (!structured) {
+            for (String window : tokenizer.split(message, maxTokens, overlapTokens)) chunks.add(new Chunk(window, null));
+            return chunks;
+        }
+        int bodyStart = bodyOffset(message);
+        String headers = message.substring(0, bodyStart);
+        Format format = detect(headers, message, bodyStart);
+        String multipartBoundary = format == Format.MULTIPART ? multipartBoundary(headers) : null;
+
+        Boundaries b = new Boundaries();
+        b.add(bodyStart, 0);
+        scan(format, message, bodyStart, message.length(), b, multipartBoundary, null, null);
+        b.add(message.length(), 0);
+
+        // The body is packed on its own so its cut points don't depend on the headers, and the
+        // same script or JSON served by another host splits into identical chunks (see
+        // ChunkCache). The headers join the first chunk within a reserve rounded up to
+        // HEADER_RESERVE_STEP tokens, or go alone if they are too big.
+        int headerTokens = bodyStart > 0 ? tokenizer.count(headers) : 0;
+        boolean headersAlone = headerTokens > maxTokens / 2;
+        int reserve = headersAlone ? 0 : (headerTokens + HEADER_RESERVE_STEP - 1) / HEADER_RESERVE_STEP * HEADER_RESERVE_STEP;
+        List<int[]> ranges = pack(message, b, tokenizer, maxTokens, Math.max(1, maxTokens - reserve));
+        if (bodyStart > 0) {
+            if (headersAlone || ranges.isEmpty()) {
+                ranges.add(0, new int[] { 0, bodyStart, headerTokens > maxTokens ? 1 : 0 });
+            } else {
+                ranges.get(0)[0] = 0;
+            }
+        }
+        int[] starts = new int[ranges.size()];
+        for (int i = 0; i < starts.length; i++) starts[i] = ranges.get(i)[0];
+        String[] contexts = new String[starts.length];
+        scan(format, message, bodyStart, message.length(), new Boundaries(), multipartBoundary, starts, contexts);
+
+        for (int i = 0; i < ranges.size(); i++) {
+            int[] range = ranges.get(i);
+            String text = message.substring(range[0], range[1]);
+            if (range[2] == 1) {
+                // A single element larger than the budget: fall back to token windows
+                List<String> pieces = tokenizer.split(text, maxTokens, overlapTokens);
+                for (int p = 0; p < pieces.size(); p++) {
+                    chunks.add(new Chunk(pieces.get(p), outline(format, contexts[i], pieces.get(p))
+                        + " (oversized element, piece " + (p + 1) + "/" + pieces.size() + ")"));
+                }
+            } else {
+                chunks.add(new Chunk(text, outline(format, contexts[i], text)));
+            }
+        }
+        return chunks;
+    }
+
+    public static Format detect(String headers, String message, int bodyStart) {
+        Matcher m = CONTENT_TYPE.matcher(headers);
+        String type = m.find() ? m.group(1).toLowerCase(Locale.ROOT) : "";
+        if (type.contains("json")) return Format.JSON;
+        if (type.contains("multipart/")) return Format.MULTIPART;
+        if (type.contains("html") || type.contains("xml")) return Format.HTML;
+        if (type.contains("javascript") || type.contains("ecmascript")) return Format.JAVASCRIPT;
+
+        // Sniff the first non-blank character of the body
+        for (int i = bodyStart; i < Math.min(message.length(), bodyStart + 512); i++) {
+            char c = message.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+            if (c == '{' || c == '[') return Format.JSON;
+            if (c == '<') return Format.HTML;
+            break;
+        }
+        return Format.TEXT;
+    }
+
+    static int bodyOffset(String message) {
+        int crlf = message.indexOf("\r\n\r\n");
+        int lf = message.indexOf("\n\n");
+        if (crlf >= 0 && (lf < 0 || crlf < lf)) return crlf + 4;
+        if (lf >= 0) return lf + 2;
+        return 0;
+    }
+
+    private static String multipartBoundary(String headers) {
+        Matcher m = BOUNDARY.matcher(headers);
+        return m.find() ? m.group(1).trim() : null;
+    }
+
+    // Greedy packing; each range is {start, end, oversized}. Span sizes are estimated from the
+    // body's average chars per token (counting thousands of tiny segments separately
+    // overestimates badly), then each chosen chunk is counted exactly and shrunk if it overshoots.
+    private static List<int[]> pack(String text, Boundaries b, Tokenizer tokenizer, int maxTokens, int firstMaxTokens) {
+        int bodyLength = text.length() - b.pos[0];
+        double tokensPerChar = Math.max(0.05, tokenizer.count(text.substring(b.pos[0])) / (double) Math.max(1, bodyLength));
+        List<int[]> ranges = new ArrayList<>();
+        int last = b.size - 1;
+        int start = 0;
+        while (start < last) {
+            int limit = ranges.isEmpty() ? firstMaxTokens : maxTokens;
+            double budget = limit;
+            int best = -1;
+            for (int attempt = 0; attempt < 4; attempt++) {
+                best = pickCut(b, start, last, tokensPerChar, budget);
+                if (best < 0) break;
+                int actual = tokenizer.count(text.substring(b.pos[start], b.pos[best]));
+                if (actual <= limit) break;
+                budget = budget * limit / actual * 0.98;
+                if (attempt == 3) best = -1;
+            }
+            if (best < 0) {
+                ranges.add(new int[] { b.pos[start], b.pos[start + 1], 1 });
+                start++;
+                continue;
+            }
+            if (b.pos[best] > b.pos[start]) ranges.add(new int[] { b.pos[start], b.pos[best], 0 });
+            start = best;
+        }
+        return ranges;
+    }
+
+    // Shallowest boundary between half and full budget (the furthest on ties); -1 if even the
+    // first segment doesn't fit
+    private static int pickCut(Boundaries b, int start, int last, double tokensPerChar, double budget) {
+        int best = -1;
+        int bestDepth = Integer.MAX_VALUE;
+        int furthest = -1;
+        for (int j = start + 1; j <= last; j++) {
+            double tokens = (b.pos[j] - b.pos[start]) * tokensPerChar;
+            if (tokens > budget) break;
+            furthest = j;
+            if (j == last) return j;
+            if (tokens >= budget * MIN_FILL && b.depth[j] <= bestDepth) {
+                best = j;
+                bestDepth = b.depth[j];
+            }
+        }
+        return best >= 0 ? best : furthest;
+    }
+
+    // Emits boundaries into b; with queries (sorted positions), also records the structural
+    // context at each of them into contexts
+    private static void scan(Format format, String text, int from, int to, Boundaries b, String multipartBoundary,
+                             int[] queries, String[] contexts) {
+        switch (format) {
+            case JSON:
+                scanJson(text, from, to, b, queries, contexts);
+                break;
+            case HTML:
+                scanHtml(text, from, to, b, queries, contexts);
+                break;
+            case JAVASCRIPT:
+                scanJs(text, from, to, 0, b);
+                break;
+            case MULTIPART:
+                scanMultipart(text, from, to, multipartBoundary, b);
+                break;
+            default:
+                scanText(text, from, to, 0, b);
+        }
+        if (contexts != null) {
+            for (int i = 0; i < contexts.length; i++) {
+                if (contexts[i] == null) contexts[i] = "";
+            }
+        }
+    }
+
+    private static void scanJson(String text, int from, int to, Boundaries b, int[] queries, String[] contexts) {
+        char[] kinds = new char[64];
+        String[] keys = new String[64];
+        int[] indexes = new int[64];
+        int depth = 0;
+        boolean inString = false;
+        boolean escape = false;
+        boolean expectKey = false;
+        int stringStart = 0;
+        String lastString = null;
+        int q = 0;
+
+        for (int i = from; i < to; i++) {
+            if (queries != null) {
+                while (q < queries.length && queries[q] <= i) {
+                    contexts[q++] = jsonPath(kinds, keys, indexes, depth);
+                }
+            }
+            char c = text.charAt(i);
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (expectKey) lastString = text.substring(stringStart, Math.min(i, stringStart + 40));
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    inString = true;
+                    stringStart = i + 1;
+                    break;
+                case '{':
+                case '[':
+                    if (depth == kinds.length) {
+                        kinds = Arrays.copyOf(kinds, depth * 2);
+                        keys = Arrays.copyOf(keys, depth * 2);
+                        indexes = Arrays.copyOf(indexes, depth * 2);
+                    }
+                    kinds[depth] = c;
+                    keys[depth] = null;
+                    indexes[depth] = 0;
+                    depth++;
+                    expectKey = c == '{';
+                    break;
+                case '}':
+                case ']':
+                    if (depth > 0) depth--;
+                    expectKey = false;
+                    b.add(i + 1, depth);
+                    break;
+                case ':':
+                    if (depth > 0 && kinds[depth - 1] == '{') keys[depth - 1] = lastString;
+                    expectKey = false;
+                    break;
+                case ',':
+                    if (depth > 0) {
+                        if (kinds[depth - 1] == '[') indexes[depth - 1]++;
+                        expectKey = kinds[depth - 1] == '{';
+                    }
+                    b.add(i + 1, Math.max(0, depth - 1));
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (queries != null) {
+            while (q < queries.length) contexts[q++] = jsonPath(kinds, keys, indexes, depth);
+        }
+    }
+
+    private static String jsonPath(char[] kinds, String[] keys, int[] indexes, int depth) {
+        StringBuilder sb = new StringBuilder("$");
+        for (int d = 0; d < depth && sb.length() < 120; d++) {
+            if (kinds[d] == '[') {
+                sb.append('[').append(indexes[d]).append(']');
+            } else if (keys[d] != null && d < depth - 1) {
+                sb.append('.').append(keys[d]);
+            }
+        }
+        return "JSON path at start: " + sb;
+    }
+
+    private static void scanHtml(String text, int from, int to, Boundaries b, int[] queries, String[] contexts) {
+        List<String> stack = new ArrayList<>(); // Tag names, for matching closing tags
+        List<String> labels = new ArrayList<>(); // Same elements as shown in the outline
+        int q = 0;
+        int i = from;
+        while (i < to) {
+            int lt = text.indexOf('<', i);
+            if (lt < 0 || lt >= to) lt = to;
+            // Text content: cut at line breaks, below any tag boundary
+            for (int k = i; k < lt; k++) {
+                if (text.charAt(k) == '\n') b.add(k + 1, stack.size() + 2);
+            }
+            if (queries != null) {
+                while (q < queries.length && queries[q] <= lt) contexts[q++] = htmlPath(labels);
+            }
+            if (lt >= to) break;
+
+            if (text.startsWith("<!--", lt)) {
+                int end = text.indexOf("-->", lt + 4);
+                i = end < 0 ? to : Math.min(to, end + 3);
+                continue;
+            }
+            int gt = tagEnd(text, lt, to);
+            boolean closing = lt + 1 < to && text.charAt(lt + 1) == '/';
+            String name = tagName(text, closing ? lt + 2 : lt + 1, gt);
+            if (name.isEmpty()) {
+                i = lt + 1;
+                continue;
+            }
+            if (closing) {
+                int idx = stack.lastIndexOf(name);
+                if (idx >= 0) {
+                    while (stack.size() > idx) {
+                        stack.remove(stack.size() - 1);
+                        labels.remove(labels.size() - 1);
+                    }
+                }
+                b.add(Math.min(to, gt + 1), stack.size());
+                i = gt + 1;
+                continue;
+            }
+
+            b.add(lt, stack.size());
+            boolean selfClosing = gt > lt && text.charAt(gt - 1) == '/';
+            if (VOID_ELEMENTS.contains(name) || selfClosing) {
+                i = gt + 1;
+                continue;
+            }
+            if (name.equals("script") || name.equals("style")) {
+                int close = indexOfIgnoreCase(text, "</" + name, gt + 1, to);
+                if (close < 0) close = to;
+                if (name.equals("script")) scanJs(text, gt + 1, close, stack.size() + 1, b);
+                i = close;
+                stack.add(name);
+                labels.add(describeTag(text, lt, gt, name));
+                continue;
+            }
+            stack.add(name);
+            labels.add(describeTag(text, lt, gt, name));
+            i = gt + 1;
+        }
+        if (queries != null) {
+            while (q < queries.length) contexts[q++] = htmlPath(labels);
+        }
+    }
+
+    private static int tagEnd(String text, int lt, int to) {
+        char quote = 0;
+        for (int k = lt + 1; k < to; k++) {
+            char c = text.charAt(k);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return k;
+            }
+        }
+        return to - 1;
+    }
+
+    private static String tagName(String text, int start, int end) {
+        int k = start;
+        while (k < end && k < text.length()) {
+            char c = text.charAt(k);
+            if (!(Character.isLetterOrDigit(c) || c == '-' || c == ':' || c == '!')) break;
+            k++;
+        }
+        return text.substring(start, k).toLowerCase(Locale.ROOT);
+    }
+
+    // "div#main" / "form[action=/login]" for the outline
+    private static String describeTag(String text, int lt, int gt, String name) {
+        String tag = text.substring(lt, Math.min(gt, lt + 300));
+        Matcher id = TAG_ID.matcher(tag);
+        if (id.find()) return name + "#" + id.group(1);
+        if (name.equals("form")) {
+            Matcher action = TAG_ACTION.matcher(tag);
+            if (action.find()) return name + "[action=" + action.group(1) + "]";
+        }
+        return name;
+    }
+
+    private static String htmlPath(List<String> labels) {
+        if (labels.isEmpty()) return "";
+        StringBuilder sb = new StringBuilder("Inside: ");
+        int first = Math.max(0, labels.size() - 6);
+        if (first > 0) sb.append("... > ");
+        for (int k = first; k < labels.size(); k++) {
+            if (k > first) sb.append(" > ");
+            sb.append(labels.get(k));
+        }
+        return sb.toString();
+    }
+
+    // Statement and block boundaries at brace depth, skipping strings and comments. Regex
+    // literals are not recognised; a quote inside one only shifts the scores until the next line.
+    private static void scanJs(String text, int from, int to, int baseDepth, Boundaries b) {
+        int depth = 0;
+        char quote = 0;
+        boolean escape = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == quote || (c == '\n' && quote != '`')) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (c == '/' && i + 1 < to) {
+                char next = text.charAt(i + 1);
+                if (next == '/') {
+                    int end = text.indexOf('\n', i);
+                    i = end < 0 || end >= to ? to - 1 : end - 1;
+                    continue;
+                }
+                if (next == '*') {
+                    int end = text.indexOf("*/", i + 2);
+                    i = end < 0 || end >= to ? to - 1 : end + 1;
+                    continue;
+                }
+            }
+            switch (c) {
+                case '"':
+                case '\'':
+                case '`':
+                    quote = c;
+                    break;
+                case '{':
+                case '(':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ')':
+                case ']':
+                    if (depth > 0) depth--;
+                    if (c == '}') b.add(i + 1, baseDepth + depth);
+                    break;
+                case ';':
+                    b.add(i + 1, baseDepth + depth);
+                    break;
+                case '\n':
+                    b.add(i + 1, baseDepth + depth + 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void scanMultipart(String text, int from, int to, String boundary, Boundaries b) {
+        if (boundary == null) {
+            scanText(text, from, to, 0, b);
+            return;
+        }
+        String delimiter = "--" + boundary;
+        int i = text.indexOf(delimiter, from);
+        int partStart = from;
+        while (i >= 0 && i < to) {
+            scanText(text, partStart, i, 1, b);
+            b.add(i, 0);
+            partStart = i + delimiter.length();
+            i = text.indexOf(delimiter, partStart);
+        }
+        scanText(text, partStart, to, 1, b);
+    }
+
+    private static void scanText(String text, int from, int to, int baseDepth, Boundaries b) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) != '\n') continue;
+            boolean blank = i + 1 < to && (text.charAt(i + 1) == '\n' || text.startsWith("\r\n", i + 1));
+            b.add(i + 1, baseDepth + (blank ? 0 : 1));
+        }
+    }
+
+    private static int indexOfIgnoreCase(String text, String needle, int from, int to) {
+        int n = needle.length();
+        for (int i = from; i + n <= to; i++) {
+            if (text.regionMatches(true, i, needle, 0, n)) return i;
+        }
+        return -1;
+    }
+
+    private static String outline(Format format, String context, String chunk) {
+        StringBuilder sb = new StringBuilder(format.name());
+        if (context != null && !context.isEmpty()) sb.append("; ").append(context);
+
+        Set<String> items = new LinkedHashSet<>();
+        if (format == Format.HTML || format == Format.JAVASCRIPT) {
+            if (format == Format.HTML) {
+                int[] counts = new int[5];
+                String[] names = { "script", "form", "input", "iframe", "a" };
+                Matcher m = HTML_TAG_COUNT.matcher(chunk);
+                while (m.find()) {
+                    counts[Arrays.asList(names).indexOf(m.group(1).toLowerCase(Locale.ROOT))]++;
+                }
+                for (int k = 0; k < names.length; k++) {
+                    if (counts[k] > 0) items.add(counts[k] + " <" + names[k] + ">");
+                }
+                Matcher form = HTML_FORM.matcher(chunk);
+                while (form.find() && items.size() < 12) {
+                    if (form.group(1) != null) items.add("form action=" + form.group(1));
+                }
+            }
+            Matcher fn = JS_FUNCTION.matcher(chunk);
+            int functions = 0;
+            while (fn.find() && functions < 12) {
+                String name = fn.group(1) != null ? fn.group(1) : fn.group(2) != null ? fn.group(2) : fn.group(3);
+                if (items.add(name + "()")) functions++;
+            }
+        } else if (format == Format.MULTIPART) {
+            Matcher part = PART_NAME.matcher(chunk);
+            while (part.find() && items.size() < 12) {
+                items.add("part " + part.group(1) + (part.group(2) != null ? " (file " + part.group(2) + ")" : ""));
+            }
+        }
+        if (!items.isEmpty()) sb.append("; contains: ").append(String.join(", ", items));
+        return sb.length() > MAX_OUTLINE_CHARS ? sb.substring(0, MAX_OUTLINE_CHARS) + "..." : sb.toString();
+    }
+}
@@ -0,0 +1,390 @@
+package com.enhanced.burpgpt.analysis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Byte-level BPE tokenizer compatible with tiktoken's cl100k_base and o200k_base encodings.
+// Rank tables are read from ~/.burpgpt_tokenizers/<encoding>.tiktoken, falling back to the
+// cl100k table bundled on the classpath (jtokkit, pulled in by openai-gpt3-java). When no
+// table is available at all, counts are estimated from character classes.
+public class Tokenizer {
+    public static final String CL100K = "cl100k_base";
+    public static final String O200K = "o200k_base";
+
+    private static final File TOKENIZER_DIR = new File(System.getProperty("user.home") + File.separator + ".burpgpt_tokenizers");
+    private static final String[] CLASSPATH_LOCATIONS = { "/tokenizers/", "/com/knuddels/jtokkit/" };
+
+    private static final Pattern CL100K_PATTERN = Pattern.compile(
+        "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+        Pattern.UNICODE_CHARACTER_CLASS);
+    private static final Pattern O200K_PATTERN = Pattern.compile(
+        "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+        Pattern.UNICODE_CHARACTER_CLASS);
+
+    // Merging is quadratic in piece length; very long pieces (e.g. a 50 KB identifier in
+    // minified JS) are merged in windows, which can only over-count by a token per window.
+    private static final int MAX_PIECE_BYTES = 2048;
+
+    private static final Map<String, Tokenizer> instances = new ConcurrentHashMap<>();
+
+    private final String encoding;
+    private final Pattern pattern;
+    private final Map<ByteSlice, Integer> ranks;
+
+    private Tokenizer(String encoding, Pattern pattern, Map<ByteSlice, Integer> ranks) {
+        this.encoding = encoding;
+        this.pattern = pattern;
+        this.ranks = ranks;
+    }
+
+    public static Tokenizer forModel(String model) {
+        return forEncoding(ModelRegistry.encoding(model));
+    }
+
+    public static Tokenizer forEncoding(String encoding) {
+        return instances.computeIfAbsent(encoding, Tokenizer::load);
+    }
+
+    private static Tokenizer load(String encoding) {
+        Pattern pattern = O200K.equals(encoding) ? O200K_PATTERN : CL100K_PATTERN;
+        Map<ByteSlice, Integer> ranks = loadRanks(encoding);
+        if (ranks != null) {
+            return new Tokenizer(encoding, pattern, ranks);
+        }
+
+        // o200k is not bundled; cl100k is within a few percent on HTTP traffic
+        if (!CL100K.equals(encoding)) {
+            ranks = loadRanks(CL100K);
+            if (ranks != null) {
+                System.err.println("Tokenizer: " + encoding + " ranks not found in " + TOKENIZER_DIR + ", using " + CL100K);
+                return new Tokenizer(CL100K, CL100K_PATTERN, ranks);
+            }
+        }
+        System.err.println("Tokenizer: no rank table for " + encoding + ", using estimated counts");
+        return new Tokenizer(encoding, pattern, null);
+    }
+
+    private static Map<ByteSlice, Integer> loadRanks(String encoding) {
+        String fileName = encoding + ".tiktoken";
+        try {
+            File file = new File(TOKENIZER_DIR, fileName);
+            if (file.isFile()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    return parseRanks(in);
+                }
+            }
+            for (String location : CLASSPATH_LOCATIONS) {
+                InputStream in = Tokenizer.class.getResourceAsStream(location + fileName);
+                if (in != null) {
+                    try (InputStream stream = in) {
+                        return parseRanks(stream);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading tokenizer " + encoding + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    // .tiktoken format: one "<base64 token bytes> <rank>" pair per line
+    private static Map<ByteSlice, Integer> parseRanks(InputStream in) throws Exception {
+        Map<ByteSlice, Integer> ranks = new HashMap<>(262144);
+        Base64.Decoder decoder = Base64.getDecoder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) continue;
+                byte[] bytes = decoder.decode(line.substring(0, space));
+                ranks.put(new ByteSlice(bytes, 0, bytes.length), Integer.parseInt(line.substring(space + 1).trim()));
+            }
+        }
+        return ranks;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public boolean isExact() {
+        return ranks != null;
+    }
+
+    public int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        Counter counter = new Counter();
+        Matcher m = pattern.matcher(text);
+        int total = 0;
+        while (m.find()) {
+            total += counter.countPiece(text, m.start(), m.end());
+        }
+        return total;
+    }
+
+    // Keeps the beginning of the text, cut at a piece boundary
+    public String truncate(String text, int maxTokens) {
+        if (text == null) return null;
+        Pieces pieces = pieces(text);
+        if (pieces.totalTokens <= maxTokens) return text;
+        int sum = 0;
+        int end = 0;
+        for (int i = 0; i < pieces.size; i++) {
+            if (sum + pieces.tokens[i] > maxTokens) break;
+            sum += pieces.tokens[i];
+            end = pieces.ends[i];
+        }
+        return text.substring(0, end);
+    }
+
+    // Keeps the end of the text, cut at a piece boundary
+    public String keepTail(String text, int maxTokens) {
+        if (text == null) return null;
+        Pieces pieces = pieces(text);
+        if (pieces.totalTokens <= maxTokens) return text;
+        int sum = 0;
+        int start = text.length();
+        for (int i = pieces.size - 1; i >= 0; i--) {
+            if (sum + pieces.tokens[i] > maxTokens) break;
+            sum += pieces.tokens[i];
+            start = pieces.starts[i];
+        }
+        return text.substring(start);
+    }
+
+    // Splits text into chunks of at most maxTokens, where consecutive chunks share up to
+    // overlapTokens of context. Cuts fall between pre-tokenizer pieces, never inside a word.
+    public List<String> split(String text, int maxTokens, int overlapTokens) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null || text.isEmpty()) return chunks;
+        maxTokens = Math.max(1, maxTokens);
+        overlapTokens = Math.max(0, Math.min(overlapTokens, maxTokens / 2));
+
+        Pieces pieces = pieces(text);
+        if (pieces.totalTokens <= maxTokens) {
+            chunks.add(text);
+            return chunks;
+        }
+
+        int i = 0;
+        while (i < pieces.size) {
+            if (pieces.tokens[i] > maxTokens) {
+                splitOversized(text, pieces.starts[i], pieces.ends[i], pieces.tokens[i], maxTokens, chunks);
+                i++;
+                continue;
+            }
+            int j = i;
+            int sum = 0;
+            while (j < pieces.size && sum + pieces.tokens[j] <= maxTokens) {
+                sum += pieces.tokens[j];
+                j++;
+            }
+            int start = i == 0 ? 0 : pieces.starts[i];
+            int end = j == pieces.size ? text.length() : pieces.ends[j - 1];
+            chunks.add(text.substring(start, end));
+            if (j >= pieces.size) break;
+
+            // Back up into the chunk just emitted for the overlap, always moving forward
+            int k = j;
+            int overlap = 0;
+            while (k - 1 > i && overlap + pieces.tokens[k - 1] <= overlapTokens) {
+                overlap += pieces.tokens[k - 1];
+                k--;
+            }
+            i = k;
+        }
+        return chunks;
+    }
+
+    private static void splitOversized(String text, int start, int end, int tokens, int maxTokens, List<String> chunks) {
+        int parts = (tokens + maxTokens - 1) / maxTokens;
+        int step = Math.max(1, (end - start + parts - 1) / parts);
+        for (int s = start; s < end; s += step) {
+            int e = Math.min(end, s + step);
+            // Don't separate a surrogate pair
+            if (e < end && Character.isHighSurrogate(text.charAt(e - 1))) e++;
+            chunks.add(text.substring(s, e));
+            s = e - step;
+        }
+    }
+
+    private Pieces pieces(String text) {
+        Pieces pieces = new Pieces();
+        Counter counter = new Counter();
+        Matcher m = pattern.matcher(text);
+        while (m.find()) {
+            pieces.add(m.start(), m.end(), counter.countPiece(text, m.start(), m.end()));
+        }
+        return pieces;
+    }
+
+    private static class Pieces {
+        int[] starts = new int[256];
+        int[] ends = new int[256];
+        int[] tokens = new int[256];
+        int size;
+        int totalTokens;
+
+        void add(int start, int end, int count) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                tokens = Arrays.copyOf(tokens, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            tokens[size] = count;
+            size++;
+            totalTokens += count;
+        }
+    }
+
+    // Per-call scratch state so the shared tokenizer stays thread-safe without locking
+    private class Counter {
+        private final ByteSlice probe = new ByteSlice(null, 0, 0);
+        private byte[] buffer = new byte[256];
+        private int[] bounds = new int[257];
+        private int[] pairRanks = new int[256];
+
+        int countPiece(String text, int start, int end) {
+            int length = encodeUtf8(text, start, end);
+            if (ranks == null) {
+                return estimate(text, start, end, length);
+            }
+            int total = 0;
+            for (int offset = 0; offset < length; offset += MAX_PIECE_BYTES) {
+                total += countBytes(offset, Math.min(length, offset + MAX_PIECE_BYTES));
+            }
+            return total;
+        }
+
+        private int countBytes(int from, int to) {
+            int n = to - from;
+            if (n <= 1 || rank(from, to) != Integer.MAX_VALUE) return 1;
+
+            // Boundaries of the current parts; parts i covers [bounds[i], bounds[i + 1])
+            if (bounds.length < n + 1) {
+                bounds = new int[n + 1];
+                pairRanks = new int[n];
+            }
+            int parts = n;
+            for (int i = 0; i <= n; i++) bounds[i] = from + i;
+            for (int i = 0; i < parts - 1; i++) pairRanks[i] = rank(bounds[i], bounds[i + 2]);
+
+            while (parts > 1) {
+                int best = Integer.MAX_VALUE;
+                int bestIndex = -1;
+                for (int i = 0; i < parts - 1; i++) {
+                    if (pairRanks[i] < best) {
+                        best = pairRanks[i];
+                        bestIndex = i;
+                    }
+                }
+                if (bestIndex < 0) break;
+
+                // Merge parts bestIndex and bestIndex + 1
+                System.arraycopy(bounds, bestIndex + 2, bounds, bestIndex + 1, parts - bestIndex - 1);
+                System.arraycopy(pairRanks, bestIndex + 1, pairRanks, bestIndex, parts - bestIndex - 2);
+                parts--;
+                if (bestIndex < parts - 1) pairRanks[bestIndex] = rank(bounds[bestIndex], bounds[bestIndex + 2]);
+                if (bestIndex > 0) pairRanks[bestIndex - 1] = rank(bounds[bestIndex - 1], bounds[bestIndex + 1]);
+            }
+            return parts;
+        }
+
+        private int rank(int from, int to) {
+            Integer r = ranks.get(probe.set(buffer, from, to - from));
+            return r != null ? r : Integer.MAX_VALUE;
+        }
+
+        private int encodeUtf8(String text, int start, int end) {
+            int needed = (end - start) * 3;
+            if (buffer.length < needed) buffer = new byte[needed];
+            int pos = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    buffer[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, text.charAt(++i));
+                    buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    if (Character.isSurrogate(c)) c = '?'; // Lone surrogate, as String.getBytes would
+                    buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                    buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return pos;
+        }
+    }
+
+    // Rough per-piece estimate used only when no rank table could be loaded
+    private static int estimate(String text, int start, int end, int utf8Length) {
+        int chars = end - start;
+        if (utf8Length > chars) return Math.max(1, utf8Length / 2);
+        char first = text.charAt(end - 1);
+        if (Character.isLetter(first)) return Math.max(1, (chars + 3) / 4);
+        if (Character.isDigit(first)) return Math.max(1, (chars + 2) / 3);
+        if (Character.isWhitespace(first)) return 1;
+        return Math.max(1, (chars + 1) / 2);
+    }
+
+    // Hash key over a byte range; the probe instance is re-pointed for lookups to avoid copies
+    private static final class ByteSlice {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+        private int hash;
+
+        ByteSlice(byte[] bytes, int offset, int length) {
+            if (bytes != null) set(bytes, offset, length);
+        }
+
+        ByteSlice set(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + bytes[i];
+            }
+            this.hash = h;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ByteSlice)) return false;
+            ByteSlice other = (ByteSlice) o;
+            return length == other.length && hash == other.hash
+                && Arrays.equals(bytes, offset, offset + length, other.bytes, other.offset, other.offset + other.length);
+        }
+    }
+}
@@ -2,28 +2,33 @@ package com.enhanced.burpgpt.api;
 
 import okhttp3.*;
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonArray;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// One LLM backend (endpoint + key + model). Besides the simple one-shot request helpers,
+// each backend carries a routing weight and a health / latency record used by LLMRouter.
 public abstract class APIProvider {
+    protected String name;
     protected String apiKey;
     protected String apiUrl;
     protected String model;
+    protected int weight = 1;
     protected OkHttpClient client;
     protected Gson gson;
 
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private double latencyEwmaMillis = -1;
+    private int consecutiveFailures = 0;
+    private long unhealthyUntil = 0;
+    private String lastError;
+
     public APIProvider(String apiKey, String apiUrl, String model) {
+        this.name = apiUrl;
         this.apiKey = apiKey;
         this.apiUrl = apiUrl;
         this.model = model;
         this.gson = new Gson();
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(60, TimeUnit.SECONDS)
-            .readTimeout(60, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .build();
+        this.client = HttpClientManager.getClient();
     }
 
     public abstract Request buildRequest(String prompt, int maxTokens);
@@ -38,4 +43,67 @@ public abstract class APIProvider {
             return parseResponse(response.body().string());
         }
     }
+
+    public String getName() { return name; }
+    public String getApiKey() { return apiKey; }
+    public String getApiUrl() { return apiUrl; }
+    public String getModel() { return model; }
+    public int getWeight() { return weight; }
+
+    public String getEndpointKey() {
+        return LLMScheduler.endpointKey(apiUrl, apiKey);
+    }
+
+    public void onStart() {
+        inFlight.incrementAndGet();
+    }
+
+    // Call finished without telling us anything about backend health (e.g. a 400 or a cancel)
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public synchronized void recordSuccess(long latencyMillis) {
+        inFlight.decrementAndGet();
+        latencyEwmaMillis = latencyEwmaMillis < 0 ? latencyMillis : latencyEwmaMillis * 0.8 + latencyMillis * 0.2;
+        consecutiveFailures = 0;
+        unhealthyUntil = 0;
+        lastError = null;
+    }
+
+    // Exponential cool-down: 2s, 4s, 8s ... capped at one minute
+    public synchronized void recordFailure(String error) {
+        inFlight.decrementAndGet();
+        consecutiveFailures++;
+        unhealthyUntil = System.currentTimeMillis() + Math.min(60_000L, 1000L << Math.min(consecutiveFailures, 6));
+        lastError = error;
+    }
+
+    public synchronized boolean isHealthy() {
+        return System.currentTimeMillis() >= unhealthyUntil;
+    }
+
+    public synchronized long getUnhealthyUntil() {
+        return unhealthyUntil;
+    }
+
+    public synchronized double getLatencyEwmaMillis() {
+        return latencyEwmaMillis;
+    }
+
+    public synchronized String getLastError() {
+        return lastError;
+    }
+
+    // Lower is better: observed latency, scaled up by concurrent load and down by weight and
+    // free rate-limit quota. Backends without samples use the given prior instead, so they are
+    // neither always probed first nor never tried.
+    public double score(double latencyPriorMillis) {
+        double latency;
+        synchronized (this) {
+            latency = latencyEwmaMillis < 0 ? latencyPriorMillis : latencyEwmaMillis;
+        }
+        double quota = Math.max(0.05, LLMScheduler.getState(getEndpointKey()).freeQuotaRatio());
+        return latency * (1 + inFlight.get()) / Math.max(1, weight) / quota;
+    }
 }
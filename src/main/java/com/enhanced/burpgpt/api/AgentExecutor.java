@@ -0,0 +1,73 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Shared worker threads for agent runs (analyses, follow-up questions, context-menu
+// requests) and for blocking calls that can't be interrupted, such as Burp's sendRequest.
+// Replaces one raw thread per analysis.
+public class AgentExecutor {
+    private static final int WORKERS = 8;
+
+    private static ThreadPoolExecutor workers;
+    private static ThreadPoolExecutor blocking;
+
+    static {
+        MetricsRegistry.gauge("agent.workers.active", () -> workers != null ? workers.getActiveCount() : 0);
+        MetricsRegistry.gauge("agent.workers.queued", () -> workers != null ? workers.getQueue().size() : 0);
+    }
+
+    private static ThreadPoolExecutor newPool(String prefix, int core, int max, BlockingQueue<Runnable> queue) {
+        AtomicInteger threadId = new AtomicInteger(0);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(core, max, 60, TimeUnit.SECONDS, queue, r -> {
+            Thread t = new Thread(r, prefix + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public static synchronized ExecutorService workers() {
+        if (workers == null || workers.isShutdown()) {
+            workers = newPool("BurpAgent-Worker-", WORKERS, WORKERS, new LinkedBlockingQueue<>());
+        }
+        return workers;
+    }
+
+    // Unbounded; only used for waits we want to abandon on cancel without blocking a worker
+    public static synchronized ExecutorService blocking() {
+        if (blocking == null || blocking.isShutdown()) {
+            blocking = newPool("BurpAgent-Blocking-", 0, Integer.MAX_VALUE, new SynchronousQueue<>());
+        }
+        return blocking;
+    }
+
+    public static CompletableFuture<Void> run(Runnable task) {
+        return CompletableFuture.runAsync(task, workers());
+    }
+
+    public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, workers());
+    }
+
+    public static synchronized void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+        if (blocking != null) {
+            blocking.shutdownNow();
+            blocking = null;
+        }
+    }
+}
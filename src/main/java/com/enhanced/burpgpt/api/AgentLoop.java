@@ -0,0 +1,222 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+// Iterative driver for the tool-calling conversation. Each model turn runs in the same
+// stack frame, is checked against turn / wall-clock / token budgets, and drops its
+// response buffers before the next turn starts. A turn and its tool batch only get what is
+// left of the wall-clock budget; at the deadline the call and running tools are cancelled.
+public class AgentLoop {
+    public enum State {
+        IDLE,
+        REQUESTING,
+        EXECUTING_TOOLS,
+        COMPLETED,
+        BUDGET_EXHAUSTED,
+        CANCELLED,
+        FAILED
+    }
+
+    // Callbacks into the provider that owns the HTTP call and tool dispatch
+    interface Host {
+        void drainInjections(List<Map<String, Object>> messages);
+
+        // The token passed to these is cancelled on Stop and at the turn's deadline
+        ChatCompletion requestTurn(List<Map<String, Object>> messages, int maxTokens, CancellationToken cancellation) throws IOException;
+
+        List<Map<String, Object>> executeToolCalls(List<ChatCompletion.ToolCall> toolCalls, CancellationToken cancellation);
+
+        // Returns the messages to append if the content carries a legacy inline tool call, otherwise null
+        List<Map<String, Object>> handleInlineToolCall(String content, CancellationToken cancellation);
+
+        // Cancelled on Stop
+        CancellationToken getCancellation();
+    }
+
+    public static class Limits {
+        public final int maxTurns;
+        public final long maxMillis;
+        public final int maxTokens;
+
+        public Limits(int maxTurns, long maxMillis, int maxTokens) {
+            this.maxTurns = maxTurns;
+            this.maxMillis = maxMillis;
+            this.maxTokens = maxTokens;
+        }
+
+        public static Limits fromConfig() {
+            return new Limits(Config.agentMaxTurns, Config.agentMaxSeconds * 1000L, Config.agentMaxTokens);
+        }
+    }
+
+    public static class TurnStats {
+        public final int turn;
+        public final long modelMillis;
+        public final long timeToFirstTokenMillis;
+        public final long toolMillis;
+        public final int toolCalls;
+        public final int promptTokens;
+        public final int completionTokens;
+        public final int cachedPromptTokens;
+
+        TurnStats(int turn, long modelMillis, long timeToFirstTokenMillis, long toolMillis, int toolCalls, int promptTokens, int completionTokens, int cachedPromptTokens) {
+            this.turn = turn;
+            this.modelMillis = modelMillis;
+            this.timeToFirstTokenMillis = timeToFirstTokenMillis;
+            this.toolMillis = toolMillis;
+            this.toolCalls = toolCalls;
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+            this.cachedPromptTokens = cachedPromptTokens;
+        }
+
+        @Override
+        public String toString() {
+            return "Turn " + turn + ": model " + modelMillis + " ms (TTFT " + timeToFirstTokenMillis + " ms), tools "
+                + toolMillis + " ms (" + toolCalls + " calls), tokens " + promptTokens + "/" + completionTokens
+                + " (" + cachedPromptTokens + " cached)";
+        }
+    }
+
+    private final Host host;
+    private final Limits limits;
+    private final List<TurnStats> turnStats = new ArrayList<>();
+    private volatile State state = State.IDLE;
+    private String stopReason;
+    private int tokensUsed;
+    private int promptTokensUsed;
+    private int cachedPromptTokensUsed;
+
+    AgentLoop(Host host, Limits limits) {
+        this.host = host;
+        this.limits = limits;
+    }
+
+    public String run(List<Map<String, Object>> messages, int maxTokens) throws IOException {
+        long startMillis = System.currentTimeMillis();
+        String lastContent = null;
+        int turn = 0;
+
+        while (true) {
+            if (host.getCancellation().isCancelled()) {
+                state = State.CANCELLED;
+                return lastContent;
+            }
+            if (checkBudget(turn, startMillis)) {
+                state = State.BUDGET_EXHAUSTED;
+                return lastContent;
+            }
+
+            host.drainInjections(messages);
+
+            long remainingMillis = limits.maxMillis > 0 ? Math.max(1, limits.maxMillis - (System.currentTimeMillis() - startMillis)) : 0;
+            CancellationToken.Scope deadline = host.getCancellation().withDeadline(remainingMillis);
+            try {
+                state = State.REQUESTING;
+                long turnStart = System.nanoTime();
+                ChatCompletion completion = host.requestTurn(messages, maxTokens, deadline);
+                long modelMillis = (System.nanoTime() - turnStart) / 1_000_000;
+                tokensUsed += completion.getPromptTokens() + completion.getCompletionTokens();
+                promptTokensUsed += completion.getPromptTokens();
+                cachedPromptTokensUsed += completion.getCachedPromptTokens();
+                turn++;
+
+                String content = completion.getContent();
+                if (content != null && !content.isEmpty()) {
+                    lastContent = content;
+                }
+
+                List<Map<String, Object>> followUp = null;
+                int toolCallCount = 0;
+                long toolStart = System.nanoTime();
+                if (completion.hasToolCalls()) {
+                    state = State.EXECUTING_TOOLS;
+                    toolCallCount = completion.getToolCalls().size();
+                    messages.add(completion.toMessage());
+                    followUp = host.executeToolCalls(completion.getToolCalls(), deadline);
+                } else if (content != null) {
+                    followUp = host.handleInlineToolCall(content, deadline);
+                    if (followUp != null) {
+                        state = State.EXECUTING_TOOLS;
+                        toolCallCount = 1;
+                    }
+                }
+                long toolMillis = followUp != null ? (System.nanoTime() - toolStart) / 1_000_000 : 0;
+
+                turnStats.add(new TurnStats(turn, modelMillis, completion.getTimeToFirstTokenMillis(), toolMillis,
+                    toolCallCount, completion.getPromptTokens(), completion.getCompletionTokens(),
+                    completion.getCachedPromptTokens()));
+
+                if (followUp == null) {
+                    state = State.COMPLETED;
+                    return content;
+                }
+                messages.addAll(followUp);
+            } catch (IOException | CancellationException e) {
+                // A call cut off by the deadline ends the run like any other budget stop
+                if (!deadline.isExpired() || host.getCancellation().isCancelled()) {
+                    state = host.getCancellation().isCancelled() ? State.CANCELLED : State.FAILED;
+                    throw e;
+                }
+            } finally {
+                deadline.close();
+            }
+            if (deadline.isExpired() && !host.getCancellation().isCancelled()) {
+                stopReason = timeLimitReason();
+                state = State.BUDGET_EXHAUSTED;
+                return lastContent;
+            }
+        }
+    }
+
+    private boolean checkBudget(int turn, long startMillis) {
+        if (limits.maxTurns > 0 && turn >= limits.maxTurns) {
+            stopReason = "turn limit (" + limits.maxTurns + ") reached";
+            return true;
+        }
+        if (limits.maxMillis > 0 && System.currentTimeMillis() - startMillis >= limits.maxMillis) {
+            stopReason = timeLimitReason();
+            return true;
+        }
+        if (limits.maxTokens > 0 && tokensUsed >= limits.maxTokens) {
+            stopReason = "token limit (" + limits.maxTokens + ") reached";
+            return true;
+        }
+        return false;
+    }
+
+    private String timeLimitReason() {
+        return "time limit (" + (limits.maxMillis / 1000) + " s) reached";
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    public int getTokensUsed() {
+        return tokensUsed;
+    }
+
+    public int getPromptTokensUsed() {
+        return promptTokensUsed;
+    }
+
+    public int getCachedPromptTokensUsed() {
+        return cachedPromptTokensUsed;
+    }
+
+    public List<TurnStats> getTurnStats() {
+        return Collections.unmodifiableList(turnStats);
+    }
+}
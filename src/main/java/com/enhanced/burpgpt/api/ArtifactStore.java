@@ -0,0 +1,422 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.Config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Large tool outputs are spilled to memory-mapped temp files instead of going into the chat
+// history. The model gets a handle with the size and a head/tail preview, and pages through
+// the content with the read_artifact tool (line ranges, byte ranges or grep). Large files from
+// read_file are copied in first: mapping a file someone else can truncate risks a SIGBUS.
+public class ArtifactStore {
+    public static final String READ_TOOL = "read_artifact";
+
+    private static final int PREVIEW_LINES = 15;
+    private static final int PREVIEW_LINE_CHARS = 300;
+    private static final int MAX_READ_CHARS = 16000;
+    private static final int DEFAULT_MAX_MATCHES = 50;
+    private static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE; // One MappedByteBuffer
+
+    private static final AtomicInteger nextId = new AtomicInteger(1);
+    // Access order, so eviction drops the least recently read artifact
+    private static final Map<String, Artifact> artifacts = new LinkedHashMap<>(16, 0.75f, true);
+    private static Path directory;
+    private static long totalBytes;
+
+    private static class Artifact {
+        final String id;
+        final String label;
+        final Path path;
+        final long size;
+        private MappedByteBuffer buffer;
+        private int[] lineStarts;
+        private int lineCount;
+
+        Artifact(String id, String label, Path path, long size) {
+            this.id = id;
+            this.label = label;
+            this.path = path;
+            this.size = size;
+        }
+
+        synchronized ByteBuffer view() throws IOException {
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+            }
+            return buffer.duplicate();
+        }
+
+        // Drops the mapping and the line index; the file is unmapped once the buffer is collected.
+        // The line accessors below are synchronized too, so they never see the index half gone.
+        synchronized void release() {
+            buffer = null;
+            lineStarts = null;
+        }
+
+        // Byte offset of the start of line n (0-based)
+        synchronized int lineOffset(int n) throws IOException {
+            indexLines();
+            return lineStarts[n];
+        }
+
+        // Start offset of every line, built on first line-based access
+        synchronized void indexLines() throws IOException {
+            if (lineStarts != null) return;
+            ByteBuffer view = view();
+            int[] starts = new int[1024];
+            int count = 1;
+            int limit = view.limit();
+            for (int i = 0; i < limit; i++) {
+                if (view.get(i) == '\n' && i + 1 < limit) {
+                    if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+                    starts[count++] = i + 1;
+                }
+            }
+            lineStarts = starts;
+            lineCount = limit == 0 ? 0 : count;
+        }
+
+        synchronized int lineCount() throws IOException {
+            indexLines();
+            return lineCount;
+        }
+
+        // Text of line n (0-based), without the line terminator
+        synchronized String line(int n) throws IOException {
+            indexLines();
+            ByteBuffer view = view();
+            int start = lineStarts[n];
+            int end = n + 1 < lineCount ? lineStarts[n + 1] - 1 : view.limit();
+            if (end > start && view.get(end - 1) == '\n') end--;
+            if (end > start && view.get(end - 1) == '\r') end--;
+            return decode(view, start, end - start);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Config.artifactThresholdBytes > 0;
+    }
+
+    // Returns the output unchanged when small, otherwise stores it and returns a handle
+    public static String spillIfLarge(String label, String output) {
+        if (!isEnabled() || output == null || output.length() <= Config.artifactThresholdBytes / 3) {
+            return output;
+        }
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= Config.artifactThresholdBytes) {
+            return output;
+        }
+        return spill(label, bytes);
+    }
+
+    public static String spillIfLarge(String label, byte[] bytes) {
+        if (!isEnabled() || bytes.length <= Config.artifactThresholdBytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return spill(label, bytes);
+    }
+
+    private static String spill(String label, byte[] bytes) {
+        try {
+            Path file = newArtifactFile();
+            Files.write(file, bytes);
+            return describe(add(label, file, bytes.length));
+        } catch (IOException e) {
+            System.err.println("Error writing artifact: " + e.getMessage());
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Streams into a fresh artifact file; the caller decides afterwards whether to keep it
+    public static Path newArtifactFile() throws IOException {
+        return Files.createTempFile(directory(), "artifact-", ".bin");
+    }
+
+    public static OutputStream openArtifactFile(Path file) throws IOException {
+        return Files.newOutputStream(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // Registers a file already written via newArtifactFile; the store owns it from here on
+    public static String register(String label, Path file) throws IOException {
+        return describe(add(label, file, Files.size(file)));
+    }
+
+    // Copies a file the store doesn't own, so later changes to it can't fault the mapping
+    public static String copy(String label, Path source) throws IOException {
+        Path file = newArtifactFile();
+        try {
+            Files.copy(source, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return register(label, file);
+    }
+
+    // Largest file read_file may copy in: the store budget, and never more than one mapping
+    public static long maxArtifactBytes() {
+        return Math.min(Config.artifactMaxMB * 1024L * 1024L, MAX_MAPPED_BYTES);
+    }
+
+    private static synchronized Path directory() throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            directory = Files.createTempDirectory("burpagent-artifacts");
+            directory.toFile().deleteOnExit();
+        }
+        return directory;
+    }
+
+    private static synchronized Artifact add(String label, Path file, long size) throws IOException {
+        if (size > MAX_MAPPED_BYTES) {
+            Files.deleteIfExists(file);
+            throw new IOException("Artifact too large (" + size + " bytes); outputs over 2 GB can't be stored");
+        }
+        Artifact artifact = new Artifact("art-" + nextId.getAndIncrement(), label, file, size);
+        artifacts.put(artifact.id, artifact);
+        file.toFile().deleteOnExit();
+        totalBytes += size;
+        evict(artifact);
+        return artifact;
+    }
+
+    // Least recently used first, keeping the newest artifact even if it alone exceeds the budget
+    private static void evict(Artifact newest) {
+        long maxBytes = Config.artifactMaxMB * 1024L * 1024L;
+        Iterator<Artifact> it = artifacts.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Artifact oldest = it.next();
+            if (oldest == newest) continue;
+            it.remove();
+            oldest.release();
+            totalBytes -= oldest.size;
+            // A mapped file can't be deleted on Windows until the buffer is collected; deleteOnExit covers that
+            oldest.path.toFile().delete();
+        }
+    }
+
+    public static synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public static synchronized void clear() {
+        for (Artifact artifact : artifacts.values()) {
+            artifact.release();
+            artifact.path.toFile().delete();
+        }
+        artifacts.clear();
+        totalBytes = 0;
+    }
+
+    private static synchronized Artifact get(String id) {
+        return artifacts.get(id);
+    }
+
+    // Head and tail share what the header and footer leave of the spill threshold, so the handle
+    // is never larger than an output that would have stayed inline
+    private static String describe(Artifact artifact) {
+        String footer = "--- end of preview ---\nThe full output is stored as artifact \"" + artifact.id
+            + "\". Call " + READ_TOOL + " to read line or byte ranges, or grep it.";
+        StringBuilder sb = new StringBuilder();
+        try {
+            int lines = artifact.lineCount();
+            sb.append("[Artifact ").append(artifact.id).append(": ").append(artifact.label).append(", ")
+                .append(artifact.size).append(" bytes, ").append(lines).append(" lines]\n");
+            int budget = Math.max(0, Config.artifactThresholdBytes - utf8Length(sb) - utf8Length(footer) - 32);
+            boolean tail = lines > PREVIEW_LINES * 2;
+            sb.append("--- head ---\n");
+            int used = appendPreview(sb, artifact, 0, tail ? PREVIEW_LINES : lines, tail ? budget / 2 : budget);
+            if (tail) {
+                sb.append("--- tail ---\n");
+                // Filled from the end, so a clamped tail still shows the last lines
+                List<String> last = new ArrayList<>();
+                int room = budget - used;
+                for (int i = lines - 1; i >= lines - PREVIEW_LINES; i--) {
+                    String line = clip(artifact.line(i)) + "\n";
+                    room -= utf8Length(line);
+                    if (room < 0) break;
+                    last.add(line);
+                }
+                for (int i = last.size() - 1; i >= 0; i--) sb.append(last.get(i));
+            }
+        } catch (IOException e) {
+            sb.append("(preview unavailable: ").append(e.getMessage()).append(")\n");
+        }
+        return sb.append(footer).toString();
+    }
+
+    // Appends lines [from, to) while they fit in budget bytes; returns the bytes used
+    private static int appendPreview(StringBuilder sb, Artifact artifact, int from, int to, int budget) throws IOException {
+        int used = 0;
+        for (int i = from; i < to; i++) {
+            String line = clip(artifact.line(i)) + "\n";
+            int length = utf8Length(line);
+            if (used + length > budget) break;
+            sb.append(line);
+            used += length;
+        }
+        return used;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // A surrogate pair is 4 bytes, counted as 2 + 2
+            length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        return length;
+    }
+
+    public static Map<String, Object> toolDefinition() {
+        return Map.of(
+            "type", "function",
+            "function", Map.of(
+                "name", READ_TOOL,
+                "description", "Read part of a large tool output that was stored as an artifact. Give start_line/end_line "
+                    + "(1-based, inclusive), or offset/length in bytes, or a grep regex to list matching lines.",
+                "parameters", Map.of(
+                    "type", "object",
+                    "properties", Map.of(
+                        "id", Map.of("type", "string", "description", "Artifact id, e.g. art-3"),
+                        "start_line", Map.of("type", "integer", "description", "First line to return (1-based)"),
+                        "end_line", Map.of("type", "integer", "description", "Last line to return (inclusive)"),
+                        "offset", Map.of("type", "integer", "description", "Byte offset to start reading at"),
+                        "length", Map.of("type", "integer", "description", "Number of bytes to read"),
+                        "grep", Map.of("type", "string", "description", "Regular expression; returns matching lines with line numbers"),
+                        "ignore_case", Map.of("type", "boolean", "description", "Case-insensitive grep"),
+                        "max_matches", Map.of("type", "integer", "description", "Maximum grep matches (default 50)")
+                    ),
+                    "required", java.util.List.of("id")
+                )
+            )
+        );
+    }
+
+    public static String read(String id, Integer startLine, Integer endLine, Long offset, Integer length,
+                              String grep, boolean ignoreCase, int maxMatches) {
+        Artifact artifact = get(id);
+        if (artifact == null) {
+            return "Error: Unknown or expired artifact: " + id;
+        }
+        try {
+            if (grep != null && !grep.isEmpty()) {
+                return grep(artifact, grep, ignoreCase, maxMatches > 0 ? maxMatches : DEFAULT_MAX_MATCHES);
+            }
+            if (offset != null || length != null) {
+                return readBytes(artifact, offset != null ? offset : 0, length != null ? length : MAX_READ_CHARS);
+            }
+            return readLines(artifact, startLine != null ? startLine : 1, endLine != null ? endLine : Integer.MAX_VALUE);
+        } catch (IOException e) {
+            return "Error reading artifact " + id + ": " + e.getMessage();
+        }
+    }
+
+    private static String readLines(Artifact artifact, int startLine, int endLine) throws IOException {
+        int lines = artifact.lineCount();
+        int from = Math.max(1, startLine);
+        int to = Math.min(lines, endLine);
+        if (from > to) {
+            return "Error: Line range out of bounds (artifact has " + lines + " lines)";
+        }
+        StringBuilder sb = new StringBuilder();
+        int i = from;
+        for (; i <= to; i++) {
+            String line = artifact.line(i - 1);
+            if (sb.length() + line.length() + 1 <= MAX_READ_CHARS) {
+                sb.append(line).append("\n");
+                continue;
+            }
+            if (sb.length() == 0) {
+                // A single line over the limit (minified code): cut it and point at the byte range
+                String part = line.substring(0, Character.isHighSurrogate(line.charAt(MAX_READ_CHARS - 1)) ? MAX_READ_CHARS - 1 : MAX_READ_CHARS);
+                long next = artifact.lineOffset(i - 1) + part.getBytes(StandardCharsets.UTF_8).length;
+                sb.append(part).append("\n...[line ").append(i).append(" cut at ").append(part.length()).append(" of ")
+                    .append(line.length()).append(" chars; read the rest with offset ").append(next).append("]");
+                if (i < to) sb.append("\n...[continue from start_line ").append(i + 1).append("]");
+                return sb.toString();
+            }
+            break;
+        }
+        if (i <= to) {
+            sb.append("...[stopped at line ").append(i - 1).append(" of ").append(lines)
+                .append("; request a smaller range or continue from start_line ").append(i).append("]");
+        }
+        return sb.toString();
+    }
+
+    private static String readBytes(Artifact artifact, long offset, int length) throws IOException {
+        ByteBuffer view = artifact.view();
+        if (offset < 0 || offset >= view.limit()) {
+            return "Error: Offset out of bounds (artifact has " + artifact.size + " bytes)";
+        }
+        int len = (int) Math.min(Math.min(length, MAX_READ_CHARS), view.limit() - offset);
+        String text = decode(view, (int) offset, len);
+        if (offset + len < artifact.size) {
+            text += "\n...[" + (artifact.size - offset - len) + " more bytes; continue at offset " + (offset + len) + "]";
+        }
+        return text;
+    }
+
+    private static String grep(Artifact artifact, String regex, boolean ignoreCase, int maxMatches) throws IOException {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex, ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+        } catch (PatternSyntaxException e) {
+            return "Error: Invalid regex: " + e.getDescription();
+        }
+        StringBuilder sb = new StringBuilder();
+        int matches = 0;
+        int lines = artifact.lineCount();
+        for (int i = 0; i < lines && matches < maxMatches && sb.length() < MAX_READ_CHARS; i++) {
+            String line = artifact.line(i);
+            Matcher m = pattern.matcher(line);
+            if (m.find()) {
+                matches++;
+                sb.append(i + 1).append(": ").append(clipAround(line, m.start())).append("\n");
+            }
+        }
+        if (matches == 0) {
+            return "No matches for /" + regex + "/ in " + artifact.id + " (" + lines + " lines)";
+        }
+        return sb.toString();
+    }
+
+    private static String decode(ByteBuffer view, int offset, int length) {
+        byte[] bytes = new byte[length];
+        view.get(offset, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String clip(String line) {
+        return line.length() > PREVIEW_LINE_CHARS ? line.substring(0, PREVIEW_LINE_CHARS) + "...[" + line.length() + " chars]" : line;
+    }
+
+    // Minified files are often one huge line; show the part around the match
+    private static String clipAround(String line, int matchStart) {
+        if (line.length() <= PREVIEW_LINE_CHARS) return line;
+        int from = Math.max(0, matchStart - PREVIEW_LINE_CHARS / 3);
+        int to = Math.min(line.length(), from + PREVIEW_LINE_CHARS);
+        return (from > 0 ? "..." : "") + line.substring(from, to) + (to < line.length() ? "..." : "");
+    }
+}
@@ -0,0 +1,98 @@
+package com.enhanced.burpgpt.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Propagates a Stop from the UI to whatever the agent is blocked on: the HTTP call, a tool
+// process, an MCP request. Callbacks registered after cancellation run immediately.
+public class CancellationToken {
+    public static final CancellationToken NONE = new CancellationToken() {
+        @Override
+        public void cancel() {
+            // Never cancelled
+        }
+    };
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Token for one bounded piece of work: cancelled with its parent, or on its own once the
+    // deadline passes. Close it when the work is done to drop the link and the timer.
+    public static class Scope extends CancellationToken implements Registration {
+        private Registration link;
+        private CompletableFuture<Void> timer;
+        private volatile boolean expired;
+
+        public boolean isExpired() {
+            return expired;
+        }
+
+        @Override
+        public void close() {
+            link.close();
+            if (timer != null) timer.cancel(false);
+        }
+    }
+
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                System.err.println("Error in cancellation callback: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Cancelled");
+    }
+
+    // A millis of 0 or less means no deadline
+    public Scope withDeadline(long millis) {
+        Scope scope = new Scope();
+        scope.link = onCancel(scope::cancel);
+        if (millis > 0) {
+            scope.timer = CompletableFuture.runAsync(() -> {
+                scope.expired = true;
+                scope.cancel();
+            }, CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS, AgentExecutor.blocking()));
+        }
+        return scope;
+    }
+
+    // Close the registration in a finally block so the callback is dropped once the guarded work finishes
+    public Registration onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (CancellationToken.this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> { };
+    }
+}
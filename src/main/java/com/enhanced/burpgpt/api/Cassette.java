@@ -0,0 +1,237 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.Config;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Records every LLM turn and tool result of a session to a gzipped JSON-lines file, or
+// replays one with no network so the client-side cost of a long session (serialization,
+// rendering, tool dispatch) can be profiled and compared across builds.
+//
+// Entries are matched by a hash of their input (messages for LLM turns, name and arguments
+// for tools). A miss falls back to the next unused entry of the same type, so small drifts
+// such as a background history summary don't derail the replay.
+public class Cassette {
+    public static final String OFF = "off";
+    public static final String RECORD = "record";
+    public static final String REPLAY = "replay";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String DEFAULT_FILE = System.getProperty("user.home") + File.separator + ".burpgpt_cassettes"
+        + File.separator + "session.cassette.gz";
+
+    private static String mode = OFF;
+    private static File file;
+    private static Writer writer;
+    private static final Map<String, Deque<JsonNode>> byKey = new HashMap<>();
+    private static final Map<String, Deque<JsonNode>> byType = new HashMap<>();
+    private static final List<JsonNode> prompts = new ArrayList<>();
+
+    // Applies Config.cassetteMode/cassettePath; called on load and whenever settings are saved
+    public static synchronized void configure() {
+        String wanted = Config.cassetteMode != null ? Config.cassetteMode : OFF;
+        File wantedFile = getFile();
+        if (wanted.equals(mode) && wantedFile.equals(file)) return;
+        close();
+        try {
+            if (RECORD.equals(wanted)) {
+                startRecording(wantedFile);
+            } else if (REPLAY.equals(wanted)) {
+                load(wantedFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Cassette " + wanted + " failed for " + wantedFile + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    public static File getFile() {
+        String path = Config.cassettePath;
+        return new File(path != null && !path.isEmpty() ? path : DEFAULT_FILE);
+    }
+
+    public static synchronized boolean isRecording() {
+        return writer != null;
+    }
+
+    public static synchronized boolean isReplaying() {
+        return REPLAY.equals(mode);
+    }
+
+    public static synchronized void startRecording(File target) throws IOException {
+        close();
+        if (target.getParentFile() != null) target.getParentFile().mkdirs();
+        writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(target), true), StandardCharsets.UTF_8));
+        mode = RECORD;
+        file = target;
+        ObjectNode header = mapper.createObjectNode();
+        header.put("type", "header");
+        header.put("version", 1);
+        header.put("created", System.currentTimeMillis());
+        header.put("model", Config.model);
+        append(header);
+    }
+
+    public static synchronized void load(File source) throws IOException {
+        close();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(source)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                JsonNode entry = mapper.readTree(line);
+                String type = entry.path("type").asText();
+                if ("prompt".equals(type)) {
+                    prompts.add(entry);
+                } else if (entry.has("key")) {
+                    byKey.computeIfAbsent(entry.get("key").asText(), k -> new ArrayDeque<>()).add(entry);
+                    byType.computeIfAbsent(type, k -> new ArrayDeque<>()).add(entry);
+                }
+            }
+        }
+        mode = REPLAY;
+        file = source;
+        System.out.println("Cassette loaded: " + source + " (" + prompts.size() + " prompts, "
+            + byType.getOrDefault("llm", new ArrayDeque<>()).size() + " LLM turns, "
+            + byType.getOrDefault("tool", new ArrayDeque<>()).size() + " tool results)");
+    }
+
+    public static synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error closing cassette: " + e.getMessage());
+            }
+            writer = null;
+        }
+        byKey.clear();
+        byType.clear();
+        prompts.clear();
+        mode = OFF;
+        file = null;
+    }
+
+    // The top-level prompts of the recorded session, in order, so a headless run can re-drive it
+    public static synchronized List<JsonNode> getPrompts() {
+        return new ArrayList<>(prompts);
+    }
+
+    static void recordPrompt(String systemPrompt, String userPrompt, int maxTokens) {
+        if (!isRecording()) return;
+        ObjectNode entry = mapper.createObjectNode();
+        entry.put("type", "prompt");
+        entry.put("system", systemPrompt);
+        entry.put("user", userPrompt);
+        entry.put("max_tokens", maxTokens);
+        append(entry);
+    }
+
+    static String turnKey(String model, List<Map<String, Object>> messages, int maxTokens) {
+        try {
+            return Hashing.sha256(model, mapper.writeValueAsString(messages), String.valueOf(maxTokens));
+        } catch (IOException e) {
+            return Hashing.sha256(model, String.valueOf(messages), String.valueOf(maxTokens));
+        }
+    }
+
+    static void recordTurn(String key, ChatCompletion completion) {
+        if (!isRecording()) return;
+        ObjectNode entry = mapper.createObjectNode();
+        entry.put("type", "llm");
+        entry.put("key", key);
+        entry.put("content", completion.getContent());
+        if (completion.getReasoning() != null) entry.put("reasoning", completion.getReasoning());
+        entry.put("finish", completion.getFinishReason());
+        if (completion.hasToolCalls()) {
+            ArrayNode calls = entry.putArray("tool_calls");
+            for (ChatCompletion.ToolCall call : completion.getToolCalls()) {
+                calls.addArray().add(call.id).add(call.name).add(call.arguments);
+            }
+        }
+        entry.putArray("usage").add(completion.getPromptTokens()).add(completion.getCompletionTokens()).add(completion.getCachedPromptTokens());
+        entry.putArray("ms").add(completion.getTimeToFirstTokenMillis()).add(completion.getTotalMillis());
+        append(entry);
+    }
+
+    static ChatCompletion replayTurn(String key) throws IOException {
+        JsonNode entry = take("llm", key);
+        if (entry == null) throw new IOException("Cassette has no more recorded LLM turns");
+        ChatCompletion completion = new ChatCompletion();
+        completion.setContent(entry.hasNonNull("content") ? entry.get("content").asText() : null);
+        completion.setReasoning(entry.hasNonNull("reasoning") ? entry.get("reasoning").asText() : null);
+        completion.setFinishReason(entry.hasNonNull("finish") ? entry.get("finish").asText() : null);
+        for (JsonNode call : entry.path("tool_calls")) {
+            completion.getToolCalls().add(new ChatCompletion.ToolCall(call.get(0).asText(), call.get(1).asText(), call.get(2).asText()));
+        }
+        JsonNode usage = entry.path("usage");
+        completion.setPromptTokens(usage.path(0).asInt());
+        completion.setCompletionTokens(usage.path(1).asInt());
+        completion.setCachedPromptTokens(usage.path(2).asInt());
+        return completion;
+    }
+
+    static void recordTool(String name, String arguments, String result, long millis) {
+        if (!isRecording()) return;
+        ObjectNode entry = mapper.createObjectNode();
+        entry.put("type", "tool");
+        entry.put("key", Hashing.sha256(name, arguments));
+        entry.put("name", name);
+        entry.put("result", result);
+        entry.put("ms", millis);
+        append(entry);
+    }
+
+    static String replayTool(String name, String arguments) {
+        JsonNode entry = take("tool", Hashing.sha256(name, arguments));
+        if (entry == null) return "Error: Cassette has no recorded result for tool " + name;
+        return entry.hasNonNull("result") ? entry.get("result").asText() : null;
+    }
+
+    private static synchronized JsonNode take(String type, String key) {
+        Deque<JsonNode> matches = byKey.get(key);
+        JsonNode entry = matches != null ? matches.poll() : null;
+        Deque<JsonNode> ofType = byType.get(type);
+        if (entry == null && ofType != null) {
+            entry = ofType.peek();
+            if (entry != null) {
+                System.err.println("Cassette: no " + type + " entry for this input, replaying the next one in order");
+                byKey.get(entry.get("key").asText()).remove(entry);
+            }
+        }
+        if (entry != null && ofType != null) ofType.remove(entry);
+        return entry;
+    }
+
+    private static synchronized void append(ObjectNode entry) {
+        if (writer == null) return;
+        try {
+            writer.write(mapper.writeValueAsString(entry));
+            writer.write('\n');
+            writer.flush(); // Sync-flushed gzip, so a crash loses at most the entry being written
+        } catch (IOException e) {
+            System.err.println("Cassette write failed, recording stopped: " + e.getMessage());
+            close();
+        }
+    }
+}
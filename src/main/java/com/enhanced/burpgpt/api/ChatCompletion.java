@@ -0,0 +1,84 @@
+package com.enhanced.burpgpt.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One assistant turn returned by the chat completions endpoint, either parsed from a
+// blocking response or assembled from streamed SSE chunks.
+public class ChatCompletion {
+    private String content;
+    private String reasoning;
+    private final List<ToolCall> toolCalls = new ArrayList<>();
+    private String finishReason;
+    private int promptTokens;
+    private int completionTokens;
+    private int cachedPromptTokens;
+    private long timeToFirstTokenMillis = -1;
+    private long totalMillis;
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+
+    public String getReasoning() { return reasoning; }
+    public void setReasoning(String reasoning) { this.reasoning = reasoning; }
+
+    public List<ToolCall> getToolCalls() { return toolCalls; }
+    public boolean hasToolCalls() { return !toolCalls.isEmpty(); }
+
+    public String getFinishReason() { return finishReason; }
+    public void setFinishReason(String finishReason) { this.finishReason = finishReason; }
+
+    public int getPromptTokens() { return promptTokens; }
+    public void setPromptTokens(int promptTokens) { this.promptTokens = promptTokens; }
+
+    public int getCachedPromptTokens() { return cachedPromptTokens; }
+    public void setCachedPromptTokens(int cachedPromptTokens) { this.cachedPromptTokens = cachedPromptTokens; }
+
+    public int getCompletionTokens() { return completionTokens; }
+    public void setCompletionTokens(int completionTokens) { this.completionTokens = completionTokens; }
+
+    public long getTimeToFirstTokenMillis() { return timeToFirstTokenMillis; }
+    public void setTimeToFirstTokenMillis(long timeToFirstTokenMillis) { this.timeToFirstTokenMillis = timeToFirstTokenMillis; }
+
+    public long getTotalMillis() { return totalMillis; }
+    public void setTotalMillis(long totalMillis) { this.totalMillis = totalMillis; }
+
+    // Assistant message in the shape expected back in the "messages" history
+    public Map<String, Object> toMessage() {
+        Map<String, Object> msg = new HashMap<>();
+        msg.put("role", "assistant");
+        msg.put("content", content);
+        if (!toolCalls.isEmpty()) {
+            List<Map<String, Object>> calls = new ArrayList<>();
+            for (ToolCall call : toolCalls) {
+                Map<String, Object> function = new HashMap<>();
+                function.put("name", call.name);
+                function.put("arguments", call.arguments);
+
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("id", call.id);
+                entry.put("type", "function");
+                entry.put("function", function);
+                calls.add(entry);
+            }
+            msg.put("tool_calls", calls);
+        }
+        return msg;
+    }
+
+    public static class ToolCall {
+        public String id;
+        public String name;
+        public String arguments;
+
+        public ToolCall() {}
+
+        public ToolCall(String id, String name, String arguments) {
+            this.id = id;
+            this.name = name;
+            this.arguments = arguments;
+        }
+    }
+}
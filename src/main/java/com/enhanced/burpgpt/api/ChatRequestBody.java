@@ -0,0 +1,73 @@
+package com.enhanced.burpgpt.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// Chat completions request body that is serialized straight into the OkHttp sink.
+// Messages are written one by one with a JsonGenerator and the cached tool catalog JSON is
+// copied raw, so no intermediate JsonNode tree or full-body String is built per turn.
+public class ChatRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectWriter messageWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private static final JsonFactory factory = mapper.getFactory().copy().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final String model;
+    private final int maxTokens;
+    private final List<Map<String, Object>> messages;
+    private final String toolsJson;
+    private final boolean stream;
+
+    public ChatRequestBody(String model, int maxTokens, List<Map<String, Object>> messages, String toolsJson, boolean stream) {
+        this.model = model;
+        this.maxTokens = maxTokens;
+        this.messages = messages;
+        this.toolsJson = toolsJson;
+        this.stream = stream;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        JsonGenerator gen = factory.createGenerator(sink.outputStream());
+        gen.writeStartObject();
+        gen.writeStringField("model", model);
+        gen.writeNumberField("max_tokens", maxTokens);
+
+        gen.writeArrayFieldStart("messages");
+        for (Map<String, Object> message : messages) {
+            messageWriter.writeValue(gen, message);
+        }
+        gen.writeEndArray();
+
+        if (toolsJson != null) {
+            gen.writeFieldName("tools");
+            gen.writeRawValue(toolsJson);
+            gen.writeStringField("tool_choice", "auto");
+        }
+
+        if (stream) {
+            gen.writeBooleanField("stream", true);
+            gen.writeObjectFieldStart("stream_options");
+            gen.writeBooleanField("include_usage", true);
+            gen.writeEndObject();
+        }
+
+        gen.writeEndObject();
+        gen.flush();
+    }
+}
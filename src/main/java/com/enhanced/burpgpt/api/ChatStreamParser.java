@@ -0,0 +1,134 @@
+package com.enhanced.burpgpt.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Incrementally assembles a ChatCompletion from "data:" lines of an SSE stream.
+// Tool call arguments arrive as fragments keyed by index and are concatenated here.
+public class ChatStreamParser {
+    private final ObjectMapper mapper;
+    private final StreamListener listener;
+    private final long startNanos;
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder reasoning = new StringBuilder();
+    private final List<ToolCallBuilder> toolCalls = new ArrayList<>();
+    private final ChatCompletion completion = new ChatCompletion();
+    private boolean done = false;
+
+    public ChatStreamParser(ObjectMapper mapper, StreamListener listener, long startNanos) {
+        this.mapper = mapper;
+        this.listener = listener;
+        this.startNanos = startNanos;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void onLine(String line) throws IOException {
+        if (line == null || !line.startsWith("data:")) return; // Ignore comments, event names and keep-alives
+        String data = line.substring(5).trim();
+        if (data.isEmpty()) return;
+        if ("[DONE]".equals(data)) {
+            done = true;
+            return;
+        }
+
+        JsonNode chunk = mapper.readTree(data);
+        if (chunk.has("error")) {
+            throw new IOException("Stream error: " + chunk.get("error").toString());
+        }
+
+        readUsage(chunk.get("usage"), completion);
+
+        JsonNode choices = chunk.get("choices");
+        if (choices == null || choices.size() == 0) return;
+        JsonNode choice = choices.get(0);
+
+        JsonNode finish = choice.get("finish_reason");
+        if (finish != null && !finish.isNull()) {
+            completion.setFinishReason(finish.asText());
+        }
+
+        JsonNode delta = choice.get("delta");
+        if (delta == null) return;
+
+        JsonNode reasoningNode = delta.get("reasoning_content");
+        if (reasoningNode != null && !reasoningNode.isNull()) {
+            String text = reasoningNode.asText();
+            if (!text.isEmpty()) {
+                markFirstToken();
+                reasoning.append(text);
+                if (listener != null) listener.onReasoning(text);
+            }
+        }
+
+        JsonNode contentNode = delta.get("content");
+        if (contentNode != null && !contentNode.isNull()) {
+            String text = contentNode.asText();
+            if (!text.isEmpty()) {
+                markFirstToken();
+                content.append(text);
+                if (listener != null) listener.onContent(text);
+            }
+        }
+
+        JsonNode calls = delta.get("tool_calls");
+        if (calls != null && calls.isArray()) {
+            markFirstToken();
+            for (JsonNode call : calls) {
+                int index = call.has("index") ? call.get("index").asInt() : toolCalls.size();
+                while (toolCalls.size() <= index) {
+                    toolCalls.add(new ToolCallBuilder());
+                }
+                ToolCallBuilder builder = toolCalls.get(index);
+                if (call.hasNonNull("id")) builder.id = call.get("id").asText();
+                JsonNode function = call.get("function");
+                if (function != null) {
+                    if (function.hasNonNull("name")) builder.name.append(function.get("name").asText());
+                    if (function.hasNonNull("arguments")) builder.arguments.append(function.get("arguments").asText());
+                }
+            }
+        }
+    }
+
+    // Shared by the streaming and blocking paths. Cached prompt tokens are reported as
+    // prompt_tokens_details.cached_tokens (OpenAI) or prompt_cache_hit_tokens (DeepSeek).
+    static void readUsage(JsonNode usage, ChatCompletion completion) {
+        if (usage == null || usage.isNull()) return;
+        completion.setPromptTokens(usage.path("prompt_tokens").asInt());
+        completion.setCompletionTokens(usage.path("completion_tokens").asInt());
+        JsonNode cached = usage.path("prompt_tokens_details").path("cached_tokens");
+        if (cached.isMissingNode() || cached.isNull()) {
+            cached = usage.path("prompt_cache_hit_tokens");
+        }
+        completion.setCachedPromptTokens(cached.asInt());
+    }
+
+    public ChatCompletion finish() {
+        completion.setContent(content.length() > 0 ? content.toString() : null);
+        completion.setReasoning(reasoning.length() > 0 ? reasoning.toString() : null);
+        for (ToolCallBuilder builder : toolCalls) {
+            if (builder.name.length() == 0) continue;
+            completion.getToolCalls().add(new ChatCompletion.ToolCall(builder.id, builder.name.toString(), builder.arguments.toString()));
+        }
+        completion.setTotalMillis((System.nanoTime() - startNanos) / 1_000_000);
+        return completion;
+    }
+
+    private void markFirstToken() {
+        if (completion.getTimeToFirstTokenMillis() < 0) {
+            completion.setTimeToFirstTokenMillis((System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    private static class ToolCallBuilder {
+        String id;
+        final StringBuilder name = new StringBuilder();
+        final StringBuilder arguments = new StringBuilder();
+    }
+}
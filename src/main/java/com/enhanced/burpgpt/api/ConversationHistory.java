@@ -0,0 +1,238 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.analysis.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Keeps the message list of one agent run within a token budget so late turns don't resend
+// the whole session. The system prompt, the original task and the most recent turns stay
+// verbatim. Older tool outputs are replaced by short digests first; if that is not enough,
+// the older turns are collapsed into one summary message. With a summarizer, that summary is
+// produced in the background once the history passes SUMMARIZE_AT of the budget.
+class ConversationHistory {
+    private static final double SUMMARIZE_AT = 0.6;
+    private static final int DIGEST_PREVIEW_TOKENS = 120;
+    private static final int SUMMARY_INPUT_TOKENS = 12000;
+    private static final String INLINE_TOOL_PREFIX = "Tool Output: ";
+
+    private final Tokenizer tokenizer;
+    private final int keepRecentTurns;
+    private final Function<String, String> summarizer;
+    private final Map<Map<String, Object>, Integer> tokenCounts = new IdentityHashMap<>();
+    private final Set<Map<String, Object>> digested = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private CompletableFuture<String> pendingSummary;
+    private List<Map<String, Object>> pendingSegment;
+
+    ConversationHistory(Tokenizer tokenizer, int keepRecentTurns, Function<String, String> summarizer) {
+        this.tokenizer = tokenizer;
+        this.keepRecentTurns = Math.max(1, keepRecentTurns);
+        this.summarizer = summarizer;
+    }
+
+    // Compacts messages in place. Returns the number of tokens removed (0 if nothing changed).
+    int compact(List<Map<String, Object>> messages, int budgetTokens) {
+        if (tokenCounts.size() > messages.size()) prune(messages);
+        int before = total(messages);
+        int head = firstTaskIndex(messages) + 1;
+        int recent = recentStart(messages, head);
+
+        if (summarizer != null && pendingSummary == null && before > budgetTokens * SUMMARIZE_AT && recent - head > 1) {
+            startSummary(messages, head, recent);
+        }
+        if (before <= budgetTokens) return 0;
+
+        // 1. Digest old tool outputs
+        int current = before;
+        for (int i = head; i < recent && current > budgetTokens; i++) {
+            current -= digest(messages.get(i));
+        }
+
+        // 2. Collapse the older turns into a single summary message
+        if (current > budgetTokens && recent > head) {
+            collapse(messages, head, recent);
+            recent = head + 1;
+            current = total(messages);
+        }
+
+        // 3. Recent turns alone are too large: digest their tool outputs too, except the last turn's
+        if (current > budgetTokens) {
+            int last = recentStart(messages, head, 1);
+            for (int i = head; i < last && current > budgetTokens; i++) {
+                current -= digest(messages.get(i));
+            }
+        }
+        return before - current;
+    }
+
+    private int total(List<Map<String, Object>> messages) {
+        int sum = 0;
+        for (Map<String, Object> message : messages) {
+            sum += count(message);
+        }
+        return sum;
+    }
+
+    private int count(Map<String, Object> message) {
+        Integer cached = tokenCounts.get(message);
+        if (cached != null) return cached;
+        int tokens = countTokens(tokenizer, message);
+        tokenCounts.put(message, tokens);
+        return tokens;
+    }
+
+    // Role and separators, the content, and the name and arguments of every tool call
+    static int countTokens(Tokenizer tokenizer, Map<String, Object> message) {
+        int tokens = 4;
+        Object content = message.get("content");
+        if (content instanceof String) {
+            tokens += tokenizer.count((String) content);
+        }
+        Object toolCalls = message.get("tool_calls");
+        if (toolCalls instanceof List) {
+            for (Object call : (List<?>) toolCalls) {
+                Object function = call instanceof Map ? ((Map<?, ?>) call).get("function") : null;
+                if (!(function instanceof Map)) continue;
+                tokens += 4; // Id, type and separators
+                for (Object value : ((Map<?, ?>) function).values()) {
+                    if (value instanceof String) tokens += tokenizer.count((String) value);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    // Forgets messages that are no longer in the list, whoever removed them
+    private void prune(List<Map<String, Object>> messages) {
+        Set<Map<String, Object>> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        present.addAll(messages);
+        tokenCounts.keySet().retainAll(present);
+        digested.retainAll(present);
+    }
+
+    // Index of the original task (first user message); everything up to it is kept
+    private static int firstTaskIndex(List<Map<String, Object>> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if ("user".equals(messages.get(i).get("role"))) return i;
+        }
+        return messages.size() - 1;
+    }
+
+    private int recentStart(List<Map<String, Object>> messages, int head) {
+        return recentStart(messages, head, keepRecentTurns);
+    }
+
+    // Start of the last `turns` assistant turns; cutting there never separates an assistant
+    // tool_calls message from its tool results
+    private static int recentStart(List<Map<String, Object>> messages, int head, int turns) {
+        int seen = 0;
+        for (int i = messages.size() - 1; i >= head; i--) {
+            if ("assistant".equals(messages.get(i).get("role")) && ++seen == turns) return i;
+        }
+        return head;
+    }
+
+    private static boolean isToolOutput(Map<String, Object> message) {
+        if ("tool".equals(message.get("role"))) return true;
+        Object content = message.get("content");
+        return "user".equals(message.get("role")) && content instanceof String && ((String) content).startsWith(INLINE_TOOL_PREFIX);
+    }
+
+    // Replaces a tool output with a short preview; returns the tokens saved
+    private int digest(Map<String, Object> message) {
+        if (!isToolOutput(message) || digested.contains(message)) return 0;
+        String content = (String) message.get("content");
+        int before = count(message);
+        String preview = tokenizer.truncate(content, DIGEST_PREVIEW_TOKENS);
+        if (preview.length() >= content.length()) return 0;
+
+        int lines = 1;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') lines++;
+        }
+        message.put("content", preview + "\n...[earlier tool output digested: " + content.length() + " chars, "
+            + lines + " lines, ~" + before + " tokens; re-run the tool if the full output is needed]");
+        digested.add(message);
+        tokenCounts.remove(message);
+        return before - count(message);
+    }
+
+    private void startSummary(List<Map<String, Object>> messages, int head, int recent) {
+        List<Map<String, Object>> segment = new ArrayList<>(messages.subList(head, recent));
+        String transcript = tokenizer.truncate(transcript(segment), SUMMARY_INPUT_TOKENS);
+        pendingSegment = segment;
+        // The summary is a blocking LLM call that nothing waits on; the blocking pool keeps it off
+        // the agent workers and is shut down with them when the extension unloads
+        pendingSummary = CompletableFuture.supplyAsync(() -> summarizer.apply(transcript), AgentExecutor.blocking())
+            .exceptionally(e -> null);
+    }
+
+    private void collapse(List<Map<String, Object>> messages, int head, int recent) {
+        List<Map<String, Object>> segment = messages.subList(head, recent);
+        String summary = null;
+
+        // Use the background summary if it covers exactly the start of the older turns
+        if (pendingSummary != null && pendingSummary.isDone() && pendingSegment.size() <= segment.size()) {
+            boolean matches = true;
+            for (int i = 0; i < pendingSegment.size() && matches; i++) {
+                matches = pendingSegment.get(i) == segment.get(i);
+            }
+            if (matches) {
+                summary = pendingSummary.join();
+                if (summary != null && pendingSegment.size() < segment.size()) {
+                    summary += "\n" + outline(segment.subList(pendingSegment.size(), segment.size()));
+                }
+            }
+        }
+        if (summary == null) {
+            summary = outline(segment);
+        }
+        pendingSummary = null;
+        pendingSegment = null;
+
+        Map<String, Object> summaryMsg = new HashMap<>();
+        summaryMsg.put("role", "user");
+        summaryMsg.put("content", "[Summary of " + segment.size() + " earlier messages, compacted to save context]\n" + summary);
+        for (Map<String, Object> message : segment) {
+            tokenCounts.remove(message);
+            digested.remove(message);
+        }
+        segment.clear();
+        messages.add(head, summaryMsg);
+    }
+
+    // Extractive fallback: first line of each assistant message and of each tool output
+    private String outline(List<Map<String, Object>> segment) {
+        StringBuilder sb = new StringBuilder();
+        for (Map<String, Object> message : segment) {
+            Object content = message.get("content");
+            if (!(content instanceof String) || ((String) content).isEmpty()) continue;
+            String text = (String) content;
+            int newline = text.indexOf('\n');
+            String firstLine = tokenizer.truncate(newline >= 0 ? text.substring(0, newline) : text, 60);
+            sb.append("- ").append(message.get("role")).append(": ").append(firstLine).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static String transcript(List<Map<String, Object>> segment) {
+        StringBuilder sb = new StringBuilder();
+        for (Map<String, Object> message : segment) {
+            sb.append("[").append(message.get("role")).append("]\n");
+            Object content = message.get("content");
+            if (content instanceof String) sb.append(content);
+            Object toolCalls = message.get("tool_calls");
+            if (toolCalls != null) sb.append("\n(tool calls: ").append(toolCalls).append(")");
+            sb.append("\n\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.Config;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Process-wide HTTP transport for LLM calls. All providers share one connection pool and
+// dispatcher, so keep-alive connections (and HTTP/2 streams) are reused across analyses.
+public class HttpClientManager {
+    private static OkHttpClient client;
+
+    public static synchronized OkHttpClient getClient() {
+        if (client == null) {
+            client = buildClient();
+        }
+        return client;
+    }
+
+    // Rebuild the client after pool settings changed. In-flight calls keep the old client,
+    // its idle connections are released so they do not linger until keep-alive expires.
+    public static synchronized void reload() {
+        OkHttpClient old = client;
+        client = buildClient();
+        if (old != null) {
+            old.connectionPool().evictAll();
+        }
+        LLMRouter.invalidate();
+    }
+
+    public static synchronized void shutdown() {
+        if (client == null) return;
+        client.dispatcher().cancelAll();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        client = null;
+    }
+
+    private static OkHttpClient buildClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(1, Config.httpMaxRequests));
+        dispatcher.setMaxRequestsPerHost(Math.max(1, Config.httpMaxRequestsPerEndpoint));
+
+        ConnectionPool pool = new ConnectionPool(
+            Math.max(1, Config.httpMaxIdleConnections),
+            Math.max(1, Config.httpKeepAliveSeconds),
+            TimeUnit.SECONDS);
+
+        return new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(pool)
+            .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true)
+            .connectTimeout(Duration.ofSeconds(60))
+            .readTimeout(Duration.ofSeconds(60))
+            .writeTimeout(Duration.ofSeconds(60))
+            .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Pool of LLM backends. Requests go to the healthy backend with the best latency / quota
+// score; a failing backend is put on cool-down and the call fails over to the next one.
+public class LLMRouter {
+    // Latency assumed for a backend before its first call when no other backend has samples
+    private static final double DEFAULT_LATENCY_PRIOR_MILLIS = 2000;
+
+    // Keyed by url + key + model so health and latency history survive across analyses
+    private static final Map<String, OpenAICompatibleProvider> backends = new ConcurrentHashMap<>();
+
+    static {
+        Config.addSaveListener(LLMRouter::invalidate);
+    }
+
+    // Backends hold the HTTP client they were built with and stale config entries would
+    // linger; they are rebuilt on next use, starting with a fresh health record
+    public static void invalidate() {
+        backends.clear();
+    }
+
+    public static OpenAICompatibleProvider backend(String name, String apiKey, String apiUrl, String model, int weight) {
+        String baseUrl = OpenAICompatibleProvider.normalizeBaseUrl(apiUrl);
+        String id = baseUrl + "|" + LLMScheduler.endpointKey(baseUrl, apiKey) + "|" + model + "|" + weight;
+        return backends.computeIfAbsent(id, k -> new OpenAICompatibleProvider(name, apiKey, baseUrl, model, weight));
+    }
+
+    // The provider's own endpoint plus every enabled backend from the config
+    public static List<APIProvider> candidates(APIProvider primary) {
+        List<APIProvider> list = new ArrayList<>();
+        list.add(primary);
+        if (Config.llmBackends != null) {
+            for (Config.LLMBackendConfig cfg : Config.llmBackends) {
+                if (!cfg.enabled || cfg.apiUrl == null || cfg.apiUrl.isEmpty()) continue;
+                String model = cfg.model != null && !cfg.model.isEmpty() ? cfg.model : primary.getModel();
+                APIProvider backend = backend(cfg.name, cfg.apiKey, cfg.apiUrl, model, cfg.weight);
+                if (!list.contains(backend)) list.add(backend);
+            }
+        }
+        return list;
+    }
+
+    public static APIProvider select(List<APIProvider> candidates, Set<APIProvider> exclude) {
+        // Unsampled backends are scored as an average one
+        double sampledTotal = 0;
+        int sampled = 0;
+        for (APIProvider backend : candidates) {
+            double latency = backend.getLatencyEwmaMillis();
+            if (latency >= 0) {
+                sampledTotal += latency;
+                sampled++;
+            }
+        }
+        double prior = sampled > 0 ? sampledTotal / sampled : DEFAULT_LATENCY_PRIOR_MILLIS;
+
+        APIProvider best = null;
+        double bestScore = Double.MAX_VALUE;
+        APIProvider soonest = null;
+        for (APIProvider backend : candidates) {
+            if (exclude.contains(backend)) continue;
+            if (!backend.isHealthy()) {
+                // Remember the one that recovers first in case every backend is cooling down
+                if (soonest == null || backend.getUnhealthyUntil() < soonest.getUnhealthyUntil()) {
+                    soonest = backend;
+                }
+                continue;
+            }
+            double score = backend.score(prior);
+            if (score < bestScore) {
+                bestScore = score;
+                best = backend;
+            }
+        }
+        return best != null ? best : soonest;
+    }
+
+    // Whether a healthy backend is left to fail over to
+    public static boolean hasAlternative(List<APIProvider> candidates, Set<APIProvider> exclude) {
+        for (APIProvider backend : candidates) {
+            if (!exclude.contains(backend) && backend.isHealthy()) return true;
+        }
+        return false;
+    }
+
+    // Status errors worth retrying on another backend; other 4xx would fail everywhere
+    public static boolean isFailoverStatus(int code) {
+        return code == 401 || code == 403 || code == 404 || code == 408 || code == 429 || code >= 500;
+    }
+}
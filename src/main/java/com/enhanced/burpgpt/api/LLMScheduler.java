@@ -0,0 +1,262 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.Config;
+import okhttp3.Call;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Central gate in front of every LLM call. Keeps request / token buckets per endpoint and
+// key, fed by the x-ratelimit-* headers the provider returns, and queues callers until the
+// quota allows another call. 429 and 5xx responses are retried with jittered backoff.
+public class LLMScheduler {
+    private static final Map<String, EndpointState> states = new ConcurrentHashMap<>();
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    public static String endpointKey(String apiUrl, String apiKey) {
+        // Never keep the raw key around; a hash is enough to tell keys apart
+        return apiUrl + "#" + Integer.toHexString(apiKey != null ? apiKey.hashCode() : 0);
+    }
+
+    public static EndpointState getState(String endpointKey) {
+        return states.computeIfAbsent(endpointKey, k -> new EndpointState());
+    }
+
+    // Executes the call produced by callFactory (a fresh Call per attempt) once quota is
+    // available. Returns the final response; after retries are exhausted that may still be
+    // an error response, which the caller must close.
+    public static Response execute(String endpointKey, int estimatedTokens, Supplier<Call> callFactory,
+                                   BooleanSupplier cancelled, Consumer<String> onRetry) throws IOException {
+        return execute(endpointKey, estimatedTokens, callFactory, cancelled, onRetry, Config.llmMaxRetries);
+    }
+
+    // Same with an explicit retry cap; the router passes 0 while other backends are left to
+    // fail over to, so a struggling endpoint is not retried with backoff first
+    public static Response execute(String endpointKey, int estimatedTokens, Supplier<Call> callFactory,
+                                   BooleanSupplier cancelled, Consumer<String> onRetry, int maxRetries) throws IOException {
+        EndpointState state = getState(endpointKey);
+        maxRetries = Math.max(0, maxRetries);
+
+        for (int attempt = 0; ; attempt++) {
+            state.acquire(estimatedTokens, cancelled);
+
+            Response response;
+            try {
+                response = callFactory.get().execute();
+            } catch (IOException e) {
+                if (cancelled.getAsBoolean() || e instanceof InterruptedIOException && Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                if (attempt >= maxRetries) throw e;
+                long delay = backoffMillis(attempt);
+                if (onRetry != null) onRetry.accept("Connection error (" + e.getMessage() + "), retrying in " + delay + " ms");
+                sleep(delay, cancelled);
+                continue;
+            }
+
+            state.update(response);
+
+            int code = response.code();
+            boolean retryable = code == 429 || code == 500 || code == 502 || code == 503 || code == 504 || code == 529;
+            if (!retryable) {
+                return response;
+            }
+
+            long delay = retryAfterMillis(response);
+            if (delay < 0) {
+                delay = backoffMillis(attempt);
+            }
+            // Throttle the endpoint on every 429, also when this caller gives up or fails over
+            if (code == 429) {
+                state.blockFor(delay);
+            }
+            if (attempt >= maxRetries) {
+                return response;
+            }
+            response.close();
+            if (onRetry != null) onRetry.accept("API returned " + code + ", retrying in " + delay + " ms (attempt " + (attempt + 1) + "/" + maxRetries + ")");
+            sleep(delay, cancelled);
+        }
+    }
+
+    // Full jitter: uniform in [0, min(cap, base * 2^attempt)]
+    private static long backoffMillis(int attempt) {
+        long cap = Math.max(1, Config.llmMaxBackoffSeconds) * 1000L;
+        long exp = Math.min(cap, 1000L << Math.min(attempt, 16));
+        return 250 + ThreadLocalRandom.current().nextLong(exp);
+    }
+
+    private static long retryAfterMillis(Response response) {
+        String ms = response.header("retry-after-ms");
+        if (ms != null) {
+            try {
+                return (long) Double.parseDouble(ms.trim());
+            } catch (NumberFormatException ignored) {
+                // Fall back to Retry-After
+            }
+        }
+        String value = response.header("Retry-After");
+        if (value == null) return -1;
+        try {
+            return (long) (Double.parseDouble(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (Exception ignored) {
+                return -1;
+            }
+        }
+    }
+
+    // Parses reset values such as "20ms", "1s", "6m0s", "1h2m3.5s" or plain seconds
+    static long parseDurationMillis(String value) {
+        if (value == null || value.isEmpty()) return -1;
+        try {
+            return (long) (Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException ignored) {
+            // Go-style duration
+        }
+        Matcher matcher = DURATION_PART.matcher(value);
+        double total = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h": total += amount * 3_600_000; break;
+                case "m": total += amount * 60_000; break;
+                case "s": total += amount * 1000; break;
+                default: total += amount; break;
+            }
+        }
+        return found ? (long) total : -1;
+    }
+
+    private static void sleep(long millis, BooleanSupplier cancelled) throws IOException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (true) {
+            if (cancelled.getAsBoolean()) throw new IOException("Canceled");
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return;
+            try {
+                Thread.sleep(Math.min(remaining, 200));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rate limit");
+            }
+        }
+    }
+
+    // Request-per-minute and token-per-minute buckets for one endpoint + key. Capacities are
+    // unknown (unlimited) until the provider reports them in response headers.
+    public static class EndpointState {
+        private double requestCapacity = -1;
+        private double requestsAvailable;
+        private double tokenCapacity = -1;
+        private double tokensAvailable;
+        private long lastRefill = System.currentTimeMillis();
+        private long blockedUntil = 0;
+
+        void acquire(int estimatedTokens, BooleanSupplier cancelled) throws IOException {
+            while (true) {
+                long wait;
+                synchronized (this) {
+                    refill();
+                    long now = System.currentTimeMillis();
+                    wait = blockedUntil - now;
+                    if (wait <= 0) {
+                        wait = Math.max(waitFor(requestCapacity, requestsAvailable, 1),
+                            waitFor(tokenCapacity, tokensAvailable, estimatedTokens));
+                    }
+                    if (wait <= 0) {
+                        if (requestCapacity > 0) requestsAvailable -= 1;
+                        if (tokenCapacity > 0) tokensAvailable -= Math.min(estimatedTokens, tokenCapacity);
+                        return;
+                    }
+                }
+                sleep(Math.min(wait, 1000), cancelled);
+            }
+        }
+
+        private long waitFor(double capacity, double available, double needed) {
+            if (capacity <= 0) return 0;
+            needed = Math.min(needed, capacity);
+            if (available >= needed) return 0;
+            return (long) Math.ceil((needed - available) * 60_000 / capacity);
+        }
+
+        private void refill() {
+            long now = System.currentTimeMillis();
+            long elapsed = now - lastRefill;
+            lastRefill = now;
+            if (requestCapacity > 0) {
+                requestsAvailable = Math.min(requestCapacity, requestsAvailable + elapsed * requestCapacity / 60_000);
+            }
+            if (tokenCapacity > 0) {
+                tokensAvailable = Math.min(tokenCapacity, tokensAvailable + elapsed * tokenCapacity / 60_000);
+            }
+        }
+
+        synchronized void blockFor(long millis) {
+            blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + millis);
+        }
+
+        // The provider's view of remaining quota is authoritative; local estimates are corrected to it
+        synchronized void update(Response response) {
+            refill();
+            long now = System.currentTimeMillis();
+
+            double limitRequests = parseNumber(response.header("x-ratelimit-limit-requests"));
+            double remainingRequests = parseNumber(response.header("x-ratelimit-remaining-requests"));
+            if (limitRequests > 0) requestCapacity = limitRequests;
+            if (remainingRequests >= 0) {
+                requestsAvailable = remainingRequests;
+                if (remainingRequests < 1) {
+                    long reset = parseDurationMillis(response.header("x-ratelimit-reset-requests"));
+                    if (reset > 0) blockedUntil = Math.max(blockedUntil, now + reset);
+                }
+            }
+
+            double limitTokens = parseNumber(response.header("x-ratelimit-limit-tokens"));
+            double remainingTokens = parseNumber(response.header("x-ratelimit-remaining-tokens"));
+            if (limitTokens > 0) tokenCapacity = limitTokens;
+            if (remainingTokens >= 0) {
+                tokensAvailable = remainingTokens;
+                if (remainingTokens < 1) {
+                    long reset = parseDurationMillis(response.header("x-ratelimit-reset-tokens"));
+                    if (reset > 0) blockedUntil = Math.max(blockedUntil, now + reset);
+                }
+            }
+        }
+
+        // Fraction of the request quota currently free, 1.0 when no limit is known
+        public synchronized double freeQuotaRatio() {
+            refill();
+            if (System.currentTimeMillis() < blockedUntil) return 0;
+            double requestRatio = requestCapacity > 0 ? requestsAvailable / requestCapacity : 1.0;
+            double tokenRatio = tokenCapacity > 0 ? tokensAvailable / tokenCapacity : 1.0;
+            return Math.max(0, Math.min(requestRatio, tokenRatio));
+        }
+
+        private static double parseNumber(String value) {
+            if (value == null) return -1;
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
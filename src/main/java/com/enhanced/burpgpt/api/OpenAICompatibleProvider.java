@@ -0,0 +1,66 @@
+package com.enhanced.burpgpt.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+// Backend speaking the OpenAI chat completions protocol (OpenAI, DeepSeek, vLLM, gateways ...)
+public class OpenAICompatibleProvider extends APIProvider {
+
+    public OpenAICompatibleProvider(String name, String apiKey, String apiUrl, String model, int weight) {
+        super(apiKey, normalizeBaseUrl(apiUrl), model);
+        this.name = name != null && !name.isEmpty() ? name : this.apiUrl;
+        this.weight = Math.max(1, weight);
+    }
+
+    // Accepts "host", "https://host/v1" or a full ".../chat/completions" URL and returns a base ending in "/"
+    public static String normalizeBaseUrl(String apiUrl) {
+        String baseUrl = (apiUrl != null && !apiUrl.isEmpty()) ? apiUrl.trim() : "https://api.openai.com/";
+        if (!baseUrl.startsWith("http")) {
+            baseUrl = "https://" + baseUrl;
+        }
+        if (baseUrl.endsWith("/chat/completions")) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - "chat/completions".length());
+        }
+        if (!baseUrl.endsWith("/")) {
+            baseUrl += "/";
+        }
+        return baseUrl;
+    }
+
+    public String getCompletionsUrl() {
+        return apiUrl + "chat/completions";
+    }
+
+    @Override
+    public Request buildRequest(String prompt, int maxTokens) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", prompt);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.addProperty("max_tokens", maxTokens);
+        body.add("messages", messages);
+
+        return new Request.Builder()
+            .url(getCompletionsUrl())
+            .post(RequestBody.create(gson.toJson(body), MediaType.parse("application/json")))
+            .header("Authorization", "Bearer " + apiKey)
+            .build();
+    }
+
+    @Override
+    public String parseResponse(String responseBody) {
+        JsonObject root = gson.fromJson(responseBody, JsonObject.class);
+        JsonArray choices = root.getAsJsonArray("choices");
+        if (choices == null || choices.size() == 0) return null;
+        JsonObject message = choices.get(0).getAsJsonObject().getAsJsonObject("message");
+        return message != null && message.has("content") && !message.get("content").isJsonNull()
+            ? message.get("content").getAsString() : null;
+    }
+}
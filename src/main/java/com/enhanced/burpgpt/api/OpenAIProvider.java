@@ -1,78 +1,150 @@
 package com.enhanced.burpgpt.api;
 
+import com.enhanced.burpgpt.Config;
+import com.enhanced.burpgpt.analysis.ModelRegistry;
+import com.enhanced.burpgpt.analysis.Tokenizer;
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSource;
 
-import java.time.Duration;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.function.Consumer;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import burp.api.montoya.logging.Logging;
 
 public class OpenAIProvider {
-    private final String model;
-    private final String apiKey;
-    private final String apiUrl;
+    private final APIProvider primary;
     private final OkHttpClient client;
     private final ObjectMapper mapper = new ObjectMapper();
     private final Logging logging;
     private final Consumer<String> statusLogger;
-    private Call currentCall;
+    private static final int SUMMARY_MAX_TOKENS = 600;
+    private static final int MIN_COMPLETION_TOKENS = 256;
+    private static final int HISTORY_RESERVE_TOKENS = 1000;
+    private static final int LOG_PREVIEW_CHARS = 2000;
+    private static final int REPLAY_DELTA_CHARS = 16;
+    private static final Pattern INLINE_COMMAND_PATTERN = Pattern.compile("\\{[\\s\\S]*?\"command\"[\\s\\S]*?\\}");
+
+    private volatile Call currentCall;
+    private final CancellationToken cancellation = new CancellationToken();
+    private AgentLoop lastLoop;
+    private StreamListener streamListener;
+    private volatile long lastTimeToFirstTokenMillis = -1;
+    private boolean bypassCache = false;
+    private boolean lastResponseCached = false;
+    private long promptTokensTotal;
+    private long cachedPromptTokensTotal;
     private final ConcurrentLinkedQueue<String> injectionQueue = new ConcurrentLinkedQueue<>();
+    private volatile SingleFlight.Flight ownedFlight;
+    private volatile CompletableFuture<String> waitingFlight;
 
     public OpenAIProvider(String apiKey, String apiUrl, String model, Logging logging) {
         this(apiKey, apiUrl, model, logging, null);
     }
 
     public OpenAIProvider(String apiKey, String apiUrl, String model, Logging logging, Consumer<String> statusLogger) {
-        this.apiKey = apiKey;
-        this.model = model;
         this.logging = logging;
         this.statusLogger = statusLogger;
-        
-        // Ensure apiUrl ends with slash if not empty, otherwise use default
-        String baseUrl = (apiUrl != null && !apiUrl.isEmpty()) ? apiUrl : "https://api.openai.com/";
-        if (!baseUrl.startsWith("http")) {
-            baseUrl = "https://" + baseUrl;
-        }
-        if (!baseUrl.endsWith("/")) {
-            baseUrl += "/";
-        }
-        this.apiUrl = baseUrl;
+        this.primary = LLMRouter.backend("Default", apiKey, apiUrl, model, 1);
 
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(Duration.ofSeconds(60))
-            .readTimeout(Duration.ofSeconds(60))
-            .writeTimeout(Duration.ofSeconds(60))
-            .build();
+        // Shared across all providers so connections to the endpoint are kept alive
+        this.client = HttpClientManager.getClient();
+
+        cancellation.onCancel(() -> {
+            Call call = currentCall;
+            if (call != null && !call.isCanceled()) {
+                call.cancel();
+                if (logging != null) logging.logToOutput("Request cancelled by user.");
+            }
+        });
     }
 
+    // Stops the run: the LLM call, running tool processes, pending MCP requests and send_request waits
     public void cancel() {
-        if (currentCall != null && !currentCall.isCanceled()) {
-            currentCall.cancel();
-            if (logging != null) logging.logToOutput("Request cancelled by user.");
-        }
+        cancellation.cancel();
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellation;
+    }
+
+    // Runs on the shared agent workers. Cancelling the returned future cancels the run.
+    public CompletableFuture<String> sendRequestAsync(String systemPrompt, String userPrompt, int maxTokens) {
+        return track(AgentExecutor.supply(() -> sendRequest(systemPrompt, userPrompt, maxTokens)));
+    }
+
+    public CompletableFuture<String> sendRequestAsync(String systemPrompt, String stablePrefix, String variableSuffix, int maxTokens) {
+        return track(AgentExecutor.supply(() -> sendRequest(systemPrompt, stablePrefix, variableSuffix, maxTokens)));
+    }
+
+    private CompletableFuture<String> track(CompletableFuture<String> future) {
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) cancel();
+        });
+        return future;
+    }
+
+    public void setStreamListener(StreamListener streamListener) {
+        this.streamListener = streamListener;
+    }
+
+    public long getLastTimeToFirstTokenMillis() {
+        return lastTimeToFirstTokenMillis;
+    }
+
+    public void setBypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+    }
+
+    public boolean isLastResponseCached() {
+        return lastResponseCached;
+    }
+
+    // Share of prompt tokens served from the provider's prefix cache, across all calls on this provider
+    public long getPromptTokensTotal() {
+        return promptTokensTotal;
+    }
+
+    public long getCachedPromptTokensTotal() {
+        return cachedPromptTokensTotal;
     }
 
     public void injectUserMessage(String message) {
         injectionQueue.add(message);
         if (logging != null) logging.logToOutput("[DEBUG] Queued user injection: " + message);
+        // A caller sharing another's run stops waiting and runs the request with its intervention
+        CompletableFuture<String> waiting = waitingFlight;
+        if (waiting != null) waiting.complete(null);
     }
 
     public String sendRequest(String prompt, int maxTokens) {
         return sendRequest(null, prompt, maxTokens);
     }
 
+    // Keeps the stable part of the prompt (template, request) ahead of the per-call part
+    // (chunk text, previous findings, interventions) so provider-side prefix caching can hit.
+    public String sendRequest(String systemPrompt, String stablePrefix, String variableSuffix, int maxTokens) {
+        return sendRequest(systemPrompt, stablePrefix + "\n\n" + variableSuffix, maxTokens);
+    }
+
     public String sendRequest(String systemPrompt, String userPrompt, int maxTokens) {
         // Use List<Map> to manage messages to support new "tool" role and structure
         List<Map<String, Object>> messages = new ArrayList<>();
@@ -89,175 +161,602 @@ public class OpenAIProvider {
         userMsg.put("content", userPrompt);
         messages.add(userMsg);
 
-        return sendRequestRecursive(messages, maxTokens, 0);
+        lastResponseCached = false;
+        String cacheKey = ResponseCache.key(primary.getModel(), systemPrompt, userPrompt, maxTokens);
+        Cassette.recordPrompt(systemPrompt, userPrompt, maxTokens);
+        if (!bypassCache && !Cassette.isReplaying()) {
+            String cached = ResponseCache.get(cacheKey);
+            if (cached != null) {
+                MetricsRegistry.increment("cache.hits");
+                lastResponseCached = true;
+                if (logging != null) logging.logToOutput("[CACHE] Hit " + cacheKey.substring(0, 12));
+                logStyle("Cache hit", "Served from response cache (enable \"Bypass cache\" to re-run)", "⚡");
+                return cached;
+            }
+        }
+
+        if (Config.responseCacheEnabled) MetricsRegistry.increment("cache.misses");
+        if (!Config.coalesceRequests) {
+            return runLoop(messages, cacheKey, maxTokens);
+        }
+        while (true) {
+            List<String> pending = new ArrayList<>(injectionQueue);
+            SingleFlight.Flight flight = SingleFlight.join(flightKey(cacheKey, pending), this);
+            if (flight.isOwner(this)) {
+                return runAsOwner(flight, messages, cacheKey, maxTokens);
+            }
+            String shared = awaitFlight(flight, pending.size());
+            if (shared != null) {
+                // The owner started with the same interventions and has applied them
+                injectionQueue.removeAll(pending);
+                return shared;
+            }
+            // The owner was cancelled or intervened, or we got an intervention while waiting; run
+            // it ourselves unless another caller already took over
+        }
     }
 
-    private String sendRequestRecursive(List<Map<String, Object>> messages, int maxTokens, int depth) {
-        
-        // Check for injected messages
-        while (!injectionQueue.isEmpty()) {
-            String msg = injectionQueue.poll();
-            Map<String, Object> injectedMsg = new HashMap<>();
-            injectedMsg.put("role", "user");
-            injectedMsg.put("content", "[User Intervention]: " + msg);
-            messages.add(injectedMsg);
-            
-            logStyle("Intervention", msg, "👤");
+    // Callers share a run only if it would see the same input: the prompt, the interventions
+    // queued before it starts, the history compaction settings and the tool catalog
+    private String flightKey(String cacheKey, List<String> pendingInterventions) {
+        return Hashing.sha256(cacheKey, String.join("\n", pendingInterventions),
+            Config.historyKeepTurns + "/" + Config.historyMaxTokens + "/" + Config.historySummarize,
+            String.valueOf(ToolExecutor.getCatalog().getVersion()));
+    }
+
+    // Streams to this provider's listener and to every caller that joined the flight. On Stop,
+    // or once the run takes an intervention, the followers are released to run on their own.
+    private String runAsOwner(SingleFlight.Flight flight, List<Map<String, Object>> messages, String cacheKey, int maxTokens) {
+        StreamListener own = streamListener;
+        flight.attach(own);
+        streamListener = flight;
+        ownedFlight = flight;
+        CancellationToken.Registration registration = cancellation.onCancel(() -> SingleFlight.abandon(flight));
+        String result = null;
+        try {
+            result = runLoop(messages, cacheKey, maxTokens);
+            return result;
+        } finally {
+            registration.close();
+            ownedFlight = null;
+            streamListener = own;
+            SingleFlight.finish(flight, cancellation.isCancelled() ? null : result);
         }
+    }
 
+    private String awaitFlight(SingleFlight.Flight flight, int pendingInterventions) {
+        MetricsRegistry.increment("llm.coalesced");
+        if (logging != null) logging.logToOutput("[COALESCE] Joined in-flight request");
+        logStyle("Joined in-flight analysis", "An identical request is already running; sharing its output", "🔗");
+        lastTimeToFirstTokenMillis = -1;
+
+        // A copy, so cancelling our wait leaves the owner's future and other waiters alone
+        CompletableFuture<String> waiting = flight.getResult().thenApply(result -> result);
+        waitingFlight = waiting;
+        if (injectionQueue.size() != pendingInterventions) waiting.complete(null); // Raced with injectUserMessage
+        flight.attach(streamListener);
+        CancellationToken.Registration registration = cancellation.onCancel(() -> waiting.cancel(false));
         try {
-            // Build Request Body
-            ObjectNode requestBody = mapper.createObjectNode();
-            requestBody.put("model", this.model);
-            requestBody.put("max_tokens", maxTokens);
-            
-            ArrayNode messagesArray = mapper.valueToTree(messages);
-            requestBody.set("messages", messagesArray);
-
-            // Attach Tools
-            List<Map<String, Object>> toolDefinitions = ToolExecutor.getAvailableTools();
-            if (!toolDefinitions.isEmpty()) {
-                if (logging != null) logging.logToOutput("[DEBUG] Loaded " + toolDefinitions.size() + " tools.");
-                ArrayNode toolsArray = mapper.valueToTree(toolDefinitions);
-                requestBody.set("tools", toolsArray);
-                requestBody.put("tool_choice", "auto");
-            }
+            return waiting.join();
+        } catch (CancellationException e) {
+            return "Analysis cancelled.";
+        } finally {
+            registration.close();
+            waitingFlight = null;
+            flight.detach(streamListener);
+        }
+    }
 
-            // Create Request
-            String jsonBody = mapper.writeValueAsString(requestBody);
-            RequestBody body = RequestBody.create(jsonBody, MediaType.parse("application/json"));
-            
-            Request request = new Request.Builder()
-                .url(this.apiUrl + "chat/completions") // Assuming standard OpenAI path structure
-                .post(body)
-                .header("Authorization", "Bearer " + this.apiKey)
-                .header("Content-Type", "application/json")
-                .build();
-
-            // Execute
-            currentCall = client.newCall(request);
-            try (Response response = currentCall.execute()) {
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "No body";
-                    if (logging != null) logging.logToError("API Error: " + response.code() + " - " + errorBody);
-                    return "Error: API returned " + response.code();
-                }
+    private String runLoop(List<Map<String, Object>> messages, String cacheKey, int maxTokens) {
+        LoopHost host = new LoopHost();
+        AgentLoop loop = new AgentLoop(host, AgentLoop.Limits.fromConfig());
+        lastLoop = loop;
+        try {
+            String result = loop.run(messages, maxTokens);
+            logTurnStats(loop);
 
-                String responseString = response.body().string();
-                JsonNode responseNode = mapper.readTree(responseString);
-                
-                JsonNode choices = responseNode.get("choices");
-                if (choices != null && choices.size() > 0) {
-                    JsonNode messageNode = choices.get(0).get("message");
-                    
-                    // Check for reasoning_content (DeepSeek R1 / others)
-                    if (messageNode.has("reasoning_content") && !messageNode.get("reasoning_content").isNull()) {
-                        String reasoning = messageNode.get("reasoning_content").asText();
-                        if (!reasoning.isEmpty()) {
-                            logStyle("Thinking", reasoning, "🧠");
-                        }
-                    }
-
-                    // Check for tool_calls (New API)
-                    if (messageNode.has("tool_calls")) {
-                        // Log regular content if present (Thought before tool call)
-                        if (messageNode.has("content") && !messageNode.get("content").isNull()) {
-                            String content = messageNode.get("content").asText();
-                            if (!content.isEmpty()) {
-                                logStyle("Thought", content, "💬");
-                            }
-                        }
-
-                        // Add assistant message to history
-                        messages.add(mapper.convertValue(messageNode, Map.class));
-                        
-                        JsonNode toolCalls = messageNode.get("tool_calls");
-                        if (logging != null) logging.logToOutput("[DEBUG] Processing " + toolCalls.size() + " tool calls.");
-
-                        for (JsonNode toolCall : toolCalls) {
-                            String id = toolCall.get("id").asText();
-                            JsonNode function = toolCall.get("function");
-                            String name = function.get("name").asText();
-                            String arguments = function.get("arguments").asText();
-                            
-                            if (logging != null) logging.logToOutput("[DEBUG] Tool Call: " + name + " args: " + arguments);
-                            logStyle("Executing: " + name, "Arguments: " + arguments, "🛠️");
-                            
-                            String output = ToolExecutor.executeTool(name, arguments);
-                            
-                            if (logging != null) logging.logToOutput("[DEBUG] Tool Output: " + output);
-                            
-                            String displayOutput = output.length() > 500 ? output.substring(0, 500) + "... (truncated)" : output;
-                            logStyle("Output", displayOutput, "📤");
-
-                            // Append Tool Message
-                            Map<String, Object> toolMsg = new HashMap<>();
-                            toolMsg.put("role", "tool");
-                            toolMsg.put("tool_call_id", id);
-                            toolMsg.put("content", output);
-                            messages.add(toolMsg);
-                        }
-                        
-                        // Recurse
-                        return sendRequestRecursive(messages, maxTokens, depth + 1);
-                    }
-                    
-                    // Fallback for Manual JSON in Content (Legacy/DeepSeek behavior)
-                    String content = messageNode.has("content") && !messageNode.get("content").isNull() 
-                        ? messageNode.get("content").asText() : null;
-                        
-                    if (content != null) {
-                         try {
-                             // Extract JSON block
-                             Pattern pattern = Pattern.compile("\\{[\\s\\S]*?\"command\"[\\s\\S]*?\\}");
-                             Matcher matcher = pattern.matcher(content);
-                             if (matcher.find()) {
-                                 String json = matcher.group();
-                                 JsonNode node = mapper.readTree(json);
-                                 if (node.has("command")) {
-                                    if (logging != null) logging.logToOutput("[DEBUG] Detected manual tool call in content: run_cmd");
-                                    
-                                    // Add assistant message
-                                    Map<String, Object> assistantMsg = new HashMap<>();
-                                    assistantMsg.put("role", "assistant");
-                                    assistantMsg.put("content", content);
-                                    messages.add(assistantMsg);
-
-                                    logStyle("Executing: run_cmd", "Arguments: " + json, "🛠️");
-
-                                    // Execute
-                                    String output = ToolExecutor.executeTool("run_cmd", json);
-                                    if (logging != null) logging.logToOutput("[DEBUG] Tool Output: " + output);
-                                    
-                                    String displayOutput = output.length() > 500 ? output.substring(0, 500) + "... (truncated)" : output;
-                                    logStyle("Output", displayOutput, "📤");
-                                    
-                                    // Append Tool Message (Simulate)
-                                     Map<String, Object> toolMsg = new HashMap<>();
-                                     toolMsg.put("role", "user"); // Fallback: send result as user message if strict tool role isn't supported in manual mode
-                                     toolMsg.put("content", "Tool Output: " + output);
-                                     messages.add(toolMsg);
-                                     
-                                     return sendRequestRecursive(messages, maxTokens, depth + 1);
-                                 }
-                             }
-                         } catch (Exception e) { /* Ignore */ }
-                    }
-
-                    return content;
-                }
+            // Only clean, uninterrupted runs are reusable
+            if (loop.getState() == AgentLoop.State.COMPLETED && !host.intervened && result != null && !Cassette.isReplaying()) {
+                ResponseCache.put(cacheKey, primary.getModel(), result);
             }
 
+            if (loop.getState() == AgentLoop.State.CANCELLED) {
+                return "Analysis cancelled.";
+            }
+            if (loop.getState() == AgentLoop.State.BUDGET_EXHAUSTED) {
+                logStyle("Agent stopped", "Stopped after " + loop.getTurnStats().size() + " turns: " + loop.getStopReason(), "⏹️");
+                String note = "[Agent stopped: " + loop.getStopReason() + "]";
+                return result != null ? result + "\n\n" + note : note;
+            }
+            return result != null ? result : "Error: No response.";
         } catch (Exception e) {
-            if (currentCall != null && currentCall.isCanceled()) {
+            logTurnStats(loop);
+            if (cancellation.isCancelled() || (currentCall != null && currentCall.isCanceled())) {
                 return "Analysis cancelled.";
             }
             if (logging != null) logging.logToError("Exception: " + e.getMessage());
             e.printStackTrace();
             return "Error: " + e.getMessage();
         }
+    }
+
+    public AgentLoop getLastLoop() {
+        return lastLoop;
+    }
+
+    private void logTurnStats(AgentLoop loop) {
+        promptTokensTotal += loop.getPromptTokensUsed();
+        cachedPromptTokensTotal += loop.getCachedPromptTokensUsed();
+        if (logging == null) return;
+        for (AgentLoop.TurnStats stats : loop.getTurnStats()) {
+            logging.logToOutput("[PERF] " + stats);
+        }
+        logging.logToOutput("[PERF] Agent loop finished: " + loop.getState() + ", " + loop.getTurnStats().size()
+            + " turns, " + loop.getTokensUsed() + " tokens, prompt cache " + loop.getCachedPromptTokensUsed()
+            + "/" + loop.getPromptTokensUsed());
+    }
+
+    private class LoopHost implements AgentLoop.Host {
+        boolean intervened = false;
+        private final ConversationHistory history = new ConversationHistory(Tokenizer.forModel(primary.getModel()),
+            Config.historyKeepTurns, Config.historySummarize ? OpenAIProvider.this::summarize : null);
+
+        private void compactHistory(List<Map<String, Object>> messages, int maxTokens) {
+            int window = ModelRegistry.contextWindow(primary.getModel());
+            int budget = Math.max(MIN_COMPLETION_TOKENS, Math.min(Config.historyMaxTokens, window - maxTokens - HISTORY_RESERVE_TOKENS));
+            int saved = history.compact(messages, budget);
+            if (saved > 0 && logging != null) {
+                logging.logToOutput("[HISTORY] Compacted " + saved + " tokens (budget " + budget + ", " + messages.size() + " messages)");
+            }
+        }
+
+        @Override
+        public void drainInjections(List<Map<String, Object>> messages) {
+            // Check for injected messages
+            while (!injectionQueue.isEmpty()) {
+                String msg = injectionQueue.poll();
+                intervened = true;
+                // The run now differs from what the followers asked for
+                SingleFlight.Flight flight = ownedFlight;
+                if (flight != null) SingleFlight.abandon(flight);
+                Map<String, Object> injectedMsg = new HashMap<>();
+                injectedMsg.put("role", "user");
+                injectedMsg.put("content", "[User Intervention]: " + msg);
+                messages.add(injectedMsg);
+                
+                logStyle("Intervention", msg, "👤");
+            }
+        }
+
+        @Override
+        public ChatCompletion requestTurn(List<Map<String, Object>> messages, int maxTokens, CancellationToken cancellation) throws IOException {
+            compactHistory(messages, maxTokens);
+            ChatCompletion completion;
+            // Stop already cancels currentCall; the turn's deadline has to as well
+            CancellationToken.Registration registration = cancellation.onCancel(() -> {
+                Call call = currentCall;
+                if (call != null) call.cancel();
+            });
+            try {
+                completion = executeTurn(messages, maxTokens, false, cancellation);
+            } finally {
+                registration.close();
+            }
+            lastTimeToFirstTokenMillis = completion.getTimeToFirstTokenMillis();
+
+            // Check for reasoning_content (DeepSeek R1 / others)
+            String reasoning = completion.getReasoning();
+            if (reasoning != null && !reasoning.isEmpty()) {
+                logStyle("Thinking", reasoning, "🧠");
+            }
+
+            // Log regular content if present (Thought before tool call)
+            String content = completion.getContent();
+            if (completion.hasToolCalls() && content != null && !content.isEmpty()) {
+                logStyle("Thought", content, "💬");
+            }
+            return completion;
+        }
+
+        @Override
+        public List<Map<String, Object>> executeToolCalls(List<ChatCompletion.ToolCall> toolCalls, CancellationToken cancellation) {
+            if (logging != null) logging.logToOutput("[DEBUG] Processing " + toolCalls.size() + " tool calls.");
+
+            // Independent calls run concurrently on the tool pool; tools flagged as not
+            // parallel-safe run here, in order, once the whole parallel batch has finished so
+            // they never overlap with it. Results are appended in the original order.
+            boolean parallel = toolCalls.size() > 1;
+            List<Future<String>> pending = new ArrayList<>();
+            for (ChatCompletion.ToolCall toolCall : toolCalls) {
+                if (logging != null) logging.logToOutput("[DEBUG] Tool Call: " + toolCall.name + " args: " + toolCall.arguments);
+                logStyle("Executing: " + toolCall.name, "Arguments: " + toolCall.arguments, "🛠️");
+
+                if (parallel && ToolExecutor.isParallelSafe(toolCall.name)) {
+                    pending.add(ToolExecutor.executeToolAsync(toolCall.name, toolCall.arguments, cancellation));
+                } else {
+                    pending.add(null);
+                }
+            }
+
+            List<String> outputs = new ArrayList<>();
+            for (int i = 0; i < toolCalls.size(); i++) {
+                outputs.add(pending.get(i) != null ? awaitTool(toolCalls.get(i), pending.get(i)) : null);
+            }
+            for (int i = 0; i < toolCalls.size(); i++) {
+                if (pending.get(i) == null) {
+                    outputs.set(i, ToolExecutor.executeTool(toolCalls.get(i).name, toolCalls.get(i).arguments, cancellation));
+                }
+            }
+
+            List<Map<String, Object>> toolMessages = new ArrayList<>();
+            for (int i = 0; i < toolCalls.size(); i++) {
+                ChatCompletion.ToolCall toolCall = toolCalls.get(i);
+                String output = outputs.get(i);
+                
+                if (logging != null) logging.logToOutput("[DEBUG] Tool Output (" + output.length() + " chars): " + preview(output, LOG_PREVIEW_CHARS));
+                
+                String displayOutput = output.length() > 500 ? output.substring(0, 500) + "... (truncated)" : output;
+                logStyle("Output", displayOutput, "📤");
+
+                // Append Tool Message
+                Map<String, Object> toolMsg = new HashMap<>();
+                toolMsg.put("role", "tool");
+                toolMsg.put("tool_call_id", toolCall.id);
+                toolMsg.put("content", output);
+                toolMessages.add(toolMsg);
+            }
+            return toolMessages;
+        }
+
+        private String awaitTool(ChatCompletion.ToolCall toolCall, Future<String> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                return "Error executing tool " + toolCall.name + ": interrupted";
+            } catch (ExecutionException e) {
+                return "Error executing tool " + toolCall.name + ": " + e.getCause().getMessage();
+            }
+        }
+
+        @Override
+        public List<Map<String, Object>> handleInlineToolCall(String content, CancellationToken cancellation) {
+            // Fallback for Manual JSON in Content (Legacy/DeepSeek behavior)
+            try {
+                // Extract JSON block
+                Matcher matcher = INLINE_COMMAND_PATTERN.matcher(content);
+                if (!matcher.find()) return null;
+
+                String json = matcher.group();
+                JsonNode node = mapper.readTree(json);
+                if (!node.has("command")) return null;
+
+                if (logging != null) logging.logToOutput("[DEBUG] Detected manual tool call in content: run_cmd");
+
+                List<Map<String, Object>> followUp = new ArrayList<>();
+
+                // Add assistant message
+                Map<String, Object> assistantMsg = new HashMap<>();
+                assistantMsg.put("role", "assistant");
+                assistantMsg.put("content", content);
+                followUp.add(assistantMsg);
+
+                logStyle("Executing: run_cmd", "Arguments: " + json, "🛠️");
+
+                // Execute
+                String output = ToolExecutor.executeTool("run_cmd", json, cancellation);
+                if (logging != null) logging.logToOutput("[DEBUG] Tool Output (" + output.length() + " chars): " + preview(output, LOG_PREVIEW_CHARS));
+                
+                String displayOutput = output.length() > 500 ? output.substring(0, 500) + "... (truncated)" : output;
+                logStyle("Output", displayOutput, "📤");
+                
+                // Append Tool Message (Simulate)
+                Map<String, Object> toolMsg = new HashMap<>();
+                toolMsg.put("role", "user"); // Fallback: send result as user message if strict tool role isn't supported in manual mode
+                toolMsg.put("content", "Tool Output: " + output);
+                followUp.add(toolMsg);
+                return followUp;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        public CancellationToken getCancellation() {
+            return cancellation;
+        }
+    }
+
+    private static String preview(String text, int maxChars) {
+        return text.length() > maxChars ? text.substring(0, maxChars) + "... (truncated)" : text;
+    }
+
+    // Background summarizer for ConversationHistory. Goes through the same scheduler, router,
+    // cassette and cancellation as a turn, without tools and without streaming to the UI.
+    private String summarize(String transcript) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("role", "user");
+        request.put("content", "Summarize the following earlier part of a security analysis session in at most "
+            + "15 bullet points. Keep concrete findings, URLs, parameters, payloads and tool results that later steps "
+            + "may rely on. Omit pleasantries.\n\n" + transcript);
+        List<Map<String, Object>> messages = new ArrayList<>();
+        messages.add(request);
+        try {
+            MetricsRegistry.increment("llm.summaries");
+            return executeTurn(messages, SUMMARY_MAX_TOKENS, true, cancellation).getContent();
+        } catch (IOException | CancellationException e) {
+            if (logging != null) logging.logToError("History summary failed: " + e.getMessage());
+            return null;
+        }
+    }
 
-        return "Error: No response.";
+    // Prompt size in tokens, used to reserve token-per-minute quota and to size max_tokens
+    private int countPromptTokens(List<Map<String, Object>> messages, Tokenizer tokenizer) {
+        long tokens = 0;
+        for (Map<String, Object> message : messages) {
+            tokens += ConversationHistory.countTokens(tokenizer, message);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, tokens);
+    }
+
+    private Request buildRequest(APIProvider backend, List<Map<String, Object>> messages, int maxTokens, boolean withTools) {
+        // Attach Tools (pre-serialized catalog snapshot)
+        ToolCatalog catalog = ToolExecutor.getCatalog();
+        String toolsJson = null;
+        if (withTools && !catalog.isEmpty()) {
+            if (logging != null) logging.logToOutput("[DEBUG] Loaded " + catalog.size() + " tools (catalog v" + catalog.getVersion() + ").");
+            toolsJson = catalog.getJson();
+        }
+
+        // Serialized lazily into the connection; no intermediate tree or String
+        RequestBody body = new ChatRequestBody(backend.getModel(), maxTokens, messages, toolsJson, Config.streamingEnabled);
+
+        return new Request.Builder()
+            .url(backend.getApiUrl() + "chat/completions") // Assuming standard OpenAI path structure
+            .post(body)
+            .header("Authorization", "Bearer " + backend.getApiKey())
+            .header("Content-Type", "application/json")
+            .header("Accept", Config.streamingEnabled ? "text/event-stream" : "application/json")
+            .build();
+    }
+
+    // Picks a backend from the pool and fails over to the next one when it errors before
+    // any output has been consumed. A background turn (history summary) runs beside the main
+    // one: it sends no tools, streams nowhere and leaves currentCall alone.
+    private ChatCompletion executeTurn(List<Map<String, Object>> messages, int maxTokens, boolean background,
+                                       CancellationToken cancellation) throws IOException {
+        int promptTokens = countPromptTokens(messages, Tokenizer.forModel(primary.getModel()));
+        // Never ask for more completion tokens than the context window has left
+        int room = ModelRegistry.contextWindow(primary.getModel()) - promptTokens;
+        if (room < maxTokens) {
+            maxTokens = Math.max(MIN_COMPLETION_TOKENS, room);
+        }
+        int estimatedTokens = promptTokens + maxTokens;
+        String cassetteKey = Cassette.isRecording() || Cassette.isReplaying() ? Cassette.turnKey(primary.getModel(), messages, maxTokens) : null;
+        if (Cassette.isReplaying()) {
+            return withUsage(replayTurn(cassetteKey, messages, maxTokens, !background, background ? null : streamListener, cancellation), promptTokens);
+        }
+        List<APIProvider> candidates = LLMRouter.candidates(primary);
+        Set<APIProvider> tried = new HashSet<>();
+        IOException lastError = null;
+
+        while (true) {
+            APIProvider backend = LLMRouter.select(candidates, tried);
+            if (backend == null) {
+                throw lastError != null ? lastError : new IOException("No LLM backend available");
+            }
+            tried.add(backend);
+            // While untried backends remain, a 429 / 5xx fails over at once instead of being
+            // retried with backoff on this one
+            boolean failover = LLMRouter.hasAlternative(candidates, tried);
+            try {
+                Request request = buildRequest(backend, messages, maxTokens, !background);
+                int maxRetries = failover ? 0 : Config.llmMaxRetries;
+                ChatCompletion completion = background
+                    ? executeBackgroundTurn(backend, request, estimatedTokens, maxRetries, cancellation)
+                    : executeTurn(backend, request, estimatedTokens, maxRetries, streamListener, call -> currentCall = call, cancellation);
+                if (cassetteKey != null) Cassette.recordTurn(cassetteKey, completion);
+                return withUsage(completion, promptTokens);
+            } catch (FailoverException e) {
+                lastError = e;
+                if (cancellation.isCancelled()) throw e;
+                if (tried.size() < candidates.size()) {
+                    logStyle("Failover", backend.getName() + ": " + e.getMessage() + ", switching backend", "🔀");
+                }
+            }
+        }
+    }
+
+    // Some OpenAI-compatible servers send no usage (often when streaming); the token budget then
+    // counts the prompt and the completion locally instead of seeing zero
+    private ChatCompletion withUsage(ChatCompletion completion, int promptTokens) {
+        if (completion.getPromptTokens() == 0 && completion.getCompletionTokens() == 0) {
+            Tokenizer tokenizer = Tokenizer.forModel(primary.getModel());
+            int completionTokens = ConversationHistory.countTokens(tokenizer, completion.toMessage());
+            if (completion.getReasoning() != null) completionTokens += tokenizer.count(completion.getReasoning());
+            completion.setPromptTokens(promptTokens);
+            completion.setCompletionTokens(completionTokens);
+        }
+        return completion;
+    }
+
+    // Serves a turn from the cassette at full speed. The request is still serialized and the
+    // answer is streamed to the listener, so only the network and the model are taken out.
+    private ChatCompletion replayTurn(String key, List<Map<String, Object>> messages, int maxTokens, boolean withTools,
+                                      StreamListener listener, CancellationToken cancellation) throws IOException {
+        long startNanos = System.nanoTime();
+        cancellation.throwIfCancelled();
+        buildRequest(primary, messages, maxTokens, withTools).body().writeTo(new Buffer());
+        ChatCompletion completion = Cassette.replayTurn(key);
+
+        if (Config.streamingEnabled && listener != null) {
+            listener.onTurnStart();
+            if (completion.getReasoning() != null) {
+                for (String delta : slices(completion.getReasoning())) listener.onReasoning(delta);
+            }
+            if (completion.getContent() != null) {
+                for (String delta : slices(completion.getContent())) listener.onContent(delta);
+            }
+        }
+        long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+        completion.setTimeToFirstTokenMillis(elapsed);
+        completion.setTotalMillis(elapsed);
+        if (Config.streamingEnabled && listener != null) listener.onTurnEnd(completion);
+        recordCallMetrics(primary, completion);
+        return completion;
+    }
+
+    // Roughly the size of a streamed delta from a real API
+    private static List<String> slices(String text) {
+        List<String> slices = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += REPLAY_DELTA_CHARS) {
+            slices.add(text.substring(i, Math.min(text.length(), i + REPLAY_DELTA_CHARS)));
+        }
+        return slices;
+    }
+
+    // A background call cannot use currentCall without hiding the main turn's call from Stop,
+    // so it holds its own cancel hook while it runs
+    private ChatCompletion executeBackgroundTurn(APIProvider backend, Request request, int estimatedTokens, int maxRetries,
+                                                 CancellationToken cancellation) throws IOException {
+        AtomicReference<Call> current = new AtomicReference<>();
+        CancellationToken.Registration registration = cancellation.onCancel(() -> {
+            Call call = current.get();
+            if (call != null) call.cancel();
+        });
+        try {
+            return executeTurn(backend, request, estimatedTokens, maxRetries, null, current::set, cancellation);
+        } finally {
+            registration.close();
+        }
+    }
+
+    // Runs one model turn. In streaming mode the body is consumed line by line and deltas are
+    // forwarded to the stream listener as they arrive; otherwise the whole JSON is parsed at once.
+    private ChatCompletion executeTurn(APIProvider backend, Request request, int estimatedTokens, int maxRetries,
+                                       StreamListener listener, Consumer<Call> onCall, CancellationToken cancellation) throws IOException {
+        long startNanos = System.nanoTime();
+        backend.onStart();
+
+        // Queued behind the shared rate-limit scheduler; each attempt gets a fresh Call
+        Response response;
+        try {
+            response = LLMScheduler.execute(backend.getEndpointKey(), estimatedTokens, () -> {
+                Call call = client.newCall(request);
+                onCall.accept(call);
+                if (cancellation.isCancelled()) call.cancel(); // Stop raced with the new attempt
+                return call;
+            }, cancellation::isCancelled, this::onRetry, maxRetries);
+        } catch (IOException e) {
+            if (cancellation.isCancelled()) {
+                backend.release();
+                throw e;
+            }
+            backend.recordFailure(e.getMessage());
+            MetricsRegistry.increment(MetricsRegistry.label("llm.errors", backend.getName()));
+            throw new FailoverException(e.getMessage(), e);
+        }
+
+        try (response) {
+            if (!response.isSuccessful()) {
+                String errorBody = response.body() != null ? response.body().string() : "No body";
+                if (logging != null) logging.logToError("API Error (" + backend.getName() + "): " + response.code() + " - " + errorBody);
+                String error = "API returned " + response.code();
+                MetricsRegistry.increment(MetricsRegistry.label("llm.errors", backend.getName()));
+                if (LLMRouter.isFailoverStatus(response.code())) {
+                    backend.recordFailure(error);
+                    throw new FailoverException(error, null);
+                }
+                backend.release();
+                throw new IOException(error);
+            }
+            backend.recordSuccess(response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+
+            String contentType = response.header("Content-Type", "");
+            if (Config.streamingEnabled && contentType.contains("text/event-stream")) {
+                ChatStreamParser parser = new ChatStreamParser(mapper, listener, startNanos);
+                if (listener != null) listener.onTurnStart();
+                BufferedSource source = response.body().source();
+                String line;
+                while (!parser.isDone() && (line = source.readUtf8Line()) != null) {
+                    parser.onLine(line);
+                }
+                ChatCompletion completion = parser.finish();
+                if (listener != null) listener.onTurnEnd(completion);
+                recordCallMetrics(backend, completion);
+                return completion;
+            }
+
+            // Blocking mode (or a server that ignored "stream": true)
+            ChatCompletion completion = parseCompletion(mapper.readTree(response.body().string()));
+            long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+            completion.setTimeToFirstTokenMillis(elapsed);
+            completion.setTotalMillis(elapsed);
+            recordCallMetrics(backend, completion);
+            return completion;
+        }
+    }
+
+    private static class FailoverException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FailoverException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static void recordCallMetrics(APIProvider backend, ChatCompletion completion) {
+        String name = backend.getName();
+        MetricsRegistry.increment(MetricsRegistry.label("llm.calls", name));
+        if (completion.getTimeToFirstTokenMillis() >= 0) {
+            MetricsRegistry.record(MetricsRegistry.label("llm.ttft_ms", name), completion.getTimeToFirstTokenMillis());
+        }
+        MetricsRegistry.record(MetricsRegistry.label("llm.total_ms", name), completion.getTotalMillis());
+        MetricsRegistry.record("llm.prompt_tokens", completion.getPromptTokens());
+        MetricsRegistry.record("llm.completion_tokens", completion.getCompletionTokens());
+        MetricsRegistry.increment("llm.tokens.prompt", completion.getPromptTokens());
+        MetricsRegistry.increment("llm.tokens.completion", completion.getCompletionTokens());
+        MetricsRegistry.increment("llm.tokens.cached", completion.getCachedPromptTokens());
+    }
+
+    private void onRetry(String message) {
+        MetricsRegistry.increment("llm.retries");
+        if (logging != null) logging.logToOutput("[RATE] " + message);
+        logStyle("Rate limited", message, "⏳");
+    }
+
+    private ChatCompletion parseCompletion(JsonNode responseNode) throws IOException {
+        ChatCompletion completion = new ChatCompletion();
+
+        ChatStreamParser.readUsage(responseNode.get("usage"), completion);
+
+        JsonNode choices = responseNode.get("choices");
+        if (choices == null || choices.size() == 0) {
+            throw new IOException("No response.");
+        }
+        JsonNode choice = choices.get(0);
+        if (choice.hasNonNull("finish_reason")) {
+            completion.setFinishReason(choice.get("finish_reason").asText());
+        }
+
+        JsonNode messageNode = choice.get("message");
+        if (messageNode.hasNonNull("content")) {
+            completion.setContent(messageNode.get("content").asText());
+        }
+        if (messageNode.hasNonNull("reasoning_content")) {
+            completion.setReasoning(messageNode.get("reasoning_content").asText());
+        }
+        if (messageNode.has("tool_calls")) {
+            for (JsonNode toolCall : messageNode.get("tool_calls")) {
+                JsonNode function = toolCall.get("function");
+                completion.getToolCalls().add(new ChatCompletion.ToolCall(
+                    toolCall.get("id").asText(),
+                    function.get("name").asText(),
+                    function.get("arguments").asText()));
+            }
+        }
+        return completion;
     }
 
     private void logStyle(String title, String content, String icon) {
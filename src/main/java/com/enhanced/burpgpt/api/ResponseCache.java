@@ -0,0 +1,142 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.Config;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Content-addressed cache of final LLM answers. The key hashes everything that determines
+// the answer (model, system prompt, user prompt, tool catalog, max tokens). Entries live in
+// an in-memory LRU and in ~/.burpgpt_cache/responses with TTL and size-based eviction.
+public class ResponseCache {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final File CACHE_DIR = new File(System.getProperty("user.home") + File.separator + ".burpgpt_cache" + File.separator + "responses");
+    private static final Map<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > Math.max(1, Config.cacheMemoryEntries);
+        }
+    };
+
+    private static class Entry {
+        final String response;
+        final long createdAt;
+
+        Entry(String response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // Also the coalescing key for identical in-flight requests (see SingleFlight)
+    public static String key(String model, String systemPrompt, String userPrompt, int maxTokens) {
+        return Hashing.sha256(model, normalize(systemPrompt), normalize(userPrompt), String.valueOf(maxTokens),
+            ToolExecutor.getCatalog().getFingerprint());
+    }
+
+    // Line endings and trailing whitespace don't change the answer, so they shouldn't split the key
+    private static String normalize(String text) {
+        if (text == null) return null;
+        return text.replace("\r\n", "\n").replaceAll("[ \t]+\n", "\n").strip();
+    }
+
+    public static String get(String key) {
+        if (!Config.responseCacheEnabled) return null;
+        long ttl = Config.cacheTtlHours * 3_600_000L;
+        long now = System.currentTimeMillis();
+
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt <= ttl) return entry.response;
+                memory.remove(key);
+            }
+        }
+
+        File file = new File(CACHE_DIR, key + ".json");
+        if (!file.exists()) return null;
+        try {
+            JsonNode node = mapper.readTree(file);
+            long createdAt = node.path("created").asLong();
+            if (now - createdAt > ttl) {
+                file.delete();
+                return null;
+            }
+            String response = node.path("response").asText(null);
+            if (response != null) {
+                synchronized (memory) {
+                    memory.put(key, new Entry(response, createdAt));
+                }
+            }
+            return response;
+        } catch (Exception e) {
+            System.err.println("Error reading response cache entry: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static void put(String key, String model, String response) {
+        if (!Config.responseCacheEnabled || response == null) return;
+        long now = System.currentTimeMillis();
+        synchronized (memory) {
+            memory.put(key, new Entry(response, now));
+        }
+
+        try {
+            if (!CACHE_DIR.exists()) CACHE_DIR.mkdirs();
+            ObjectNode node = mapper.createObjectNode();
+            node.put("created", now);
+            node.put("model", model);
+            node.put("response", response);
+
+            // Write then rename so concurrent readers never see a partial file. Two writers
+            // can still race on a key (the same prompt analyzed twice at once, or two Burp
+            // instances), so each gets its own temp file and the rename is atomic.
+            File tmp = Files.createTempFile(CACHE_DIR.toPath(), key, ".tmp").toFile();
+            mapper.writeValue(tmp, node);
+            Files.move(tmp.toPath(), new File(CACHE_DIR, key + ".json").toPath(), StandardCopyOption.ATOMIC_MOVE);
+            evictDisk();
+        } catch (Exception e) {
+            System.err.println("Error writing response cache entry: " + e.getMessage());
+        }
+    }
+
+    public static void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        File[] files = CACHE_DIR.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+    }
+
+    // Drops expired files, then the oldest ones until the directory fits the size budget
+    private static synchronized void evictDisk() {
+        File[] files = CACHE_DIR.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) return;
+
+        long ttl = Config.cacheTtlHours * 3_600_000L;
+        long maxBytes = Config.cacheMaxDiskMB * 1024L * 1024L;
+        long now = System.currentTimeMillis();
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long total = 0;
+        for (File f : files) total += f.length();
+
+        for (File f : files) {
+            boolean expired = now - f.lastModified() > ttl;
+            if (!expired && total <= maxBytes) break;
+            total -= f.length();
+            f.delete();
+        }
+    }
+}
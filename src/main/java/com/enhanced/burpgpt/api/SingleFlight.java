@@ -0,0 +1,110 @@
+package com.enhanced.burpgpt.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Coalesces identical concurrent requests. The request and response editors of one message,
+// or several testers analysing the same message, would otherwise each pay for the same call.
+// The first caller (the owner) runs it; later callers with the same key attach to the flight,
+// get the streamed output so far replayed and then receive it live, and share the result.
+// A flight the owner cancels or steers with an intervention is abandoned: its followers stop
+// waiting and run the request themselves.
+class SingleFlight {
+    private static final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    static class Flight implements StreamListener {
+        private final String key;
+        private final Object owner;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final List<StreamListener> listeners = new ArrayList<>();
+        // Events of the current turn; earlier turns' live blocks are already gone in the UI
+        private final List<Consumer<StreamListener>> turnEvents = new ArrayList<>();
+
+        private Flight(String key, Object owner) {
+            this.key = key;
+            this.owner = owner;
+        }
+
+        boolean isOwner(Object caller) {
+            return owner == caller;
+        }
+
+        CompletableFuture<String> getResult() {
+            return result;
+        }
+
+        synchronized void attach(StreamListener listener) {
+            if (listener == null) return;
+            for (Consumer<StreamListener> event : turnEvents) {
+                deliver(listener, event);
+            }
+            listeners.add(listener);
+        }
+
+        synchronized void detach(StreamListener listener) {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public void onTurnStart() {
+            turnEvents.clear();
+            emit(StreamListener::onTurnStart);
+        }
+
+        @Override
+        public void onContent(String delta) {
+            emit(l -> l.onContent(delta));
+        }
+
+        @Override
+        public void onReasoning(String delta) {
+            emit(l -> l.onReasoning(delta));
+        }
+
+        @Override
+        public void onTurnEnd(ChatCompletion completion) {
+            emit(l -> l.onTurnEnd(completion));
+        }
+
+        private synchronized void emit(Consumer<StreamListener> event) {
+            turnEvents.add(event);
+            for (StreamListener listener : listeners) {
+                deliver(listener, event);
+            }
+        }
+
+        private static void deliver(StreamListener listener, Consumer<StreamListener> event) {
+            try {
+                event.accept(listener);
+            } catch (Exception e) {
+                System.err.println("Error in stream listener: " + e.getMessage());
+            }
+        }
+    }
+
+    // Returns the running flight for key, or a new one owned by caller that it must finish
+    static Flight join(String key, Object caller) {
+        return inFlight.computeIfAbsent(key, k -> new Flight(k, caller));
+    }
+
+    // Releases the followers with a null result while the owner keeps running for itself; new
+    // callers with the same key start a fresh flight. The owner still calls finish.
+    static void abandon(Flight flight) {
+        inFlight.remove(flight.key, flight);
+        flight.result.complete(null);
+    }
+
+    // A null result tells waiting callers to run the request themselves (e.g. the owner was cancelled)
+    static void finish(Flight flight, String result) {
+        inFlight.remove(flight.key, flight);
+        synchronized (flight) {
+            flight.listeners.clear();
+            flight.turnEvents.clear();
+        }
+        flight.result.complete(result);
+    }
+}
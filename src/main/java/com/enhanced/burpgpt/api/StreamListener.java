@@ -0,0 +1,12 @@
+package com.enhanced.burpgpt.api;
+
+// Receives incremental output of a streamed chat completion as it arrives.
+public interface StreamListener {
+    default void onTurnStart() {}
+
+    void onContent(String delta);
+
+    default void onReasoning(String delta) {}
+
+    default void onTurnEnd(ChatCompletion completion) {}
+}
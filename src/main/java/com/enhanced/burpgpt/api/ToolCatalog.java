@@ -0,0 +1,66 @@
+package com.enhanced.burpgpt.api;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Immutable snapshot of every tool offered to the model. The OpenAI-format JSON is
+// serialized once per snapshot so model turns can attach it without re-converting.
+public class ToolCatalog {
+    private final long version;
+    private final List<Map<String, Object>> tools;
+    private final String json;
+    private final Set<String> sequentialTools;
+    private final Set<String> names = new HashSet<>();
+    private final String fingerprint;
+
+    ToolCatalog(long version, List<Map<String, Object>> tools, String json, Set<String> sequentialTools) {
+        this.version = version;
+        this.tools = Collections.unmodifiableList(tools);
+        this.json = json;
+        this.sequentialTools = Collections.unmodifiableSet(sequentialTools);
+        this.fingerprint = Hashing.sha256(json);
+        for (Map<String, Object> tool : tools) {
+            Object function = tool.get("function");
+            if (function instanceof Map && ((Map<?, ?>) function).get("name") instanceof String) {
+                names.add((String) ((Map<?, ?>) function).get("name"));
+            }
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Map<String, Object>> getTools() {
+        return tools;
+    }
+
+    // Serialized "tools" array, ready to embed as a raw JSON value
+    public String getJson() {
+        return json;
+    }
+
+    // Content hash of the tool definitions; unlike the version it is stable across restarts
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isEmpty() {
+        return tools.isEmpty();
+    }
+
+    public int size() {
+        return tools.size();
+    }
+
+    public boolean contains(String toolName) {
+        return names.contains(toolName);
+    }
+
+    public boolean isParallelSafe(String toolName) {
+        return !sequentialTools.contains(toolName);
+    }
+}
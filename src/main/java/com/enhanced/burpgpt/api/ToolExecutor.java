@@ -2,18 +2,43 @@ package com.enhanced.burpgpt.api;
 
 import com.enhanced.burpgpt.Config;
 import com.enhanced.burpgpt.mcp.MCPManager;
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import javax.swing.JOptionPane;
 
@@ -25,14 +50,152 @@ import burp.api.montoya.http.HttpService;
 public class ToolExecutor {
     private static final ObjectMapper mapper = new ObjectMapper();
     private static MontoyaApi api;
+    private static ThreadPoolExecutor toolPool;
+    private static final Object confirmLock = new Object();
+
+    // Cached tool catalog, rebuilt lazily after invalidation
+    private static final AtomicLong catalogVersion = new AtomicLong(0);
+    private static volatile ToolCatalog catalog;
+    private static volatile boolean catalogDirty = true;
+    private static Thread toolsWatcher;
+    private static String watchedToolsPath;
 
     public static void initialize(MontoyaApi montoyaApi) {
         api = montoyaApi;
+        MetricsRegistry.gauge("tool.pool.active", () -> toolPool != null ? toolPool.getActiveCount() : 0);
+        MetricsRegistry.gauge("tool.pool.queued", () -> toolPool != null ? toolPool.getQueue().size() : 0);
+        MetricsRegistry.gauge("artifacts.bytes", ArtifactStore::getTotalBytes);
+        MCPManager.addToolsChangedListener(() -> invalidateCatalog("MCP tools changed"));
+        Config.addSaveListener(() -> invalidateCatalog("config saved"));
+    }
+
+    // Bounded pool used to run independent tool calls of one assistant turn concurrently
+    private static synchronized ExecutorService getToolPool() {
+        int size = Math.max(1, Config.toolConcurrency);
+        if (toolPool == null || toolPool.isShutdown()) {
+            AtomicInteger threadId = new AtomicInteger(0);
+            toolPool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "BurpAgent-Tool-" + threadId.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            toolPool.allowCoreThreadTimeOut(true);
+        } else if (toolPool.getMaximumPoolSize() != size) {
+            if (size > toolPool.getMaximumPoolSize()) {
+                toolPool.setMaximumPoolSize(size);
+                toolPool.setCorePoolSize(size);
+            } else {
+                toolPool.setCorePoolSize(size);
+                toolPool.setMaximumPoolSize(size);
+            }
+        }
+        return toolPool;
+    }
+
+    public static synchronized void shutdown() {
+        if (toolPool != null) {
+            toolPool.shutdownNow();
+            toolPool = null;
+        }
+        if (toolsWatcher != null) {
+            toolsWatcher.interrupt();
+            toolsWatcher = null;
+            watchedToolsPath = null;
+        }
+    }
+
+    public static Future<String> executeToolAsync(String toolName, String argumentsJson) {
+        return executeToolAsync(toolName, argumentsJson, CancellationToken.NONE);
+    }
+
+    public static Future<String> executeToolAsync(String toolName, String argumentsJson, CancellationToken cancellation) {
+        return getToolPool().submit(() -> executeTool(toolName, argumentsJson, cancellation));
+    }
+
+    public static boolean isParallelSafe(String toolName) {
+        return getCatalog().isParallelSafe(toolName);
     }
 
     public static List<Map<String, Object>> getAvailableTools() {
+        return getCatalog().getTools();
+    }
+
+    public static ToolCatalog getCatalog() {
+        ToolCatalog current = catalog;
+        if (current != null && !catalogDirty) {
+            return current;
+        }
+        synchronized (ToolExecutor.class) {
+            if (catalog == null || catalogDirty) {
+                catalogDirty = false;
+                catalog = buildCatalog();
+                ensureToolsWatcher();
+            }
+            return catalog;
+        }
+    }
+
+    public static void invalidateCatalog(String reason) {
+        catalogDirty = true;
+        if (api != null) api.logging().logToOutput("[DEBUG] Tool catalog invalidated: " + reason);
+    }
+
+    private static ToolCatalog buildCatalog() {
         List<Map<String, Object>> tools = new ArrayList<>();
-        
+        Set<String> sequential = new HashSet<>();
+        loadTools(tools, sequential);
+
+        String json;
+        try {
+            json = mapper.writeValueAsString(tools);
+        } catch (Exception e) {
+            System.err.println("Error serializing tool catalog: " + e.getMessage());
+            json = "[]";
+        }
+        return new ToolCatalog(catalogVersion.incrementAndGet(), tools, json, sequential);
+    }
+
+    // Watches the tools directory so edits to tools.json (from the UI or by hand) refresh the catalog
+    private static void ensureToolsWatcher() {
+        String toolsPath = Config.toolsPath;
+        if (toolsPath == null || toolsPath.isEmpty() || toolsPath.equals(watchedToolsPath)) {
+            return;
+        }
+        if (toolsWatcher != null) {
+            toolsWatcher.interrupt();
+            toolsWatcher = null;
+        }
+        watchedToolsPath = toolsPath;
+
+        Path dir = Paths.get(toolsPath);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        toolsWatcher = new Thread(() -> {
+            try (WatchService watchService = dir.getFileSystem().newWatchService()) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key = watchService.take();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (context != null && "tools.json".equals(context.toString())) {
+                            invalidateCatalog("tools.json changed");
+                        }
+                    }
+                    if (!key.reset()) break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.err.println("Tools directory watcher stopped: " + e.getMessage());
+            }
+        }, "BurpAgent-ToolsWatcher");
+        toolsWatcher.setDaemon(true);
+        toolsWatcher.start();
+    }
+
+    private static void loadTools(List<Map<String, Object>> tools, Set<String> sequential) {
         // Add internal tool: send_request
         Map<String, Object> sendRequestTool = Map.of(
             "type", "function",
@@ -105,18 +268,23 @@ public class ToolExecutor {
         );
         tools.add(listFilesTool);
 
+        // Add internal tool: read_artifact (pages through spilled large outputs)
+        if (ArtifactStore.isEnabled()) {
+            tools.add(ArtifactStore.toolDefinition());
+        }
+
         // Add MCP Tools
         tools.addAll(MCPManager.getAllTools());
 
         String toolsPath = Config.toolsPath;
 
         if (toolsPath == null || toolsPath.isEmpty()) {
-            return tools;
+            return;
         }
 
         File toolsDir = new File(toolsPath);
         if (!toolsDir.exists() || !toolsDir.isDirectory()) {
-            return tools;
+            return;
         }
 
         // Look for tools.json definition file
@@ -127,21 +295,56 @@ public class ToolExecutor {
                 ArrayNode root = (ArrayNode) mapper.readTree(definitionFile);
                 if (root != null) {
                     for (int i = 0; i < root.size(); i++) {
-                        tools.add(mapper.convertValue(root.get(i), Map.class));
+                        ObjectNode entry = (ObjectNode) root.get(i).deepCopy();
+                        // Local execution hint, not part of the OpenAI tool schema
+                        JsonNode parallelSafe = entry.remove("parallel_safe");
+                        if (parallelSafe != null && !parallelSafe.asBoolean(true)) {
+                            sequential.add(entry.path("function").path("name").asText());
+                        }
+                        tools.add(mapper.convertValue(entry, Map.class));
                     }
                 }
             } catch (Exception e) {
                 System.err.println("Error parsing tools.json: " + e.getMessage());
             }
         }
-
-        return tools;
     }
 
+    // Large results are spilled to the artifact store; the model gets a handle and a preview
     public static String executeTool(String toolName, String argumentsJson) {
+        return executeTool(toolName, argumentsJson, CancellationToken.NONE);
+    }
+
+    // The cancellation token reaches the running work: script processes are destroyed, MCP
+    // requests get notifications/cancelled and send_request stops being waited on.
+    public static String executeTool(String toolName, String argumentsJson, CancellationToken cancellation) {
+        if (cancellation.isCancelled()) {
+            return "Error: Tool " + toolName + " cancelled.";
+        }
+        long start = System.nanoTime();
+        String result;
+        if (Cassette.isReplaying()) {
+            result = Cassette.replayTool(toolName, argumentsJson);
+        } else {
+            result = ArtifactStore.READ_TOOL.equals(toolName)
+                ? executeReadArtifact(argumentsJson)
+                : ArtifactStore.spillIfLarge(toolName + " output", runTool(toolName, argumentsJson, cancellation));
+            Cassette.recordTool(toolName, argumentsJson, result, (System.nanoTime() - start) / 1_000_000);
+        }
+        // Tool names come from the model; unknown ones share a label so they can't grow the registry
+        String metricLabel = getCatalog().contains(toolName) ? toolName : "unknown";
+        MetricsRegistry.recordSince(MetricsRegistry.label("tool.duration_ms", metricLabel), start);
+        MetricsRegistry.increment(MetricsRegistry.label("tool.calls", metricLabel));
+        if (result == null || result.startsWith("Error")) {
+            MetricsRegistry.increment(MetricsRegistry.label("tool.errors", metricLabel));
+        }
+        return result;
+    }
+
+    private static String runTool(String toolName, String argumentsJson, CancellationToken cancellation) {
         // Handle internal tools
         if ("send_request".equals(toolName)) {
-            return executeSendRequest(argumentsJson);
+            return executeSendRequest(argumentsJson, cancellation);
         }
         if ("read_file".equals(toolName)) {
             return executeReadFile(argumentsJson);
@@ -151,7 +354,7 @@ public class ToolExecutor {
         }
 
         // Try MCP tools
-        String mcpResult = MCPManager.executeTool(toolName, argumentsJson);
+        String mcpResult = MCPManager.executeTool(toolName, argumentsJson, cancellation);
         if (mcpResult != null) {
             return mcpResult;
         }
@@ -168,17 +371,8 @@ public class ToolExecutor {
             return "Error: Tool script not found for " + toolName;
         }
 
-        if (isBlacklisted(toolName, argumentsJson)) {
-            int choice = JOptionPane.showConfirmDialog(
-                    null,
-                    "The tool execution contains a blacklisted command.\nTool: " + toolName + "\nArguments: " + argumentsJson + "\n\nDo you want to proceed?",
-                    "Restricted Command Warning",
-                    JOptionPane.YES_NO_OPTION,
-                    JOptionPane.WARNING_MESSAGE
-            );
-            if (choice != JOptionPane.YES_OPTION) {
-                return "Error: Execution cancelled by user due to blacklisted command.";
-            }
+        if (isBlacklisted(toolName, argumentsJson) && !confirmBlacklisted(toolName, argumentsJson)) {
+            return "Error: Execution cancelled by user due to blacklisted command.";
         }
 
         try {
@@ -227,10 +421,9 @@ public class ToolExecutor {
             pb.directory(new File(toolsPath));
             pb.redirectErrorStream(true);
             
+            long spawnStart = System.nanoTime();
             Process process = pb.start();
-            
-            // Read output
-            StringBuilder output = new StringBuilder();
+            MetricsRegistry.recordSince("tool.spawn_ms", spawnStart);
             
             // Detect OS to choose correct charset
             Charset charset = Charset.defaultCharset();
@@ -245,22 +438,95 @@ public class ToolExecutor {
                 }
             }
             
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), charset))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
+            // Killing the process (and its children) also unblocks the output reader below
+            CancellationToken.Registration registration = cancellation.onCancel(() -> destroyTree(process));
+            try {
+                String output = collectOutput(process.getInputStream(), charset, toolName + " output");
+                process.waitFor();
+                if (cancellation.isCancelled()) {
+                    return "Error: Tool " + toolName + " cancelled.";
                 }
+                return output;
+            } finally {
+                registration.close();
             }
-            
-            process.waitFor();
-            return output.toString();
 
         } catch (Exception e) {
             return "Error executing tool: " + e.getMessage();
         }
     }
 
-    private static String executeSendRequest(String argumentsJson) {
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    // Reads script output line by line. Small outputs are returned as text; once the output
+    // passes the artifact threshold it is written straight to an artifact file instead of
+    // accumulating on the heap.
+    private static String collectOutput(InputStream in, Charset charset, String label) throws IOException {
+        int threshold = ArtifactStore.isEnabled() ? Config.artifactThresholdBytes : Integer.MAX_VALUE;
+        StringBuilder output = new StringBuilder();
+        Path artifactFile = null;
+        Writer artifact = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (artifact != null) {
+                    artifact.write(line);
+                    artifact.write('\n');
+                    continue;
+                }
+                output.append(line).append("\n");
+                if (output.length() > threshold) {
+                    artifactFile = ArtifactStore.newArtifactFile();
+                    artifact = new BufferedWriter(new OutputStreamWriter(ArtifactStore.openArtifactFile(artifactFile), StandardCharsets.UTF_8));
+                    artifact.append(output);
+                    output = null;
+                }
+            }
+        } finally {
+            if (artifact != null) artifact.close();
+        }
+        return artifactFile != null ? ArtifactStore.register(label, artifactFile) : output.toString();
+    }
+
+    private static String executeReadArtifact(String argumentsJson) {
+        try {
+            JsonNode args = mapper.readTree(argumentsJson);
+            String id = args.path("id").asText("");
+            return ArtifactStore.read(id,
+                args.hasNonNull("start_line") ? args.get("start_line").asInt() : null,
+                args.hasNonNull("end_line") ? args.get("end_line").asInt() : null,
+                args.hasNonNull("offset") ? args.get("offset").asLong() : null,
+                args.hasNonNull("length") ? args.get("length").asInt() : null,
+                args.path("grep").asText(null),
+                args.path("ignore_case").asBoolean(false),
+                args.path("max_matches").asInt(0));
+        } catch (Exception e) {
+            return "Error reading artifact: " + e.getMessage();
+        }
+    }
+
+    // Serialized so concurrent tool calls never stack several confirmation dialogs
+    private static boolean confirmBlacklisted(String toolName, String argumentsJson) {
+        synchronized (confirmLock) {
+            return showBlacklistDialog(toolName, argumentsJson);
+        }
+    }
+
+    private static boolean showBlacklistDialog(String toolName, String argumentsJson) {
+        int choice = JOptionPane.showConfirmDialog(
+                null,
+                "The tool execution contains a blacklisted command.\nTool: " + toolName + "\nArguments: " + argumentsJson + "\n\nDo you want to proceed?",
+                "Restricted Command Warning",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE
+        );
+        return choice == JOptionPane.YES_OPTION;
+    }
+
+    private static String executeSendRequest(String argumentsJson, CancellationToken cancellation) {
         if (api == null) {
             return "Error: Burp API not initialized.";
         }
@@ -307,9 +573,24 @@ public class ToolExecutor {
             
             HttpRequest request = HttpRequest.httpRequest(service, requestStr);
             
-            HttpResponse response = api.http().sendRequest(request).response();
+            // Burp's sendRequest can't be aborted, so it runs off-thread and a Stop simply stops waiting
+            CompletableFuture<HttpResponse> pending = CompletableFuture.supplyAsync(
+                () -> api.http().sendRequest(request).response(), AgentExecutor.blocking());
+            HttpResponse response;
+            CancellationToken.Registration registration = cancellation.onCancel(() -> pending.cancel(false));
+            try {
+                response = pending.join();
+            } catch (CancellationException e) {
+                return "Error: send_request cancelled.";
+            } finally {
+                registration.close();
+            }
+            if (response == null) {
+                return "Error: No response received from " + host + ":" + port + " (connection failed or timed out).";
+            }
             
-            return response.toString();
+            // Raw bytes go straight to the artifact store when large; no intermediate String
+            return ArtifactStore.spillIfLarge("send_request response from " + host, response.toByteArray().getBytes());
         } catch (Exception e) {
             return "Error sending request: " + e.getMessage();
         }
@@ -325,6 +606,13 @@ public class ToolExecutor {
                 return "Error: File not found: " + path;
             }
             
+            // Large files are copied into the artifact store and paged from there
+            if (ArtifactStore.isEnabled() && file.length() > Config.artifactThresholdBytes) {
+                if (file.length() > ArtifactStore.maxArtifactBytes()) {
+                    return "Error: File too large to read (Size: " + file.length() + " bytes). Max " + ArtifactStore.maxArtifactBytes() + " bytes.";
+                }
+                return ArtifactStore.copy("file " + file.getAbsolutePath(), file.toPath());
+            }
             if (file.length() > 50000) {
                 return "Error: File too large to read directly (Size: " + file.length() + " bytes). Max 50KB.";
             }
@@ -37,6 +37,7 @@ public class ToolManager {
                 tool.name = func.get("name").asText();
                 tool.description = func.get("description").asText();
                 tool.parameters = func.get("parameters").toString();
+                tool.parallelSafe = node.path("parallel_safe").asBoolean(true);
                 
                 // Try to find associated script
                 tool.scriptType = findScriptType(toolsDir, tool.name);
@@ -81,6 +82,9 @@ public class ToolManager {
         func.put("name", tool.name);
         func.put("description", tool.description);
         func.set("parameters", mapper.readTree(tool.parameters));
+        if (!tool.parallelSafe) {
+            entry.put("parallel_safe", false);
+        }
         root.add(entry);
 
         mapper.writerWithDefaultPrettyPrinter().writeValue(jsonFile, root);
@@ -91,6 +95,7 @@ public class ToolManager {
             File scriptFile = new File(toolsDir, tool.name + ext);
             Files.writeString(scriptFile.toPath(), tool.scriptContent, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         }
+        ToolExecutor.invalidateCatalog("tool saved: " + tool.name);
     }
     
     public static void deleteTool(String toolName) throws IOException {
@@ -118,6 +123,7 @@ public class ToolManager {
             File f = new File(toolsDir, toolName + ext);
             if (f.exists()) f.delete();
         }
+        ToolExecutor.invalidateCatalog("tool deleted: " + toolName);
     }
 
     private static String findScriptType(File dir, String name) {
@@ -152,5 +158,6 @@ public class ToolManager {
         public String parameters = "{\"type\": \"object\", \"properties\": {}, \"required\": []}";
         public String scriptType = "Python";
         public String scriptContent = "";
+        public boolean parallelSafe = true;
     }
 }
@@ -1,5 +1,7 @@
 package com.enhanced.burpgpt.mcp;
 
+import com.enhanced.burpgpt.api.CancellationToken;
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -7,10 +9,14 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class MCPClient {
     private final String name;
@@ -18,6 +24,7 @@ public class MCPClient {
     private final ObjectMapper mapper = new ObjectMapper();
     private final AtomicInteger idCounter = new AtomicInteger(0);
     private final Map<Integer, CompletableFuture<JsonNode>> pendingRequests = new ConcurrentHashMap<>();
+    private volatile Consumer<String> notificationListener;
 
     public MCPClient(String name, String command) {
         this(name, command, "stdio");
@@ -42,9 +49,25 @@ public class MCPClient {
         transport.stop();
     }
 
+    public void setNotificationListener(Consumer<String> listener) {
+        this.notificationListener = listener;
+    }
+
     private void onMessage(String message) {
         try {
             JsonNode node = mapper.readTree(message);
+            if (node.has("method")) {
+                // Server-initiated request or notification; never a reply to one of ours
+                if (node.has("id")) {
+                    answerServerRequest(node);
+                    return;
+                }
+                Consumer<String> listener = notificationListener;
+                if (listener != null) {
+                    listener.accept(node.get("method").asText());
+                }
+                return;
+            }
             if (node.has("id")) {
                 int id = node.get("id").asInt();
                 CompletableFuture<JsonNode> future = pendingRequests.remove(id);
@@ -56,13 +79,16 @@ public class MCPClient {
                     }
                 }
             }
-            // Handle notifications
         } catch (Exception e) {
             System.err.println("Error parsing MCP message: " + e.getMessage() + " content: " + message);
         }
     }
 
     private JsonNode sendRequest(String method, Object params) throws Exception {
+        return sendRequest(method, params, CancellationToken.NONE);
+    }
+
+    private JsonNode sendRequest(String method, Object params, CancellationToken cancellation) throws Exception {
         int id = idCounter.incrementAndGet();
         ObjectNode request = mapper.createObjectNode();
         request.put("jsonrpc", "2.0");
@@ -75,9 +101,72 @@ public class MCPClient {
         CompletableFuture<JsonNode> future = new CompletableFuture<>();
         pendingRequests.put(id, future);
 
+        long start = System.nanoTime();
+        String metric = name + "/" + method;
         transport.send(mapper.writeValueAsString(request));
 
-        return future.get(30, TimeUnit.SECONDS);
+        // On Stop, tell the server to abandon the request and stop waiting for its reply
+        CancellationToken.Registration registration = cancellation.onCancel(() -> cancelRequest(id, future));
+        try {
+            JsonNode result = future.get(30, TimeUnit.SECONDS);
+            MetricsRegistry.recordSince(MetricsRegistry.label("mcp.latency_ms", metric), start);
+            return result;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                MetricsRegistry.increment(MetricsRegistry.label("mcp.cancelled", name));
+                throw (CancellationException) e.getCause();
+            }
+            MetricsRegistry.increment(MetricsRegistry.label("mcp.errors", metric));
+            throw e;
+        } catch (TimeoutException e) {
+            MetricsRegistry.increment(MetricsRegistry.label("mcp.timeouts", metric));
+            cancelRequest(id, future);
+            throw e;
+        } finally {
+            registration.close();
+            pendingRequests.remove(id);
+        }
+    }
+
+    private void cancelRequest(int id, CompletableFuture<JsonNode> future) {
+        if (pendingRequests.remove(id) == null) return;
+        Map<String, Object> params = new HashMap<>();
+        params.put("requestId", id);
+        params.put("reason", "Cancelled by user");
+        try {
+            sendNotification("notifications/cancelled", params);
+        } catch (Exception e) {
+            System.err.println("Failed to send MCP cancellation to " + name + ": " + e.getMessage());
+        }
+        future.completeExceptionally(new CancellationException("MCP request " + id + " cancelled"));
+    }
+
+    // Notifications carry no id and get no reply
+    private void sendNotification(String method, Object params) throws Exception {
+        ObjectNode notification = mapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", method);
+        if (params != null) {
+            notification.set("params", mapper.valueToTree(params));
+        }
+        transport.send(mapper.writeValueAsString(notification));
+    }
+
+    // Servers expect a reply to every request: ping gets an empty result, anything else
+    // (sampling, roots, ...) is not implemented
+    private void answerServerRequest(JsonNode request) throws Exception {
+        ObjectNode reply = mapper.createObjectNode();
+        reply.put("jsonrpc", "2.0");
+        reply.set("id", request.get("id"));
+        String method = request.get("method").asText();
+        if ("ping".equals(method)) {
+            reply.putObject("result");
+        } else {
+            ObjectNode error = reply.putObject("error");
+            error.put("code", -32601);
+            error.put("message", "Method not found: " + method);
+        }
+        transport.send(mapper.writeValueAsString(reply));
     }
 
     private void initialize() {
@@ -95,7 +184,7 @@ public class MCPClient {
             params.put("capabilities", capabilities);
 
             sendRequest("initialize", params);
-            sendRequest("notifications/initialized", new HashMap<>());
+            sendNotification("notifications/initialized", new HashMap<>());
         } catch (Exception e) {
             System.err.println("Failed to initialize MCP client " + name + ": " + e.getMessage());
         }
@@ -112,11 +201,15 @@ public class MCPClient {
     }
 
     public String callTool(String toolName, Map<String, Object> args) throws Exception {
+        return callTool(toolName, args, CancellationToken.NONE);
+    }
+
+    public String callTool(String toolName, Map<String, Object> args, CancellationToken cancellation) throws Exception {
         Map<String, Object> params = new HashMap<>();
         params.put("name", toolName);
         params.put("arguments", args);
 
-        JsonNode result = sendRequest("tools/call", params);
+        JsonNode result = sendRequest("tools/call", params, cancellation);
         
         if (result.has("content")) {
             StringBuilder output = new StringBuilder();
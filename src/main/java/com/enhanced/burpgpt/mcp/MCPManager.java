@@ -1,14 +1,18 @@
 package com.enhanced.burpgpt.mcp;
 
 import com.enhanced.burpgpt.Config;
+import com.enhanced.burpgpt.api.CancellationToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -16,7 +20,12 @@ import java.util.function.Consumer;
 
 public class MCPManager {
     private static final Map<String, MCPClient> clients = new ConcurrentHashMap<>();
-    private static final Map<String, MCPClient> toolOwnerMap = new ConcurrentHashMap<>();
+    // Immutable; replaced as a whole so lookups never see a server's tools half re-registered
+    private static volatile Map<String, MCPClient> toolOwnerMap = Collections.emptyMap();
+    private static final Object toolsLock = new Object();
+    // OpenAI-format tool definitions per server, refreshed on connect and on tools/list_changed
+    private static final Map<String, List<Map<String, Object>>> clientTools = new ConcurrentHashMap<>();
+    private static final List<Runnable> toolsListeners = new CopyOnWriteArrayList<>();
     private static final Map<String, String> serverStatus = new ConcurrentHashMap<>();
     private static final ObjectMapper mapper = new ObjectMapper();
     private static final ExecutorService executor = Executors.newCachedThreadPool();
@@ -32,9 +41,13 @@ public class MCPManager {
                 // Stop existing clients
                 stopAll();
                 clients.clear();
-                toolOwnerMap.clear();
+                synchronized (toolsLock) {
+                    toolOwnerMap = Collections.emptyMap();
+                    clientTools.clear();
+                }
                 serverStatus.clear();
                 notifyStatusChanged();
+                notifyToolsChanged();
 
                 if (!Config.mcpEnabled) {
                     System.out.println("MCP is disabled.");
@@ -51,6 +64,14 @@ public class MCPManager {
                         try {
                             String transport = serverConfig.transport != null ? serverConfig.transport : "stdio";
                             MCPClient client = new MCPClient(serverConfig.name, serverConfig.command, transport);
+                            client.setNotificationListener(method -> {
+                                if ("notifications/tools/list_changed".equals(method)) {
+                                    executor.submit(() -> {
+                                        cacheTools(client);
+                                        notifyToolsChanged();
+                                    });
+                                }
+                            });
                             client.start();
                             clients.put(serverConfig.name, client);
                             System.out.println("Started MCP Client: " + serverConfig.name);
@@ -58,6 +79,7 @@ public class MCPManager {
                             
                             // Pre-fetch tools to populate mapping
                             cacheTools(client);
+                            notifyToolsChanged();
                         } catch (Exception e) {
                             System.err.println("Failed to start MCP Client " + serverConfig.name + ": " + e.getMessage());
                             serverStatus.put(serverConfig.name, "FAILED: " + e.getMessage());
@@ -85,14 +107,59 @@ public class MCPManager {
         }
     }
     
+    public static void addToolsChangedListener(Runnable listener) {
+        toolsListeners.add(listener);
+    }
+
+    private static void notifyToolsChanged() {
+        for (Runnable listener : toolsListeners) {
+            listener.run();
+        }
+    }
+    
+    // Lists the server's tools once and keeps the converted definitions until the next change
     private static void cacheTools(MCPClient client) {
+        List<Map<String, Object>> openAITools = new ArrayList<>();
+        List<String> toolNames = new ArrayList<>();
+
         JsonNode tools = client.listTools();
         if (tools != null && tools.isArray()) {
             for (JsonNode tool : tools) {
-                String toolName = tool.get("name").asText();
-                toolOwnerMap.put(toolName, client);
+                try {
+                    String toolName = tool.get("name").asText();
+                    
+                    Map<String, Object> openAITool = new HashMap<>();
+                    openAITool.put("type", "function");
+                    
+                    Map<String, Object> function = new HashMap<>();
+                    function.put("name", toolName);
+                    if (tool.has("description")) {
+                        function.put("description", tool.get("description").asText());
+                    }
+                    if (tool.has("inputSchema")) {
+                        function.put("parameters", mapper.convertValue(tool.get("inputSchema"), Map.class));
+                    } else {
+                        function.put("parameters", new HashMap<>());
+                    }
+                    
+                    openAITool.put("function", function);
+                    openAITools.add(openAITool);
+                    toolNames.add(toolName);
+                } catch (Exception e) {
+                    System.err.println("Error converting MCP tool: " + e.getMessage());
+                }
             }
         }
+
+        // Owners are published before the definitions, so a catalog snapshot never lists a
+        // tool that executeTool can't route
+        synchronized (toolsLock) {
+            Map<String, MCPClient> owners = new HashMap<>(toolOwnerMap);
+            owners.values().removeIf(owner -> owner == client);
+            for (String toolName : toolNames) owners.put(toolName, client);
+            toolOwnerMap = Collections.unmodifiableMap(owners);
+            clientTools.put(client.getName(), openAITools);
+        }
     }
 
     public static void stopAll() {
@@ -103,42 +170,20 @@ public class MCPManager {
 
     public static List<Map<String, Object>> getAllTools() {
         List<Map<String, Object>> openAITools = new ArrayList<>();
-        toolOwnerMap.clear(); // Refresh mapping
-
         for (MCPClient client : clients.values()) {
-            JsonNode tools = client.listTools();
-            if (tools != null && tools.isArray()) {
-                for (JsonNode tool : tools) {
-                    try {
-                        String toolName = tool.get("name").asText();
-                        toolOwnerMap.put(toolName, client); // Update mapping
-                        
-                        Map<String, Object> openAITool = new HashMap<>();
-                        openAITool.put("type", "function");
-                        
-                        Map<String, Object> function = new HashMap<>();
-                        function.put("name", toolName);
-                        if (tool.has("description")) {
-                            function.put("description", tool.get("description").asText());
-                        }
-                        if (tool.has("inputSchema")) {
-                            function.put("parameters", mapper.convertValue(tool.get("inputSchema"), Map.class));
-                        } else {
-                            function.put("parameters", new HashMap<>());
-                        }
-                        
-                        openAITool.put("function", function);
-                        openAITools.add(openAITool);
-                    } catch (Exception e) {
-                        System.err.println("Error converting MCP tool: " + e.getMessage());
-                    }
-                }
+            List<Map<String, Object>> tools = clientTools.get(client.getName());
+            if (tools != null) {
+                openAITools.addAll(tools);
             }
         }
         return openAITools;
     }
 
     public static String executeTool(String toolName, String argsJson) {
+        return executeTool(toolName, argsJson, CancellationToken.NONE);
+    }
+
+    public static String executeTool(String toolName, String argsJson, CancellationToken cancellation) {
         MCPClient client = toolOwnerMap.get(toolName);
         if (client == null) {
             // Try to find it again (maybe it's a new tool or mapping is stale)
@@ -149,7 +194,9 @@ public class MCPManager {
 
         try {
             Map<String, Object> args = mapper.readValue(argsJson, Map.class);
-            return client.callTool(toolName, args);
+            return client.callTool(toolName, args, cancellation);
+        } catch (CancellationException e) {
+            return "Error: MCP tool " + toolName + " cancelled.";
         } catch (Exception e) {
             return "Error executing MCP tool " + toolName + ": " + e.getMessage();
         }
@@ -45,8 +45,9 @@ public class StdioTransport implements Transport {
         }
     }
 
+    // Concurrent tool calls share the pipe; a message and its newline must not interleave with another
     @Override
-    public void send(String message) throws IOException {
+    public synchronized void send(String message) throws IOException {
         if (!isRunning) throw new IOException("Transport is not running");
         writer.write(message);
         writer.newLine();
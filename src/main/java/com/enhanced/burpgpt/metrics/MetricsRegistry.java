@@ -0,0 +1,153 @@
+package com.enhanced.burpgpt.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// In-process metrics: counters, histograms and gauges keyed by name. Names are dotted with
+// an optional [label], e.g. "llm.total_ms[Default]" or "mcp.latency_ms[burp/tools/call]".
+public class MetricsRegistry {
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+    private static volatile long startedAt = System.currentTimeMillis();
+
+    public static final double[] PERCENTILES = { 50, 95, 99 };
+
+    public static void increment(String name) {
+        increment(name, 1);
+    }
+
+    public static void increment(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public static void record(String name, long value) {
+        histogram(name).record(value);
+    }
+
+    // Records the elapsed time since startNanos (from System.nanoTime) in milliseconds
+    public static void recordSince(String name, long startNanos) {
+        record(name, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    public static void gauge(String name, Supplier<Number> supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public static String label(String name, String label) {
+        return name + "[" + label + "]";
+    }
+
+    // Counters and histograms start over; gauges are live values and stay registered
+    public static void reset() {
+        counters.clear();
+        histograms.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    public static class Row {
+        public final String name;
+        public final String type;
+        public final long count;
+        public final long p50;
+        public final long p95;
+        public final long p99;
+        public final long max;
+        public final double mean;
+
+        Row(String name, String type, long count, long p50, long p95, long p99, long max, double mean) {
+            this.name = name;
+            this.type = type;
+            this.count = count;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+            this.mean = mean;
+        }
+    }
+
+    // Sorted by name so related metrics group together in the dashboard
+    public static List<Row> rows() {
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = e.getValue();
+            rows.add(new Row(e.getKey(), "histogram", h.getCount(), h.percentile(50), h.percentile(95), h.percentile(99), h.getMax(), h.getMean()));
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            long value = e.getValue().sum();
+            rows.add(new Row(e.getKey(), "counter", value, 0, 0, 0, 0, value));
+        }
+        for (Map.Entry<String, Supplier<Number>> e : new TreeMap<>(gauges).entrySet()) {
+            double value = readGauge(e.getValue());
+            rows.add(new Row(e.getKey(), "gauge", 0, 0, 0, 0, 0, value));
+        }
+        return rows;
+    }
+
+    private static double readGauge(Supplier<Number> supplier) {
+        try {
+            Number n = supplier.get();
+            return n != null ? n.doubleValue() : 0;
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("timestamp", System.currentTimeMillis());
+        root.put("since", startedAt);
+
+        Map<String, Object> hist = new LinkedHashMap<>();
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = e.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", h.getCount());
+            values.put("sum", h.getSum());
+            values.put("min", h.getMin());
+            values.put("mean", h.getMean());
+            for (double p : PERCENTILES) {
+                values.put("p" + (int) p, h.percentile(p));
+            }
+            values.put("max", h.getMax());
+            hist.put(e.getKey(), values);
+        }
+        root.put("histograms", hist);
+
+        Map<String, Object> count = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            count.put(e.getKey(), e.getValue().sum());
+        }
+        root.put("counters", count);
+
+        Map<String, Object> gauge = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<Number>> e : new TreeMap<>(gauges).entrySet()) {
+            gauge.put(e.getKey(), readGauge(e.getValue()));
+        }
+        root.put("gauges", gauge);
+        return root;
+    }
+
+    public static String toJson() {
+        try {
+            return mapper.writeValueAsString(snapshot());
+        } catch (Exception e) {
+            return "{\"error\": \"" + e.getMessage() + "\"}";
+        }
+    }
+}
@@ -5,12 +5,20 @@ import burp.api.montoya.ui.contextmenu.ContextMenuItemsProvider;
 import burp.api.montoya.ui.contextmenu.ContextMenuEvent;
 import burp.api.montoya.http.message.HttpRequestResponse;
 import com.enhanced.burpgpt.Config;
+import com.enhanced.burpgpt.analysis.ContentReducer;
+import com.enhanced.burpgpt.analysis.LibraryFingerprints;
+import com.enhanced.burpgpt.analysis.MessageView;
+import com.enhanced.burpgpt.analysis.PromptTemplate;
+import com.enhanced.burpgpt.api.AgentExecutor;
 import com.enhanced.burpgpt.api.OpenAIProvider;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class GPTContextMenuProvider implements ContextMenuItemsProvider {
     private final MontoyaApi api;
@@ -50,22 +58,36 @@ public class GPTContextMenuProvider implements ContextMenuItemsProvider {
         dialog.add(new JScrollPane(outputArea));
         dialog.setVisible(true);
 
-        new Thread(() -> {
-            try {
-                String req = requestResponse.request().toString();
-                String resp = requestResponse.response() != null ? requestResponse.response().toString() : "";
-                
-                String prompt = Config.prompt
-                    .replace("{REQUEST}", req)
-                    .replace("{RESPONSE}", resp);
-                
-                OpenAIProvider provider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, api.logging());
-                String result = provider.sendRequest(prompt, 2000);
-                
-                SwingUtilities.invokeLater(() -> outputArea.setText(result));
-            } catch (Exception ex) {
-                SwingUtilities.invokeLater(() -> outputArea.setText("Error: " + ex.getMessage()));
+        OpenAIProvider provider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, api.logging());
+        CompletableFuture<String> result = AgentExecutor.supply(() -> {
+            MessageView reqView = MessageView.of(requestResponse.request());
+            MessageView respView = MessageView.of(requestResponse.response());
+            LibraryFingerprints.Library library = Config.skipKnownLibraries ? LibraryFingerprints.detect(respView, reqView) : null;
+            String req = Config.reduceContent ? ContentReducer.reduce(reqView).text : reqView.text();
+            String resp;
+            if (library != null) resp = LibraryFingerprints.omitBody(respView, library);
+            else resp = Config.reduceContent ? ContentReducer.reduce(respView).text : respView.text();
+
+            PromptTemplate template = Config.promptTemplate();
+            return template.render(template.values(requestResponse.request().url(), reqView, respView)
+                .set(PromptTemplate.Placeholder.REQUEST, req)
+                .set(PromptTemplate.Placeholder.RESPONSE, resp));
+        }).thenCompose(prompt -> provider.sendRequestAsync(null, prompt, 2000));
+        result.whenComplete((text, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                outputArea.setText(text);
+            } else if (!result.isCancelled()) {
+                outputArea.setText("Error: " + error.getMessage());
+            }
+        }));
+
+        // Closing the dialog abandons the analysis
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                provider.cancel();
+                result.cancel(true);
             }
-        }).start();
+        });
     }
 }
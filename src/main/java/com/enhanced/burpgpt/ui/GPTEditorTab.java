@@ -8,7 +8,20 @@ import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.ui.Selection;
 import com.enhanced.burpgpt.Config;
+import com.enhanced.burpgpt.analysis.ChunkMapReduce;
+import com.enhanced.burpgpt.analysis.ContentReducer;
+import com.enhanced.burpgpt.analysis.Finding;
+import com.enhanced.burpgpt.analysis.LibraryFingerprints;
+import com.enhanced.burpgpt.analysis.MessageView;
+import com.enhanced.burpgpt.analysis.ModelRegistry;
+import com.enhanced.burpgpt.analysis.PromptTemplate;
+import com.enhanced.burpgpt.analysis.StructuredChunker;
+import com.enhanced.burpgpt.analysis.Tokenizer;
+import com.enhanced.burpgpt.api.AgentExecutor;
+import com.enhanced.burpgpt.api.ChatCompletion;
 import com.enhanced.burpgpt.api.OpenAIProvider;
+import com.enhanced.burpgpt.api.StreamListener;
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
 import com.enhanced.burpgpt.skills.Skill;
 import com.enhanced.burpgpt.skills.SkillManager;
 
@@ -22,6 +35,8 @@ import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.text.html.HTMLDocument;
 import javax.swing.text.html.HTMLEditorKit;
@@ -35,10 +50,19 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
     private HttpRequestResponse currentRequestResponse;
     private volatile boolean isRunning = false;
     private OpenAIProvider currentProvider;
+    private volatile ChunkMapReduce currentMapReduce;
     private final JButton analyzeButton;
     private final JButton stopButton;
     private final JButton skillsButton;
+    private final JCheckBox bypassCacheBox;
     private final ConcurrentLinkedQueue<String> userInterventions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger streamBlockCounter = new AtomicInteger(0);
+
+    private static final int ANSWER_TOKENS = 2000;
+    private static final int PREVIOUS_CONTEXT_TOKENS = 400;
+    private static final int FOLLOW_UP_CONTEXT_TOKENS = 1250;
+    private static final int PROMPT_OVERHEAD_TOKENS = 300;
+    private static final int MIN_CHUNK_TOKENS = 500;
 
     public GPTEditorTab(MontoyaApi api, boolean isEditable) {
         this.api = api;
@@ -106,8 +130,13 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
         clearButton.setMargin(new Insets(10, 20, 10, 20));
         clearButton.addActionListener(e -> outputArea.setText(""));
         
+        bypassCacheBox = new JCheckBox("Bypass cache");
+        bypassCacheBox.setFocusPainted(false);
+        bypassCacheBox.setToolTipText("Ignore cached answers and always query the model");
+
         topPanel.add(skillsButton);
         topPanel.add(analyzeButton);
+        topPanel.add(bypassCacheBox);
         topPanel.add(stopButton);
         topPanel.add(clearButton);
         
@@ -151,6 +180,7 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
 
     private void appendHtml(String html) {
         SwingUtilities.invokeLater(() -> {
+            long start = System.nanoTime();
             try {
                 HTMLDocument doc = (HTMLDocument) outputArea.getDocument();
                 HTMLEditorKit kit = (HTMLEditorKit) outputArea.getEditorKit();
@@ -159,7 +189,132 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
             } catch (Exception e) {
                 e.printStackTrace();
             }
+            MetricsRegistry.recordSince("ui.render_ms", start);
+        });
+    }
+
+    private OpenAIProvider createProvider() {
+        OpenAIProvider provider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, api.logging(), logMsg -> {
+            appendHtml(logMsg);
         });
+        provider.setStreamListener(new LiveStreamListener());
+        provider.setBypassCache(bypassCacheBox.isSelected());
+        return provider;
+    }
+
+    private void appendTimingNote(OpenAIProvider provider) {
+        long ttft = provider.getLastTimeToFirstTokenMillis();
+        if (ttft >= 0) {
+            appendHtml("<div style='color: #7F8C8D; font-size: 0.9em;'>⏱ First token after " + ttft + " ms</div>");
+        }
+        appendPromptCacheNote(provider);
+    }
+
+    private void appendReductionNote(Tokenizer tokenizer, String what, ContentReducer.Result reduced) {
+        if (!reduced.changed()) return;
+        // A binary body is summarized without being decoded; estimate its tokens from its size
+        int before = reduced.original != null ? tokenizer.count(reduced.original) : reduced.originalLength / 4;
+        int after = tokenizer.count(reduced.text);
+        MetricsRegistry.increment("reduce.saved_tokens", before - after);
+        appendHtml("<div style='color: #7F8C8D; font-size: 0.9em;'>🧹 Reduced " + what + " from "
+            + (reduced.originalLength / 1024) + " KB (~" + before + " tokens) to " + (reduced.text.length() / 1024)
+            + " KB (~" + after + " tokens): " + escapeHtml(reduced.describe()) + "</div>");
+    }
+
+    private void appendPromptCacheNote(OpenAIProvider provider) {
+        if (provider == null) return;
+        long prompt = provider.getPromptTokensTotal();
+        if (prompt <= 0) return;
+        long cached = provider.getCachedPromptTokensTotal();
+        appendHtml("<div style='color: #7F8C8D; font-size: 0.9em;'>♻ Prompt cache hit " + (cached * 100 / prompt)
+            + "% (" + cached + "/" + prompt + " tokens)</div>");
+    }
+
+    // Renders streamed deltas into a temporary block that is replaced by the final output
+    // once the turn completes. Content is formatted incrementally as it arrives; updates are
+    // coalesced into one EDT task at a time.
+    private class LiveStreamListener implements StreamListener {
+        private MarkdownRenderer content = new MarkdownRenderer();
+        private final StringBuilder reasoning = new StringBuilder();
+        private final AtomicBoolean flushPending = new AtomicBoolean(false);
+        private String blockId;
+
+        @Override
+        public void onTurnStart() {
+            synchronized (this) {
+                content = new MarkdownRenderer();
+                reasoning.setLength(0);
+                blockId = "live-stream-" + streamBlockCounter.incrementAndGet();
+            }
+            appendHtml("<div id='" + blockId + "' style='border: 1px dashed #8E44AD; padding: 8px; margin: 10px 0;'>" +
+                "<div style='font-weight: bold; color: #8E44AD;'>🤖 Streaming...</div>" +
+                "<div id='" + blockId + "-body'>&nbsp;</div></div>");
+        }
+
+        @Override
+        public void onContent(String delta) {
+            synchronized (this) {
+                content.append(delta);
+            }
+            scheduleFlush();
+        }
+
+        @Override
+        public void onReasoning(String delta) {
+            synchronized (this) {
+                reasoning.append(delta);
+            }
+            scheduleFlush();
+        }
+
+        @Override
+        public void onTurnEnd(ChatCompletion completion) {
+            String id;
+            synchronized (this) {
+                id = blockId;
+            }
+            SwingUtilities.invokeLater(() -> {
+                HTMLDocument doc = (HTMLDocument) outputArea.getDocument();
+                javax.swing.text.Element block = doc.getElement(id);
+                if (block != null) {
+                    doc.removeElement(block);
+                }
+            });
+        }
+
+        private void scheduleFlush() {
+            if (!flushPending.compareAndSet(false, true)) return;
+            SwingUtilities.invokeLater(this::flush);
+        }
+
+        private void flush() {
+            flushPending.set(false);
+            String id;
+            String html;
+            synchronized (this) {
+                id = blockId;
+                StringBuilder sb = new StringBuilder();
+                if (reasoning.length() > 0) {
+                    sb.append("<div style='color: #00529B;'>🧠 ").append(escapeHtml(reasoning)).append("</div>");
+                }
+                sb.append("<div>").append(content.html()).append("</div>");
+                html = sb.toString();
+            }
+            try {
+                HTMLDocument doc = (HTMLDocument) outputArea.getDocument();
+                javax.swing.text.Element body = doc.getElement(id + "-body");
+                if (body != null) {
+                    doc.setInnerHTML(body, html);
+                    outputArea.setCaretPosition(doc.getLength());
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String escapeHtml(CharSequence text) {
+        return text.toString().replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\n", "<br>");
     }
 
     private String getPlainText() {
@@ -172,53 +327,7 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
 
     private String renderMarkdown(String markdown) {
         if (markdown == null) return "";
-        
-        // Escape HTML special characters
-        String html = markdown.replace("&", "&amp;")
-                              .replace("<", "&lt;")
-                              .replace(">", "&gt;");
-
-        // Headers (### -> h3, ## -> h2, # -> h1)
-        html = html.replaceAll("(?m)^### (.*)$", "<h3>$1</h3>");
-        html = html.replaceAll("(?m)^## (.*)$", "<h2>$1</h2>");
-        html = html.replaceAll("(?m)^# (.*)$", "<h1>$1</h1>");
-
-        // Bold (**text**)
-        html = html.replaceAll("\\*\\*(.*?)\\*\\*", "<b>$1</b>");
-        
-        // Italic (*text*)
-        html = html.replaceAll("\\*(.*?)\\*", "<i>$1</i>");
-
-        // Inline Code (`code`)
-        html = html.replaceAll("`([^`]+)`", "<code style='background-color: #f0f0f0; padding: 2px; border-radius: 3px;'>$1</code>");
-
-        // Code Blocks (```code```) - Simplified
-        // Note: Real markdown parsing is complex, this is a basic approximation for common outputs
-        html = html.replaceAll("```([\\s\\S]*?)```", "<pre style='background-color: #f5f5f5; padding: 10px; border-radius: 5px; overflow-x: auto;'>$1</pre>");
-
-        // Lists (- item)
-        html = html.replaceAll("(?m)^- (.*)$", "<li>$1</li>");
-        // Wrap adjacent li elements in ul (Basic heuristic)
-        // For simplicity in JTextPane, we just leave them as bullets or wrap simply if needed.
-        // Actually JTextPane HTML support for lists is okay.
-        
-        // Newlines to <br>, but try to avoid breaking HTML tags we just added
-        // A simple strategy: replace newlines that are NOT inside tags. 
-        // But since we just added tags, let's just use a simple replacement for remaining newlines.
-        // However, we must be careful not to break the headers which might have newlines after them.
-        
-        // Let's replace newlines with <br> generally, but headers typically block-level.
-        // JTextPane's HTML engine treats headers as blocks.
-        
-        html = html.replace("\n", "<br>");
-        
-        // Cleanup extra breaks around headers/pre
-        html = html.replace("</h1><br>", "</h1>");
-        html = html.replace("</h2><br>", "</h2>");
-        html = html.replace("</h3><br>", "</h3>");
-        html = html.replace("</pre><br>", "</pre>");
-        
-        return html;
+        return MarkdownRenderer.render(markdown);
     }
 
     private void askGPT(String question) {
@@ -239,38 +348,50 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
         appendHtml("<div style='margin-top: 10px; margin-bottom: 5px;'><b style='color: #2980B9; font-size: 1.1em;'>👤 You:</b> " + question + "</div>");
         appendHtml("<div style='margin-bottom: 5px;'><b style='color: #8E44AD; font-size: 1.1em;'>🤖 GPT:</b> <span style='color: #7F8C8D;'>Thinking...</span></div>");
         
-        new Thread(() -> {
+        AgentExecutor.run(() -> {
             try {
                 // Construct conversation context from previous output
-                String context = currentContent.length() > 5000 ? currentContent.substring(currentContent.length() - 5000) : currentContent;
+                Tokenizer tokenizer = Tokenizer.forModel(Config.model);
+                String context = tokenizer.keepTail(currentContent, FOLLOW_UP_CONTEXT_TOKENS);
                 
                 // Get current request/response details
                 String reqInfo = "None";
                 String respInfo = "None";
+                // Leave room for the context, question and answer
+                int exchangeBudget = Math.max(1000, ModelRegistry.contextWindow(Config.model) / 2);
                 if (currentRequestResponse != null) {
-                    reqInfo = currentRequestResponse.request().toString();
-                    if (currentRequestResponse.response() != null) {
-                        respInfo = currentRequestResponse.response().toString();
+                    MessageView reqView = MessageView.of(currentRequestResponse.request());
+                    MessageView respView = MessageView.of(currentRequestResponse.response());
+                    if (Config.reduceContent) {
+                        reqInfo = ContentReducer.reduce(reqView).text;
+                        if (currentRequestResponse.response() != null) respInfo = ContentReducer.reduce(respView).text;
+                    } else {
+                        // Only decode what can survive truncation (a token is rarely over 8 bytes)
+                        reqInfo = reqView.text(exchangeBudget * 8);
+                        if (currentRequestResponse.response() != null) respInfo = respView.text(exchangeBudget * 8);
                     }
                 }
+                reqInfo = truncateTokens(tokenizer, reqInfo, exchangeBudget / 4);
+                respInfo = truncateTokens(tokenizer, respInfo, exchangeBudget - tokenizer.count(reqInfo));
 
                 // Pass system prompt from current active skills
                 String systemPrompt = SkillManager.getCombinedSystemPrompt();
 
-                String userPrompt = "The user is asking a follow-up question.\n\n" +
+                // Request/response first so repeated questions share a cacheable prefix
+                String stablePrefix = "The user is asking a follow-up question about this HTTP exchange.\n\n" +
                                 "=== Current HTTP Request ===\n" + reqInfo + "\n" +
                                 "=== Current HTTP Response ===\n" + respInfo + "\n" +
-                                "============================\n\n" +
-                                "=== Previous Conversation Context ===\n" + context + "\n" +
+                                "============================";
+                String variableSuffix = "=== Previous Conversation Context ===\n" + context + "\n" +
                                 "=====================================\n\n" +
                                 "User Question: " + question;
-                
-                currentProvider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, api.logging(), logMsg -> {
-                    appendHtml(logMsg);
-                });
-                String result = currentProvider.sendRequest(systemPrompt, userPrompt, 2000);
+
+                OpenAIProvider provider = createProvider();
+                currentProvider = provider;
+                String result = provider.sendRequest(systemPrompt, stablePrefix, variableSuffix, ANSWER_TOKENS);
                 
                 if (isRunning) {
+                    appendTimingNote(provider);
                     SwingUtilities.invokeLater(() -> {
                         // Remove "Thinking..." and append result
                         String rendered = renderMarkdown(result);
@@ -290,7 +411,7 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
                 setRunningState(false);
                 currentProvider = null;
             }
-        }).start();
+        });
     }
 
     private void analyze(ActionEvent e) {
@@ -300,15 +421,46 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
         outputArea.setText(""); // Clear previous analysis
         appendHtml("<b>Analyzing...</b>");
         
-        new Thread(() -> {
+        AgentExecutor.run(() -> {
             try {
-                String req = currentRequestResponse.request().toString();
-                String resp = currentRequestResponse.response() != null ? currentRequestResponse.response().toString() : "";
+                // Views decode lazily: a skipped library or binary body is never turned into a String
+                MessageView reqView = MessageView.of(currentRequestResponse.request());
+                MessageView respView = MessageView.of(currentRequestResponse.response());
                 
-                if (resp.length() > Config.maxChunkSize) {
-                    analyzeInChunks(req, resp);
+                Tokenizer tokenizer = Tokenizer.forModel(Config.model);
+                LibraryFingerprints.Library library = Config.skipKnownLibraries ? LibraryFingerprints.detect(respView, reqView) : null;
+                String req;
+                String resp;
+                if (Config.reduceContent) {
+                    ContentReducer.Result reducedReq = ContentReducer.reduce(reqView);
+                    appendReductionNote(tokenizer, "request", reducedReq);
+                    req = reducedReq.text;
+                } else {
+                    req = reqView.text();
+                }
+                if (library != null) {
+                    appendHtml("<div style='color: #7F8C8D; font-size: 0.9em;'>📚 Known library " + escapeHtml(library.toString())
+                        + ": skipped " + (respView.bodyLength() / 1024) + " KB of vendor code, analyzing headers and version only</div>");
+                    resp = LibraryFingerprints.omitBody(respView, library);
+                } else if (Config.reduceContent) {
+                    ContentReducer.Result reducedResp = ContentReducer.reduce(respView);
+                    appendReductionNote(tokenizer, "response", reducedResp);
+                    resp = reducedResp.text;
                 } else {
-                    analyzeSingle(req, resp);
+                    resp = respView.text();
+                }
+                PromptTemplate template = Config.promptTemplate();
+                PromptTemplate.Values values = template.values(currentRequestResponse.request().url(), reqView, respView)
+                    .set(PromptTemplate.Placeholder.REQUEST, req);
+                int chunkTokens = chunkBudget(tokenizer, template, values);
+                if (tokenizer.count(resp) > chunkTokens) {
+                    if (Config.CHUNK_MODE_SEQUENTIAL.equals(Config.chunkMode)) {
+                        analyzeInChunks(template, values, resp, tokenizer, chunkTokens);
+                    } else {
+                        analyzeMapReduce(template, values, resp, tokenizer, chunkTokens);
+                    }
+                } else {
+                    analyzeSingle(template.render(values.set(PromptTemplate.Placeholder.RESPONSE, resp)));
                 }
             } catch (Exception ex) {
                 if (isRunning) {
@@ -317,24 +469,20 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
             } finally {
                 setRunningState(false);
                 currentProvider = null;
+                currentMapReduce = null;
             }
-        }).start();
+        });
     }
 
-    private void analyzeSingle(String req, String resp) throws Exception {
-        String prompt = Config.prompt
-            .replace("{REQUEST}", req)
-            .replace("{RESPONSE}", resp);
-        
-        currentProvider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, api.logging(), logMsg -> {
-            appendHtml(logMsg);
-        });
+    private void analyzeSingle(String prompt) throws Exception {
+        currentProvider = createProvider();
         
         // Pass system prompt from current active skills
         String systemPrompt = SkillManager.getCombinedSystemPrompt();
-        String result = currentProvider.sendRequest(systemPrompt, prompt, 2000);
+        String result = currentProvider.sendRequest(systemPrompt, prompt, ANSWER_TOKENS);
         
         if (isRunning) {
+            appendTimingNote(currentProvider);
             String rendered = renderMarkdown(result);
             String html = String.format(
                 "<div style='border: 1px solid #ccc; background-color: #f9f9f9; padding: 10px; margin: 10px 0; border-radius: 5px; font-family: sans-serif;'>" +
@@ -347,56 +495,58 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
         }
     }
 
-    private void analyzeInChunks(String req, String resp) {
-        List<String> chunks = splitIntoChunks(resp, Config.maxChunkSize);
+    private void analyzeInChunks(PromptTemplate template, PromptTemplate.Values values, String resp, Tokenizer tokenizer, int chunkTokens) {
+        List<StructuredChunker.Chunk> chunks = StructuredChunker.split(resp, tokenizer, chunkTokens, Config.chunkOverlapTokens, Config.structuredChunking);
         int totalChunks = chunks.size();
         
-        appendHtml("<div>Response is too large (" + resp.length() + " chars). Splitting into " + totalChunks + " chunks...</div><br>");
+        appendHtml("<div>Response is too large (~" + tokenizer.count(resp) + " tokens). Splitting into " + totalChunks
+            + " chunks of up to " + chunkTokens + " tokens...</div><br>");
         
-        currentProvider = new OpenAIProvider(Config.apiKey, Config.apiUrl, Config.model, api.logging(), logMsg -> {
-            appendHtml(logMsg);
-        });
+        currentProvider = createProvider();
         
         String previousContext = "None (Start of analysis)";
-        
+
+        // Identical for every chunk: instructions, template and request. Only the chunk,
+        // previous findings and interventions vary, and they go after it.
+        PromptTemplate[] parts = template.splitAt(PromptTemplate.Placeholder.RESPONSE);
+        StringBuilder head = new StringBuilder("You are analyzing a large HTTP response in chunks. For each chunk, list any new " +
+                                               "vulnerabilities you find and briefly summarize the key findings so far so they can be " +
+                                               "passed to the next chunk analysis.\n\n");
+        String stablePrefix = parts[0].appendTo(head, values.copy().set(PromptTemplate.Placeholder.CHUNK_INFO, ChunkMapReduce.overallInfo(totalChunks))).toString();
+        String systemPrompt = SkillManager.getCombinedSystemPrompt();
+
         for (int i = 0; i < totalChunks; i++) {
             if (!isRunning) break;
 
-            String chunk = chunks.get(i);
-            String partInfo = "Part " + (i + 1) + "/" + totalChunks;
-            
-            // Construct context-aware prompt
-            String contextPrompt = "You are analyzing a large file in chunks. This is " + partInfo + ".\n" +
-                                   "=== Context from Previous Analysis (Summary) ===\n" + previousContext + "\n" +
-                                   "==============================================\n\n";
-                                   
+            String chunk = chunks.get(i).text;
+            String partInfo = ChunkMapReduce.partInfo(i, totalChunks);
+
+            StringBuilder suffix = new StringBuilder();
+            suffix.append("--- ").append(partInfo).append(" ---\n");
+            if (chunks.get(i).outline != null) suffix.append("[Structure: ").append(chunks.get(i).outline).append("]\n");
+            suffix.append(chunk).append("\n--- End of ").append(partInfo).append(" ---");
+            parts[1].appendTo(suffix, values.copy().set(PromptTemplate.Placeholder.CHUNK_INFO, partInfo)).append("\n\n");
+            suffix.append("=== Context from Previous Analysis (Summary) ===\n").append(previousContext).append("\n");
+            suffix.append("==============================================\n\n");
+
             // Check for interventions in chunk loop
             while (!userInterventions.isEmpty()) {
                 String intervention = userInterventions.poll();
-                contextPrompt += "[User Intervention]: " + intervention + "\n\n";
+                suffix.append("[User Intervention]: ").append(intervention).append("\n\n");
                 appendHtml("<div style='color: #D8000C;'>[Intervention applied to next chunk]</div>");
             }
+            suffix.append("Analyze ").append(partInfo).append(" above.");
 
-            contextPrompt += "Analyze the following chunk. If you find new vulnerabilities, list them. " +
-                                   "Also, please briefly summarize the key findings so far to be passed to the next chunk analysis.\n\n";
-
-            String prompt = contextPrompt + Config.prompt
-                .replace("{REQUEST}", req)
-                .replace("{RESPONSE}", "--- " + partInfo + " ---\n" + chunk + "\n--- End of " + partInfo + " ---");
-            
             try {
-                // Pass system prompt from current active skills
-                String systemPrompt = SkillManager.getCombinedSystemPrompt();
-                String result = currentProvider.sendRequest(systemPrompt, prompt, 2000);
+                long chunkStart = System.nanoTime();
+                String result = currentProvider.sendRequest(systemPrompt, stablePrefix, suffix.toString(), ANSWER_TOKENS);
+                ChunkMapReduce.recordChunkMetrics(tokenizer.count(chunk), chunkStart);
                 
                 if (!isRunning) break;
 
-                // Update previous context for next iteration (Take last 1500 chars to avoid token limit issues)
-                if (result.length() > 1500) {
-                    previousContext = "..." + result.substring(result.length() - 1500);
-                } else {
-                    previousContext = result;
-                }
+                // Carry the tail of this answer into the next chunk's prompt
+                String tail = tokenizer.keepTail(result, PREVIOUS_CONTEXT_TOKENS);
+                previousContext = tail.length() < result.length() ? "..." + tail : result;
 
                 String rendered = renderMarkdown(result);
                 String html = String.format(
@@ -415,6 +565,86 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
         }
         
         if (isRunning) {
+            appendPromptCacheNote(currentProvider);
+            appendHtml("<br><b>=== Analysis Complete ===</b>");
+        }
+    }
+
+    // Chunks run concurrently and report structured findings as they finish; a final call
+    // merges them. Completion order is arbitrary, so each block is labelled with its part.
+    private void analyzeMapReduce(PromptTemplate template, PromptTemplate.Values values, String resp, Tokenizer tokenizer, int chunkTokens) throws InterruptedException {
+        List<StructuredChunker.Chunk> chunks = StructuredChunker.split(resp, tokenizer, chunkTokens, Config.chunkOverlapTokens, Config.structuredChunking);
+        int totalChunks = chunks.size();
+        int concurrency = Math.max(1, Config.chunkConcurrency);
+
+        appendHtml("<div>Response is too large (~" + tokenizer.count(resp) + " tokens). Analyzing " + totalChunks
+            + " chunks of up to " + chunkTokens + " tokens, " + concurrency + " at a time...</div><br>");
+
+        String systemPrompt = SkillManager.getCombinedSystemPrompt();
+        int reduceInputTokens = ModelRegistry.contextWindow(Config.model) - tokenizer.count(systemPrompt)
+            - ANSWER_TOKENS - PROMPT_OVERHEAD_TOKENS;
+
+        ChunkMapReduce mapReduce = new ChunkMapReduce(this::createProvider, tokenizer, concurrency);
+        if (Config.chunkCacheEnabled) mapReduce.setCacheScope(Config.model, Config.prompt);
+        currentMapReduce = mapReduce;
+        AtomicInteger done = new AtomicInteger(0);
+        AtomicInteger reused = new AtomicInteger(0);
+        long start = System.nanoTime();
+
+        String report = mapReduce.run(systemPrompt, template, values, chunks, ANSWER_TOKENS, reduceInputTokens, () -> {
+            StringBuilder sb = new StringBuilder();
+            String intervention;
+            while ((intervention = userInterventions.poll()) != null) {
+                sb.append("[User Intervention]: ").append(intervention).append("\n\n");
+                appendHtml("<div style='color: #D8000C;'>[Intervention applied to remaining chunks and final report]</div>");
+            }
+            return sb.toString();
+        }, new ChunkMapReduce.Listener() {
+            @Override
+            public void onChunkDone(int index, int total, List<Finding> findings, boolean cached) {
+                if (cached) reused.incrementAndGet();
+                if (!isRunning) return;
+                String html = String.format(
+                    "<div style='border: 1px solid #ccc; background-color: #f9f9f9; padding: 10px; margin: 10px 0; border-radius: 5px; font-family: sans-serif;'>" +
+                    "<div style='font-weight: bold; color: #333; border-bottom: 1px solid #ddd; padding-bottom: 5px; margin-bottom: 5px;'>📝 Part %d/%d (%d/%d done)%s</div>" +
+                    "<div style='color: #333;'>%s</div>" +
+                    "</div>",
+                    index + 1, total, done.incrementAndGet(), total, cached ? " ♻ cached" : "", renderMarkdown(Finding.toMarkdown(findings))
+                );
+                appendHtml(html);
+            }
+
+            @Override
+            public void onChunkFailed(int index, int total, String error) {
+                done.incrementAndGet();
+                if (isRunning) {
+                    appendHtml("<div style='color: red;'>Error analyzing Part " + (index + 1) + "/" + total + ": " + escapeHtml(String.valueOf(error)) + "</div>");
+                }
+            }
+        });
+
+        if (isRunning && report != null && report.startsWith("Error")) {
+            appendHtml("<div style='color: red;'>" + escapeHtml(report) + "</div>");
+        } else if (isRunning && report != null) {
+            long seconds = (System.nanoTime() - start) / 1_000_000_000L;
+            if (reused.get() > 0) {
+                appendHtml("<div style='color: #7F8C8D; font-size: 0.9em;'>♻ " + reused.get() + "/" + totalChunks
+                    + " chunks reused from earlier analyses</div>");
+            }
+            long prompt = mapReduce.getPromptTokensTotal();
+            if (prompt > 0) {
+                long cached = mapReduce.getCachedPromptTokensTotal();
+                appendHtml("<div style='color: #7F8C8D; font-size: 0.9em;'>♻ Prompt cache hit " + (cached * 100 / prompt)
+                    + "% (" + cached + "/" + prompt + " tokens), " + totalChunks + " chunks in " + seconds + " s</div>");
+            }
+            String html = String.format(
+                "<div style='border: 1px solid #ccc; background-color: #f9f9f9; padding: 10px; margin: 10px 0; border-radius: 5px; font-family: sans-serif;'>" +
+                "<div style='font-weight: bold; color: #333; border-bottom: 1px solid #ddd; padding-bottom: 5px; margin-bottom: 5px;'>📝 Merged Report</div>" +
+                "<div style='color: #333;'>%s</div>" +
+                "</div>",
+                renderMarkdown(report)
+            );
+            appendHtml(html);
             appendHtml("<br><b>=== Analysis Complete ===</b>");
         }
     }
@@ -425,6 +655,10 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
             if (currentProvider != null) {
                 currentProvider.cancel();
             }
+            ChunkMapReduce mapReduce = currentMapReduce;
+            if (mapReduce != null) {
+                mapReduce.cancel();
+            }
             appendHtml("<br><b style='color: red;'>[Analysis Stopped by User]</b>");
             setRunningState(false);
         }
@@ -439,17 +673,19 @@ public class GPTEditorTab implements ExtensionProvidedHttpRequestEditor, Extensi
         });
     }
 
-    private List<String> splitIntoChunks(String text, int chunkSize) {
-        List<String> chunks = new ArrayList<>();
-        int length = text.length();
-        int overlap = 500; // Overlap to prevent cutting context
-        
-        for (int i = 0; i < length; i += (chunkSize - overlap)) {
-            int end = Math.min(length, i + chunkSize);
-            chunks.add(text.substring(i, end));
-            if (end == length) break;
-        }
-        return chunks;
+    // Chunk size in tokens: the configured size, shrunk so that the system prompt, the stable
+    // prefix (template + request), the carried-over context and the answer still fit.
+    private int chunkBudget(Tokenizer tokenizer, PromptTemplate template, PromptTemplate.Values values) {
+        int window = ModelRegistry.contextWindow(Config.model);
+        int fixed = tokenizer.count(SkillManager.getCombinedSystemPrompt())
+            + tokenizer.count(template.render(values))
+            + PREVIOUS_CONTEXT_TOKENS + ANSWER_TOKENS + PROMPT_OVERHEAD_TOKENS;
+        return Math.max(MIN_CHUNK_TOKENS, Math.min(Config.maxChunkTokens, window - fixed));
+    }
+
+    private static String truncateTokens(Tokenizer tokenizer, String text, int maxTokens) {
+        String cut = tokenizer.truncate(text, Math.max(0, maxTokens));
+        return cut.length() < text.length() ? cut + "\n...[truncated]" : text;
     }
 
     @Override
@@ -0,0 +1,448 @@
+package com.enhanced.burpgpt.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Single-pass Markdown to Swing (HTML 3.2) renderer. Text can be appended in pieces as it
+// streams in: every complete line is rendered once and kept, so a refresh only parses what
+// arrived since the last one plus the unfinished last line. Block state (code fences, nested
+// lists, tables) carries across lines; inline spans (bold, italic, code, links) stay within
+// a line. No regexes and no rescans of earlier text, so long outputs render in linear time.
+public class MarkdownRenderer {
+    private static final String PRE_STYLE = "background-color: #f5f5f5; padding: 10px; border-radius: 5px; overflow-x: auto;";
+    private static final String CODE_STYLE = "background-color: #f0f0f0; padding: 2px; border-radius: 3px;";
+    private static final String QUOTE_STYLE = "border-left: 3px solid #ccc; padding-left: 8px; color: #555;";
+    private static final int MAX_LINK_CHARS = 512;
+    private static final int MAX_TICKS = 16;
+
+    private final StringBuilder out = new StringBuilder();
+    private final StringBuilder partial = new StringBuilder(); // Text after the last newline
+
+    // Block state; copied by the constructor below for provisional renders
+    private String fence;                 // Opening ``` or ~~~ run while inside a code block
+    private boolean fenceEmpty;
+    private final List<Integer> listIndents = new ArrayList<>();
+    private final List<Boolean> listOrdered = new ArrayList<>();
+    private String[] tableAligns;         // Column alignments while inside a table
+    private String pendingRow;            // A "| a | b |" line that is a table header if a separator follows
+    private int breaks;                   // Line breaks owed before the next paragraph line
+
+    public MarkdownRenderer() {
+    }
+
+    private MarkdownRenderer(MarkdownRenderer from) {
+        fence = from.fence;
+        fenceEmpty = from.fenceEmpty;
+        listIndents.addAll(from.listIndents);
+        listOrdered.addAll(from.listOrdered);
+        tableAligns = from.tableAligns;
+        pendingRow = from.pendingRow;
+        breaks = from.breaks;
+    }
+
+    public static String render(String markdown) {
+        return new MarkdownRenderer().append(markdown).html();
+    }
+
+    public MarkdownRenderer append(CharSequence text) {
+        String s = text.toString();
+        int start = 0;
+        for (int nl = s.indexOf('\n'); nl >= 0; nl = s.indexOf('\n', start)) {
+            String line;
+            if (partial.length() > 0) {
+                line = partial.append(s, start, nl).toString();
+                partial.setLength(0);
+            } else {
+                line = s.substring(start, nl);
+            }
+            line(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+            start = nl + 1;
+        }
+        partial.append(s, start, s.length());
+        return this;
+    }
+
+    // Everything appended so far. The unfinished last line is rendered as if complete and open
+    // blocks are closed in a copy, so later appends continue from the same state.
+    public String html() {
+        if (partial.length() == 0 && pendingRow == null && fence == null && tableAligns == null && listIndents.isEmpty()) {
+            return out.toString();
+        }
+        MarkdownRenderer tail = new MarkdownRenderer(this);
+        if (partial.length() > 0) tail.line(partial.toString());
+        tail.closeAll();
+        return new StringBuilder(out.length() + tail.out.length()).append(out).append(tail.out).toString();
+    }
+
+    private void line(String line) {
+        if (fence != null) {
+            codeLine(line);
+            return;
+        }
+        if (pendingRow != null) {
+            String header = pendingRow;
+            pendingRow = null;
+            if (startTable(header, line)) return;
+            paragraph(header);
+        }
+        if (tableAligns != null) {
+            if (line.trim().startsWith("|")) {
+                tableRow(line, "td");
+                return;
+            }
+            out.append("</table>");
+            tableAligns = null;
+        }
+
+        int indent = 0;
+        int i = 0;
+        for (; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') indent++;
+            else if (c == '\t') indent += 4;
+            else break;
+        }
+        if (i == line.length()) {
+            // Blank lines separate paragraphs but don't end a list
+            if (listIndents.isEmpty()) breaks++;
+            return;
+        }
+        String text = line.substring(i);
+
+        if (indent < 4 && (text.startsWith("```") || text.startsWith("~~~"))) {
+            closeBlocks();
+            int n = 0;
+            while (n < text.length() && text.charAt(n) == text.charAt(0)) n++;
+            fence = text.substring(0, n);
+            fenceEmpty = true;
+            out.append("<pre style='").append(PRE_STYLE).append("'>");
+            return;
+        }
+        int level = headingLevel(text);
+        if (level > 0 && indent < 4) {
+            closeBlocks();
+            out.append("<h").append(level).append('>');
+            inline(text.substring(level).trim(), out);
+            out.append("</h").append(level).append('>');
+            return;
+        }
+        if (indent < 4 && isRule(text)) {
+            closeBlocks();
+            out.append("<hr>");
+            return;
+        }
+        int marker = listMarker(text);
+        if (marker > 0) {
+            listItem(indent, Character.isDigit(text.charAt(0)), text.substring(marker));
+            return;
+        }
+        if (!listIndents.isEmpty() && indent >= 2) {
+            // Indented text under an item continues it
+            out.append("<br>");
+            inline(text, out);
+            return;
+        }
+        if (text.startsWith("|")) {
+            pendingRow = line;
+            return;
+        }
+        if (text.startsWith(">")) {
+            closeBlocks();
+            out.append("<div style='").append(QUOTE_STYLE).append("'>");
+            inline(text.substring(1).trim(), out);
+            out.append("</div>");
+            return;
+        }
+        paragraph(line);
+    }
+
+    private void paragraph(String line) {
+        closeLists();
+        for (; breaks > 0; breaks--) out.append("<br>");
+        inline(line.trim(), out);
+        breaks = 1;
+    }
+
+    private void codeLine(String line) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith(fence) && trimmed.chars().allMatch(c -> c == fence.charAt(0))) {
+            out.append("</pre>");
+            fence = null;
+            return;
+        }
+        if (!fenceEmpty) out.append("<br>");
+        fenceEmpty = false;
+        escape(line, 0, line.length(), out);
+    }
+
+    // Pending line breaks belong to the paragraph; block elements bring their own spacing
+    private void closeBlocks() {
+        closeLists();
+        breaks = 0;
+    }
+
+    private void closeAll() {
+        if (pendingRow != null) {
+            String row = pendingRow;
+            pendingRow = null;
+            paragraph(row);
+        }
+        if (fence != null) {
+            out.append("</pre>");
+            fence = null;
+        }
+        if (tableAligns != null) {
+            out.append("</table>");
+            tableAligns = null;
+        }
+        closeLists();
+    }
+
+    private static int headingLevel(String text) {
+        int n = 0;
+        while (n < text.length() && n < 7 && text.charAt(n) == '#') n++;
+        if (n == 0 || n > 6) return 0;
+        return n == text.length() || text.charAt(n) == ' ' || text.charAt(n) == '\t' ? n : 0;
+    }
+
+    // ---, *** or ___ (spaces allowed between)
+    private static boolean isRule(String text) {
+        char c = text.charAt(0);
+        if (c != '-' && c != '*' && c != '_') return false;
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == c) count++;
+            else if (ch != ' ' && ch != '\t') return false;
+        }
+        return count >= 3;
+    }
+
+    // Length of "- ", "* ", "+ ", "1. " or "1) " at the start of the text, or 0
+    private static int listMarker(String text) {
+        char c = text.charAt(0);
+        if (c == '-' || c == '*' || c == '+') {
+            return text.length() > 1 && text.charAt(1) == ' ' ? 2 : 0;
+        }
+        int n = 0;
+        while (n < text.length() && n < 9 && Character.isDigit(text.charAt(n))) n++;
+        if (n == 0 || n + 1 >= text.length()) return 0;
+        char end = text.charAt(n);
+        return (end == '.' || end == ')') && text.charAt(n + 1) == ' ' ? n + 2 : 0;
+    }
+
+    // Every open list has an open <li>, so nested lists land inside their parent item
+    private void listItem(int indent, boolean ordered, String content) {
+        breaks = 0;
+        while (!listIndents.isEmpty() && indent < listIndents.get(listIndents.size() - 1)) closeList();
+        int top = listIndents.size() - 1;
+        if (top >= 0 && indent < listIndents.get(top) + 2 && listOrdered.get(top) == ordered) {
+            out.append("</li><li>");
+        } else {
+            if (top >= 0 && indent < listIndents.get(top) + 2) closeList(); // Same level, other list type
+            listIndents.add(indent);
+            listOrdered.add(ordered);
+            out.append(ordered ? "<ol><li>" : "<ul><li>");
+        }
+        inline(content.trim(), out);
+    }
+
+    private void closeList() {
+        int top = listIndents.size() - 1;
+        out.append(listOrdered.get(top) ? "</li></ol>" : "</li></ul>");
+        listIndents.remove(top);
+        listOrdered.remove(top);
+    }
+
+    private void closeLists() {
+        while (!listIndents.isEmpty()) closeList();
+    }
+
+    // A header row followed by a |---|:---:| separator with the same number of columns
+    private boolean startTable(String header, String separator) {
+        if (!separator.trim().startsWith("|")) return false;
+        List<String> heads = cells(header);
+        List<String> seps = cells(separator);
+        if (heads.size() != seps.size()) return false;
+        String[] aligns = new String[seps.size()];
+        for (int i = 0; i < seps.size(); i++) {
+            String s = seps.get(i);
+            int dashes = 0;
+            for (int j = 0; j < s.length(); j++) {
+                char c = s.charAt(j);
+                if (c == '-') dashes++;
+                else if (c != ':' || (j != 0 && j != s.length() - 1)) return false;
+            }
+            if (dashes == 0) return false;
+            boolean left = s.startsWith(":");
+            boolean right = s.endsWith(":");
+            aligns[i] = left && right ? "center" : right ? "right" : "left";
+        }
+        closeBlocks();
+        tableAligns = aligns;
+        out.append("<table border='1' cellspacing='0' cellpadding='4'>");
+        tableRow(header, "th");
+        return true;
+    }
+
+    private void tableRow(String line, String tag) {
+        List<String> cells = cells(line);
+        out.append("<tr>");
+        for (int i = 0; i < tableAligns.length; i++) {
+            out.append('<').append(tag).append(" align='").append(tableAligns[i]).append("'>");
+            if (i < cells.size()) inline(cells.get(i), out);
+            out.append("</").append(tag).append('>');
+        }
+        out.append("</tr>");
+    }
+
+    // Splits on pipes outside code spans and not escaped as \|; outer pipes are optional
+    private static List<String> cells(String line) {
+        String s = line.trim();
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean code = false;
+        int start = s.startsWith("|") ? 1 : 0;
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length() && s.charAt(i + 1) == '|') {
+                cell.append('|');
+                i++;
+            } else if (c == '`') {
+                code = !code;
+                cell.append(c);
+            } else if (c == '|' && !code) {
+                cells.add(cell.toString().trim());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (cell.toString().trim().length() > 0 || !s.endsWith("|")) cells.add(cell.toString().trim());
+        return cells;
+    }
+
+    // Bold, italic, code spans and links within one line. Openers only count if a matching
+    // closer exists further on (known from a single lastIndexOf per marker), so unmatched
+    // markers stay literal and nothing is rescanned.
+    private static void inline(String s, StringBuilder out) {
+        int n = s.length();
+        int lastStars = s.lastIndexOf("**");
+        int lastUnders = s.lastIndexOf("__");
+        int lastStar = s.lastIndexOf('*');
+        int lastUnder = s.lastIndexOf('_');
+        boolean[] noCloser = null; // By backtick run length, once a search has failed
+        char bold = 0;
+        char italic = 0;
+        String closeOrder = "";
+        int end;
+
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            char prev = i > 0 ? s.charAt(i - 1) : ' ';
+            char next = i + 1 < n ? s.charAt(i + 1) : ' ';
+
+            if (c == '\\' && i + 1 < n && isPunctuation(next)) {
+                escape(s, i + 1, i + 2, out);
+                i++;
+            } else if (c == '`') {
+                int ticks = 1;
+                while (i + ticks < n && s.charAt(i + ticks) == '`') ticks++;
+                int close = -1;
+                if (ticks < MAX_TICKS && (noCloser == null || !noCloser[ticks])) {
+                    close = s.indexOf(s.substring(i, i + ticks), i + ticks);
+                    if (close < 0) {
+                        if (noCloser == null) noCloser = new boolean[MAX_TICKS];
+                        noCloser[ticks] = true;
+                    }
+                }
+                if (close >= 0) {
+                    out.append("<code style='").append(CODE_STYLE).append("'>");
+                    escape(s, i + ticks, close, out);
+                    out.append("</code>");
+                    i = close + ticks - 1;
+                } else {
+                    out.append(s, i, i + ticks);
+                    i += ticks - 1;
+                }
+            } else if ((c == '*' || c == '_') && next == c) {
+                int last = c == '*' ? lastStars : lastUnders;
+                char after = i + 2 < n ? s.charAt(i + 2) : ' ';
+                if (bold == c && !Character.isWhitespace(prev)) {
+                    out.append("</b>");
+                    bold = 0;
+                    closeOrder = closeOrder.replace("b", "");
+                    i++;
+                } else if (bold == 0 && last > i + 1 && !Character.isWhitespace(after) && (c == '*' || !Character.isLetterOrDigit(prev))) {
+                    out.append("<b>");
+                    bold = c;
+                    closeOrder = "b" + closeOrder;
+                    i++;
+                } else {
+                    out.append(c).append(c);
+                    i++;
+                }
+            } else if (c == '*' || c == '_') {
+                int last = c == '*' ? lastStar : lastUnder;
+                if (italic == c && !Character.isWhitespace(prev) && (c == '*' || !Character.isLetterOrDigit(next))) {
+                    out.append("</i>");
+                    italic = 0;
+                    closeOrder = closeOrder.replace("i", "");
+                } else if (italic == 0 && last > i && !Character.isWhitespace(next) && (c == '*' || !Character.isLetterOrDigit(prev))) {
+                    out.append("<i>");
+                    italic = c;
+                    closeOrder = "i" + closeOrder;
+                } else {
+                    out.append(c);
+                }
+            } else if (c == '[' && (end = link(s, i, out)) >= 0) {
+                i = end;
+            } else {
+                escape(s, i, i + 1, out);
+            }
+        }
+        for (int k = 0; k < closeOrder.length(); k++) {
+            out.append(closeOrder.charAt(k) == 'b' ? "</b>" : "</i>");
+        }
+    }
+
+    // [text](url) starting at i: writes the link and returns the index of the closing
+    // parenthesis, or returns -1 without writing if it isn't one. Both scans stop at
+    // MAX_LINK_CHARS, so a line full of unclosed brackets stays linear.
+    private static int link(String s, int i, StringBuilder out) {
+        int limit = Math.min(s.length(), i + MAX_LINK_CHARS);
+        int close = indexOf(s, ']', i + 1, limit);
+        if (close < 0 || close + 1 >= limit || s.charAt(close + 1) != '(') return -1;
+        int paren = indexOf(s, ')', close + 2, limit);
+        if (paren < 0) return -1;
+        String url = s.substring(close + 2, paren).trim().replace("'", "%27");
+        if (url.isEmpty() || url.indexOf(' ') >= 0) return -1;
+        out.append("<a href='");
+        escape(url, 0, url.length(), out);
+        out.append("'>");
+        inline(s.substring(i + 1, close), out);
+        out.append("</a>");
+        return paren;
+    }
+
+    private static int indexOf(String s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isPunctuation(char c) {
+        return c < 128 && !Character.isLetterOrDigit(c) && !Character.isWhitespace(c);
+    }
+
+    private static void escape(String s, int from, int to, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '&') out.append("&amp;");
+            else if (c == '<') out.append("&lt;");
+            else if (c == '>') out.append("&gt;");
+            else out.append(c);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.enhanced.burpgpt.ui;
 
 import com.enhanced.burpgpt.Config;
+import com.enhanced.burpgpt.analysis.ChunkCache;
+import com.enhanced.burpgpt.api.Cassette;
+import com.enhanced.burpgpt.api.HttpClientManager;
+import com.enhanced.burpgpt.api.ResponseCache;
 import com.enhanced.burpgpt.api.ToolManager;
 import com.enhanced.burpgpt.mcp.MCPManager;
+import com.enhanced.burpgpt.metrics.MetricsRegistry;
 import com.enhanced.burpgpt.skills.Skill;
 import com.enhanced.burpgpt.skills.SkillManager;
 
@@ -29,6 +34,8 @@ public class SettingsPanel extends JPanel {
         tabbedPane.addTab("General Settings", createGeneralSettingsPanel());
         tabbedPane.addTab("Agent Skills", createSkillsPanel());
         tabbedPane.addTab("Custom Tools", createToolsPanel());
+        tabbedPane.addTab("Advanced", createAdvancedSettingsPanel());
+        tabbedPane.addTab("Performance", createPerformancePanel());
         
         add(tabbedPane, BorderLayout.CENTER);
     }
@@ -65,9 +72,9 @@ public class SettingsPanel extends JPanel {
 
         // Max Chunk Size
         gbc.gridx = 0; gbc.gridy = 3; gbc.weightx = 0.1;
-        panel.add(new JLabel("Max Chunk Size (chars):"), gbc);
+        panel.add(new JLabel("Max Chunk Size (tokens):"), gbc);
         
-        JTextField chunkField = new JTextField(String.valueOf(Config.maxChunkSize));
+        JTextField chunkField = new JTextField(String.valueOf(Config.maxChunkTokens));
         gbc.gridx = 1; gbc.gridy = 3; gbc.weightx = 1.0;
         panel.add(chunkField, gbc);
 
@@ -171,7 +178,7 @@ public class SettingsPanel extends JPanel {
         gbc.gridx = 0; gbc.gridy = 10; gbc.weightx = 1.0; gbc.gridwidth = 2;
         gbc.weighty = 0;
         gbc.fill = GridBagConstraints.HORIZONTAL;
-        panel.add(new JLabel("Prompt Template (Use {REQUEST} and {RESPONSE} as placeholders):"), gbc);
+        panel.add(new JLabel("Prompt Template (Placeholders: {REQUEST}, {RESPONSE}, {URL}, {HEADERS}, {BODY_SNIPPET}, {CHUNK_INFO}):"), gbc);
         
         // Prompt Area
         JTextArea promptArea = new JTextArea(Config.prompt);
@@ -197,11 +204,11 @@ public class SettingsPanel extends JPanel {
             Config.apiUrl = apiUrlField.getText();
             Config.model = modelField.getText();
             try {
-                Config.maxChunkSize = Integer.parseInt(chunkField.getText());
+                Config.maxChunkTokens = Integer.parseInt(chunkField.getText());
             } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Invalid Max Chunk Size, using default 10000");
-                Config.maxChunkSize = 10000;
-                chunkField.setText("10000");
+                JOptionPane.showMessageDialog(this, "Invalid Max Chunk Size, using default 4000");
+                Config.maxChunkTokens = 4000;
+                chunkField.setText("4000");
             }
             Config.toolsPath = toolsPathField.getText();
             Config.commandBlacklist = blacklistField.getText();
@@ -288,6 +295,235 @@ public class SettingsPanel extends JPanel {
         return panel;
     }
 
+    private JPanel createAdvancedSettingsPanel() {
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.anchor = GridBagConstraints.NORTH;
+        int row = 0;
+
+        // Shared LLM HTTP client
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(new JLabel("<html><b>LLM Connection Pool</b></html>"), gbc);
+        gbc.gridwidth = 1;
+
+        JTextField idleField = addIntField(panel, gbc, row++, "Max Idle Connections:", Config.httpMaxIdleConnections);
+        JTextField keepAliveField = addIntField(panel, gbc, row++, "Keep-Alive (seconds):", Config.httpKeepAliveSeconds);
+        JTextField maxRequestsField = addIntField(panel, gbc, row++, "Max Concurrent Requests:", Config.httpMaxRequests);
+        JTextField perEndpointField = addIntField(panel, gbc, row++, "Max Requests per Endpoint:", Config.httpMaxRequestsPerEndpoint);
+        JTextField retriesField = addIntField(panel, gbc, row++, "Max Retries (429 / 5xx):", Config.llmMaxRetries);
+        JTextField backoffField = addIntField(panel, gbc, row++, "Max Backoff (seconds):", Config.llmMaxBackoffSeconds);
+
+        // Extra backends
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(new JLabel("Extra LLM Backends, one per line (Name|API URL|API Key|Model|Weight, empty Model = default):"), gbc);
+
+        StringBuilder backendsSb = new StringBuilder();
+        if (Config.llmBackends != null) {
+            for (Config.LLMBackendConfig backend : Config.llmBackends) {
+                backendsSb.append(backend.name).append("|").append(backend.apiUrl).append("|")
+                    .append(backend.apiKey != null ? backend.apiKey : "").append("|")
+                    .append(backend.model != null ? backend.model : "").append("|")
+                    .append(backend.weight).append("\n");
+            }
+        }
+        JTextArea backendsArea = new JTextArea(backendsSb.toString());
+        backendsArea.setRows(4);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(new JScrollPane(backendsArea), gbc);
+
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox streamingBox = new JCheckBox("Stream responses (render tokens as they arrive)");
+        streamingBox.setSelected(Config.streamingEnabled);
+        panel.add(streamingBox, gbc);
+
+        // Agent loop budgets
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(new JLabel("<html><b>Agent Loop Limits</b></html>"), gbc);
+        gbc.gridwidth = 1;
+
+        JTextField maxTurnsField = addIntField(panel, gbc, row++, "Max Turns per Run:", Config.agentMaxTurns);
+        JTextField maxSecondsField = addIntField(panel, gbc, row++, "Max Run Time (seconds):", Config.agentMaxSeconds);
+        JTextField maxTokensField = addIntField(panel, gbc, row++, "Max Tokens per Run:", Config.agentMaxTokens);
+        JTextField toolConcurrencyField = addIntField(panel, gbc, row++, "Parallel Tool Calls:", Config.toolConcurrency);
+        JTextField historyTokensField = addIntField(panel, gbc, row++, "History Budget (tokens):", Config.historyMaxTokens);
+        JTextField historyTurnsField = addIntField(panel, gbc, row++, "Recent Turns Kept Verbatim:", Config.historyKeepTurns);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox summarizeBox = new JCheckBox("Summarize older turns in the background (extra LLM call)");
+        summarizeBox.setSelected(Config.historySummarize);
+        panel.add(summarizeBox, gbc);
+        gbc.gridwidth = 1;
+
+        // Token budgets
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(new JLabel("<html><b>Tokens &amp; Chunking</b></html>"), gbc);
+        gbc.gridwidth = 1;
+
+        JTextField overlapField = addIntField(panel, gbc, row++, "Chunk Overlap (tokens):", Config.chunkOverlapTokens);
+        gbc.gridx = 0; gbc.gridy = row; gbc.weightx = 0.1;
+        panel.add(new JLabel("Chunk Analysis Mode:"), gbc);
+        JComboBox<String> chunkModeBox = new JComboBox<>(new String[]{Config.CHUNK_MODE_MAP_REDUCE, Config.CHUNK_MODE_SEQUENTIAL});
+        chunkModeBox.setSelectedItem(Config.chunkMode);
+        gbc.gridx = 1; gbc.gridy = row++; gbc.weightx = 1.0;
+        panel.add(chunkModeBox, gbc);
+        JTextField chunkConcurrencyField = addIntField(panel, gbc, row++, "Parallel Chunks (map-reduce):", Config.chunkConcurrency);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox structuredBox = new JCheckBox("Split at JSON / JS / HTML / multipart boundaries (overlap only for oversized elements)");
+        structuredBox.setSelected(Config.structuredChunking);
+        panel.add(structuredBox, gbc);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox reduceBox = new JCheckBox("Strip binary bodies, data URIs, repeated rows and whitespace before prompting");
+        reduceBox.setSelected(Config.reduceContent);
+        panel.add(reduceBox, gbc);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox libraryBox = new JCheckBox("Skip known third-party libraries (jQuery, React, ...) by fingerprint");
+        libraryBox.setSelected(Config.skipKnownLibraries);
+        panel.add(libraryBox, gbc);
+        gbc.gridwidth = 1;
+        JTextField contextWindowField = addIntField(panel, gbc, row++, "Context Window (0 = auto):", Config.contextWindowOverride);
+        JTextField artifactThresholdField = addIntField(panel, gbc, row++, "Spill Tool Outputs Above (bytes, 0 = off):", Config.artifactThresholdBytes);
+        JTextField artifactMaxField = addIntField(panel, gbc, row++, "Max Artifact Storage (MB):", Config.artifactMaxMB);
+
+        // Response cache
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(new JLabel("<html><b>Response Cache</b></html>"), gbc);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox cacheBox = new JCheckBox("Reuse answers for identical prompts");
+        cacheBox.setSelected(Config.responseCacheEnabled);
+        panel.add(cacheBox, gbc);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox coalesceBox = new JCheckBox("Share identical requests that are already running");
+        coalesceBox.setSelected(Config.coalesceRequests);
+        panel.add(coalesceBox, gbc);
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        JCheckBox chunkCacheBox = new JCheckBox("Reuse chunk findings across hosts and sessions (content hash)");
+        chunkCacheBox.setSelected(Config.chunkCacheEnabled);
+        panel.add(chunkCacheBox, gbc);
+        gbc.gridwidth = 1;
+
+        JTextField cacheTtlField = addIntField(panel, gbc, row++, "Cache TTL (hours):", Config.cacheTtlHours);
+        JTextField cacheDiskField = addIntField(panel, gbc, row++, "Max Disk Cache (MB):", Config.cacheMaxDiskMB);
+        JTextField cacheMemoryField = addIntField(panel, gbc, row++, "In-Memory Entries:", Config.cacheMemoryEntries);
+        JTextField chunkCacheDaysField = addIntField(panel, gbc, row++, "Chunk Cache TTL (days):", Config.chunkCacheDays);
+
+        // Session cassette (record/replay for offline benchmarking)
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(new JLabel("<html><b>Session Cassette</b> (record LLM turns and tool results, replay them offline)</html>"), gbc);
+        gbc.gridwidth = 1;
+        gbc.gridx = 0; gbc.gridy = row; gbc.weightx = 0.1;
+        panel.add(new JLabel("Cassette Mode:"), gbc);
+        JComboBox<String> cassetteModeBox = new JComboBox<>(new String[]{Cassette.OFF, Cassette.RECORD, Cassette.REPLAY});
+        cassetteModeBox.setSelectedItem(Config.cassetteMode);
+        gbc.gridx = 1; gbc.gridy = row++; gbc.weightx = 1.0;
+        panel.add(cassetteModeBox, gbc);
+        gbc.gridx = 0; gbc.gridy = row; gbc.weightx = 0.1;
+        panel.add(new JLabel("Cassette File:"), gbc);
+        JTextField cassettePathField = new JTextField(Cassette.getFile().getPath());
+        gbc.gridx = 1; gbc.gridy = row++; gbc.weightx = 1.0;
+        panel.add(cassettePathField, gbc);
+
+        // Button Panel
+        JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton saveBtn = new JButton("Save Settings");
+        saveBtn.addActionListener(e -> {
+            Config.httpMaxIdleConnections = parseIntField(idleField, 16);
+            Config.httpKeepAliveSeconds = parseIntField(keepAliveField, 300);
+            Config.httpMaxRequests = parseIntField(maxRequestsField, 64);
+            Config.httpMaxRequestsPerEndpoint = parseIntField(perEndpointField, 16);
+            Config.llmMaxRetries = retriesField.getText().trim().equals("0") ? 0 : parseIntField(retriesField, 5);
+            Config.llmMaxBackoffSeconds = parseIntField(backoffField, 60);
+            Config.streamingEnabled = streamingBox.isSelected();
+
+            Config.llmBackends = new ArrayList<>();
+            for (String line : backendsArea.getText().split("\n")) {
+                if (line.trim().isEmpty()) continue;
+                String[] parts = line.split("\\|", -1);
+                if (parts.length < 3) {
+                    JOptionPane.showMessageDialog(this, "Ignoring invalid backend line: " + line);
+                    continue;
+                }
+                String backendModel = parts.length > 3 ? parts[3].trim() : "";
+                int weight = 1;
+                if (parts.length > 4) {
+                    try {
+                        weight = Integer.parseInt(parts[4].trim());
+                    } catch (NumberFormatException ignored) {
+                        // Keep default weight
+                    }
+                }
+                Config.llmBackends.add(new Config.LLMBackendConfig(parts[0].trim(), parts[1].trim(), parts[2].trim(), backendModel, weight));
+            }
+            Config.agentMaxTurns = parseIntField(maxTurnsField, 25);
+            Config.agentMaxSeconds = parseIntField(maxSecondsField, 600);
+            Config.agentMaxTokens = parseIntField(maxTokensField, 500000);
+            Config.toolConcurrency = parseIntField(toolConcurrencyField, 4);
+            Config.historyMaxTokens = parseIntField(historyTokensField, 32000);
+            Config.historyKeepTurns = parseIntField(historyTurnsField, 4);
+            Config.historySummarize = summarizeBox.isSelected();
+            Config.chunkOverlapTokens = Math.max(0, parseIntField(overlapField, 200));
+            Config.chunkMode = (String) chunkModeBox.getSelectedItem();
+            Config.chunkConcurrency = parseIntField(chunkConcurrencyField, 4);
+            Config.structuredChunking = structuredBox.isSelected();
+            Config.reduceContent = reduceBox.isSelected();
+            Config.skipKnownLibraries = libraryBox.isSelected();
+            Config.contextWindowOverride = Math.max(0, parseIntField(contextWindowField, 0));
+            Config.artifactThresholdBytes = artifactThresholdField.getText().trim().equals("0") ? 0 : parseIntField(artifactThresholdField, 8192);
+            Config.artifactMaxMB = parseIntField(artifactMaxField, 256);
+            Config.responseCacheEnabled = cacheBox.isSelected();
+            Config.coalesceRequests = coalesceBox.isSelected();
+            Config.cacheTtlHours = parseIntField(cacheTtlField, 24);
+            Config.cacheMaxDiskMB = parseIntField(cacheDiskField, 50);
+            Config.cacheMemoryEntries = parseIntField(cacheMemoryField, 200);
+            Config.chunkCacheEnabled = chunkCacheBox.isSelected();
+            Config.chunkCacheDays = parseIntField(chunkCacheDaysField, 30);
+            Config.cassetteMode = (String) cassetteModeBox.getSelectedItem();
+            Config.cassettePath = cassettePathField.getText().trim();
+
+            Config.save();
+            HttpClientManager.reload();
+            JOptionPane.showMessageDialog(this, "Advanced Settings Saved!");
+        });
+        JButton clearCacheBtn = new JButton("Clear Cache");
+        clearCacheBtn.addActionListener(e -> {
+            ResponseCache.clear();
+            ChunkCache.clear();
+            JOptionPane.showMessageDialog(this, "Response and chunk caches cleared.");
+        });
+        btnPanel.add(clearCacheBtn);
+        btnPanel.add(saveBtn);
+
+        gbc.gridx = 0; gbc.gridy = row++; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        panel.add(btnPanel, gbc);
+
+        // Push content to the top
+        gbc.gridy = row; gbc.weighty = 1.0;
+        panel.add(new JPanel(), gbc);
+
+        return panel;
+    }
+
+    private JTextField addIntField(JPanel panel, GridBagConstraints gbc, int row, String label, int value) {
+        gbc.gridx = 0; gbc.gridy = row; gbc.weightx = 0.1;
+        panel.add(new JLabel(label), gbc);
+
+        JTextField field = new JTextField(String.valueOf(value));
+        gbc.gridx = 1; gbc.gridy = row; gbc.weightx = 1.0;
+        panel.add(field, gbc);
+        return field;
+    }
+
+    private int parseIntField(JTextField field, int defaultValue) {
+        try {
+            int value = Integer.parseInt(field.getText().trim());
+            if (value > 0) return value;
+        } catch (NumberFormatException ignored) {
+            // Fall through to default
+        }
+        field.setText(String.valueOf(defaultValue));
+        return defaultValue;
+    }
+
     private static class StatusIcon implements Icon {
         private final Color color;
         private static final int SIZE = 12;
@@ -316,6 +552,73 @@ public class SettingsPanel extends JPanel {
         }
     }
 
+    private JPanel createPerformancePanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        String[] columnNames = {"Metric", "Type", "Count", "p50", "p95", "p99", "Max", "Mean / Value"};
+        DefaultTableModel model = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(model);
+        table.getColumnModel().getColumn(0).setPreferredWidth(260);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        Runnable refresh = () -> {
+            model.setRowCount(0);
+            for (MetricsRegistry.Row row : MetricsRegistry.rows()) {
+                if ("histogram".equals(row.type)) {
+                    model.addRow(new Object[]{row.name, row.type, row.count, row.p50, row.p95, row.p99, row.max, String.format("%.1f", row.mean)});
+                } else if ("counter".equals(row.type)) {
+                    model.addRow(new Object[]{row.name, row.type, row.count, "", "", "", "", ""});
+                } else {
+                    model.addRow(new Object[]{row.name, row.type, "", "", "", "", "", String.format("%.0f", row.mean)});
+                }
+            }
+        };
+        refresh.run();
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton refreshButton = new JButton("Refresh");
+        JButton resetButton = new JButton("Reset");
+        JButton exportButton = new JButton("Export JSON");
+        JCheckBox autoRefreshBox = new JCheckBox("Auto-refresh (2s)", true);
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(resetButton);
+        buttonPanel.add(exportButton);
+        buttonPanel.add(autoRefreshBox);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        panel.add(new JLabel("Latencies in ms. Histograms are log-linear, so percentiles are accurate to about 6%."), BorderLayout.NORTH);
+
+        // Only refresh while the tab is actually on screen
+        Timer timer = new Timer(2000, e -> {
+            if (autoRefreshBox.isSelected() && panel.isShowing()) refresh.run();
+        });
+        timer.start();
+
+        refreshButton.addActionListener(e -> refresh.run());
+        resetButton.addActionListener(e -> {
+            MetricsRegistry.reset();
+            refresh.run();
+        });
+        exportButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new java.io.File("burpagent-metrics-" + System.currentTimeMillis() + ".json"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    java.nio.file.Files.writeString(chooser.getSelectedFile().toPath(), MetricsRegistry.toJson());
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(this, "Export failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+
+        return panel;
+    }
+
     private JPanel createSkillsPanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -495,6 +798,9 @@ public class SettingsPanel extends JPanel {
         JComboBox<String> typeCombo = new JComboBox<>(new String[]{"Python", "Bash", "Batch"});
         if (existingTool != null) typeCombo.setSelectedItem(existingTool.scriptType);
         
+        JCheckBox parallelSafeBox = new JCheckBox("Safe to run in parallel with other tool calls");
+        parallelSafeBox.setSelected(existingTool == null || existingTool.parallelSafe);
+        
         JTextArea paramsArea = new JTextArea(existingTool == null ? "{\"type\": \"object\", \"properties\": {\"arg1\": {\"type\": \"string\"}}, \"required\": [\"arg1\"]}" : existingTool.parameters);
         paramsArea.setRows(5);
         paramsArea.setLineWrap(true);
@@ -512,14 +818,16 @@ public class SettingsPanel extends JPanel {
         gbc.gridx = 0; gbc.gridy = 2; gbc.weightx = 0; addLabel(formPanel, "Script Type:", gbc);
         gbc.gridx = 1; gbc.gridy = 2; gbc.weightx = 1.0; formPanel.add(typeCombo, gbc);
         
-        gbc.gridx = 0; gbc.gridy = 3; gbc.weightx = 0; gbc.gridwidth = 2; addLabel(formPanel, "Parameters (JSON Schema):", gbc);
-        gbc.gridx = 0; gbc.gridy = 4; gbc.weightx = 1.0; gbc.weighty = 0.3; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.BOTH;
+        gbc.gridx = 1; gbc.gridy = 3; gbc.weightx = 1.0; formPanel.add(parallelSafeBox, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 4; gbc.weightx = 0; gbc.gridwidth = 2; addLabel(formPanel, "Parameters (JSON Schema):", gbc);
+        gbc.gridx = 0; gbc.gridy = 5; gbc.weightx = 1.0; gbc.weighty = 0.3; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.BOTH;
         formPanel.add(new JScrollPane(paramsArea), gbc);
         
-        gbc.gridx = 0; gbc.gridy = 5; gbc.weightx = 0; gbc.weighty = 0; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 0; gbc.gridy = 6; gbc.weightx = 0; gbc.weighty = 0; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.HORIZONTAL;
         addLabel(formPanel, "Script Content:", gbc);
         
-        gbc.gridx = 0; gbc.gridy = 6; gbc.weightx = 1.0; gbc.weighty = 0.7; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.BOTH;
+        gbc.gridx = 0; gbc.gridy = 7; gbc.weightx = 1.0; gbc.weighty = 0.7; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.BOTH;
         formPanel.add(new JScrollPane(scriptArea), gbc);
         
         // Buttons
@@ -540,6 +848,7 @@ public class SettingsPanel extends JPanel {
             tool.scriptType = (String) typeCombo.getSelectedItem();
             tool.parameters = paramsArea.getText().trim();
             tool.scriptContent = scriptArea.getText();
+            tool.parallelSafe = parallelSafeBox.isSelected();
             
             try {
                 ToolManager.saveTool(tool);
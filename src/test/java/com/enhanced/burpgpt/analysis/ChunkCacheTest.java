@@ -0,0 +1,30 @@
+package com.enhanced.burpgpt.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCacheTest {
+    private static final String SCOPE = ChunkCache.scope("gpt-4o", "system", "{RESPONSE}", "map");
+
+    @Test
+    void keyIgnoresWhitespaceDifferences() {
+        String compact = "function a() { return 1; }";
+        String reindented = "\n  function a()  {\n\treturn 1;\n  }\n";
+        assertEquals(ChunkCache.key(SCOPE, compact), ChunkCache.key(SCOPE, reindented));
+    }
+
+    @Test
+    void keyDependsOnContent() {
+        assertNotEquals(ChunkCache.key(SCOPE, "function a() { return 1; }"), ChunkCache.key(SCOPE, "function a() { return 2; }"));
+        assertNotEquals(ChunkCache.key(SCOPE, "ab"), ChunkCache.key(SCOPE, "a b"));
+    }
+
+    @Test
+    void keyDependsOnScope() {
+        String other = ChunkCache.scope("gpt-4o-mini", "system", "{RESPONSE}", "map");
+        assertNotEquals(ChunkCache.key(SCOPE, "same chunk"), ChunkCache.key(other, "same chunk"));
+        String otherTemplate = ChunkCache.scope("gpt-4o", "system", "{REQUEST} {RESPONSE}", "map");
+        assertNotEquals(SCOPE, otherTemplate);
+    }
+}
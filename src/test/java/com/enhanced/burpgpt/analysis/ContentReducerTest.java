@@ -0,0 +1,113 @@
+package com.enhanced.burpgpt.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentReducerTest {
+    private static final String HTML_HEADERS = "HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=utf-8\r\nX-Trace: keep-me\r\n\r\n";
+
+    private static String repeat(String s, int times) {
+        return s.repeat(times);
+    }
+
+    @Test
+    void smallMessagesAreLeftAlone() {
+        String message = HTML_HEADERS + "<p>hello</p>";
+        ContentReducer.Result result = ContentReducer.reduce(message);
+        assertEquals(message, result.text);
+        assertFalse(result.changed());
+        assertTrue(result.actions.isEmpty());
+    }
+
+    @Test
+    void dataUrisKeepAPrefixAndSayWhatWasRemoved() {
+        String payload = repeat("iVBORw0KGgoAAAANSUhEUg", 200);
+        String message = HTML_HEADERS + "<img src=\"data:image/png;base64," + payload + "\"><p>" + repeat("text ", 500) + "</p>";
+        ContentReducer.Result result = ContentReducer.reduce(message);
+
+        assertTrue(result.changed());
+        assertTrue(result.text.startsWith(HTML_HEADERS), "headers must never change");
+        assertFalse(result.text.contains(payload));
+        assertTrue(result.text.contains("data:image/png;base64," + payload.substring(0, 32) + "...[" + payload.length() + " base64 chars omitted]"));
+        assertEquals(1, result.actions.get("data URIs"));
+    }
+
+    @Test
+    void homogeneousJsonArraysKeepSamplesAndACount() {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 60; i++) {
+            if (i > 0) json.append(",");
+            json.append("{\"id\":").append(i).append(",\"name\":\"user").append(i).append("\",\"role\":\"member\"}");
+        }
+        json.append("]}");
+        String message = "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n" + json;
+        ContentReducer.Result result = ContentReducer.reduce(message);
+
+        assertTrue(result.text.contains("\"user4\""));
+        assertFalse(result.text.contains("\"user5\""));
+        assertTrue(result.text.contains("55 more items of the same shape omitted, 60 in total"));
+        assertEquals(1, result.actions.get("homogeneous JSON arrays truncated"));
+    }
+
+    @Test
+    void mixedJsonArraysAreKept() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 40; i++) {
+            if (i > 0) json.append(",");
+            json.append(i % 2 == 0 ? "{\"id\":" + i + "}" : "{\"other\":" + i + ",\"padding\":\"" + repeat("x", 40) + "\"}");
+        }
+        json.append("]");
+        String message = "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n" + json;
+        ContentReducer.Result result = ContentReducer.reduce(message);
+        assertTrue(result.text.contains("\"other\":39"));
+        assertNull(result.actions.get("homogeneous JSON arrays truncated"));
+    }
+
+    @Test
+    void svgWithScriptIsKept() {
+        String active = "<svg onload=\"alert(1)\">" + repeat("<path d=\"M0 0L10 10\"/>", 100) + "</svg>";
+        String passive = "<svg viewBox=\"0 0 10 10\">" + repeat("<path d=\"M0 0L10 10\"/>", 100) + "</svg>";
+        ContentReducer.Result result = ContentReducer.reduce(HTML_HEADERS + active + passive);
+
+        assertTrue(result.text.contains(active));
+        assertFalse(result.text.contains(passive));
+        assertTrue(result.text.contains("chars of SVG omitted]"));
+        assertEquals(1, result.actions.get("inline SVGs"));
+    }
+
+    @Test
+    void binaryBodiesAreSummarizedWithoutDecoding() {
+        byte[] headers = "HTTP/1.1 200 OK\r\nContent-Type: image/png\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = new byte[10_000];
+        byte[] magic = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+        System.arraycopy(magic, 0, body, 0, magic.length);
+        byte[] comment = "Software: Secret Camera Firmware 1.2".getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(comment, 0, body, 100, comment.length);
+        byte[] message = new byte[headers.length + body.length];
+        System.arraycopy(headers, 0, message, 0, headers.length);
+        System.arraycopy(body, 0, message, headers.length, body.length);
+
+        ContentReducer.Result result = ContentReducer.reduce(MessageView.of(message));
+
+        assertNull(result.original);
+        assertEquals(message.length, result.originalLength);
+        assertTrue(result.text.startsWith("HTTP/1.1 200 OK\r\nContent-Type: image/png\r\n\r\n"));
+        assertTrue(result.text.contains("[binary body omitted: image/png (PNG), 10,000 bytes]"), result.text);
+        assertTrue(result.text.contains("Software: Secret Camera Firmware 1.2"));
+    }
+
+    @Test
+    void similarLinesCollapse() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) body.append("<li class=\"row\">Item number ").append(i).append("</li>\n");
+        ContentReducer.Result result = ContentReducer.reduce(HTML_HEADERS + body);
+
+        assertTrue(result.changed());
+        assertTrue(result.text.contains("Item number 0<"));
+        assertTrue(result.text.contains("Item number 199<"), "the last line of a run is kept");
+        assertFalse(result.text.contains("Item number 100<"));
+    }
+}
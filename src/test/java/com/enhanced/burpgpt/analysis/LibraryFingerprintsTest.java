@@ -0,0 +1,100 @@
+package com.enhanced.burpgpt.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryFingerprintsTest {
+    private static final String JS_HEADERS = "HTTP/1.1 200 OK\r\nContent-Type: application/javascript\r\n\r\n";
+
+    private static MessageView view(String message) {
+        return MessageView.of(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LibraryFingerprints.Library detect(String body) {
+        return LibraryFingerprints.detect(view(JS_HEADERS + body), null);
+    }
+
+    @Test
+    void detectsJqueryWithVersion() {
+        LibraryFingerprints.Library library = detect("/*! jQuery v3.6.0 | (c) OpenJS Foundation and other contributors */\n!function(e,t){}");
+        assertEquals("jQuery", library.name);
+        assertEquals("3.6.0", library.version);
+    }
+
+    @Test
+    void moreSpecificNamesWin() {
+        assertEquals("jQuery UI", detect("/*! jQuery UI - v1.13.2 - 2022-07-14 */").name);
+    }
+
+    @Test
+    void lodash3BannerVersion() {
+        LibraryFingerprints.Library library = detect("/**\n * @license\n * lodash 3.10.1 (Custom Build) <https://lodash.com/>\n */");
+        assertEquals("Lodash", library.name);
+        assertEquals("3.10.1", library.version);
+    }
+
+    @Test
+    void lodash4VersionComesFromTheVersionConstant() {
+        LibraryFingerprints.Library library = detect("/**\n * @license\n * Lodash <https://lodash.com/>\n * Copyright OpenJS Foundation\n */\n"
+            + ";(function() {\n  var undefined;\n  var VERSION = '4.17.21';\n");
+        assertEquals("Lodash", library.name);
+        assertEquals("4.17.21", library.version);
+    }
+
+    @Test
+    void minifiedLodashBannerDoesNotReportTheUnderscoreVersion() {
+        LibraryFingerprints.Library library = detect("/**\n * @license\n * Lodash lodash.com/license | Underscore.js 1.8.3 underscorejs.org/LICENSE\n */\n;(function(){var n;})");
+        assertEquals("Lodash", library.name);
+        assertNull(library.version);
+        assertEquals("Lodash", library.toString());
+    }
+
+    @Test
+    void onlyScriptsAreMatched() {
+        String html = "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\n\r\n<script>/*! jQuery v3.6.0 */</script>";
+        assertNull(LibraryFingerprints.detect(view(html), null));
+    }
+
+    @Test
+    void jsPathCountsWhenTheContentTypeIsMissing() {
+        MessageView response = view("HTTP/1.1 200 OK\r\n\r\n/*! jQuery v3.6.0 */");
+        MessageView request = view("GET /static/jquery.min.js?v=2 HTTP/1.1\r\nHost: example.com\r\n\r\n");
+        assertEquals("jQuery", LibraryFingerprints.detect(response, request).name);
+        MessageView page = view("GET /index.html HTTP/1.1\r\nHost: example.com\r\n\r\n");
+        assertNull(LibraryFingerprints.detect(response, page));
+    }
+
+    @Test
+    void bannerMustOpenTheBody() {
+        assertNull(detect("var app = 1;\n/*! jQuery v3.6.0 */"));
+        assertNull(detect("/*! Acme theme, based on Bootstrap v5.3.0 */\nvar app = 1;"));
+        assertNull(detect("/* Copyright 2023 Google LLC. All rights reserved. */\nvar app = 1;"));
+    }
+
+    @Test
+    void laterLeadingCommentsAndLineCommentsCount() {
+        assertEquals("Bootstrap", detect("\uFEFF/*! For license information see LICENSE.txt */\n/*!\n  * Bootstrap v5.3.0 (https://getbootstrap.com/)\n  */").name);
+        LibraryFingerprints.Library moment = detect("//! moment.js\n//! version : 2.29.4\n//! authors : Tim Wood\n;(function (global, factory) {");
+        assertEquals("Moment.js", moment.name);
+        assertEquals("2.29.4", moment.version);
+        assertEquals("1.8.2", detect("/*\n AngularJS v1.8.2\n (c) 2010-2020 Google LLC. http://angularjs.org\n License: MIT\n*/\n(function(z){").version);
+    }
+
+    @Test
+    void bodyLargerThanTheLibraryIsABundle() {
+        assertEquals("jQuery", detect("/*! jQuery v3.6.0 */" + "x".repeat(90_000)).name);
+        assertNull(detect("/*! jQuery v3.6.0 */" + "x".repeat(2_000_000)));
+    }
+
+    @Test
+    void omittedBodyKeepsHeaders() {
+        MessageView response = view(JS_HEADERS + "/*! jQuery v3.6.0 */" + "x".repeat(5000));
+        String text = LibraryFingerprints.omitBody(response, LibraryFingerprints.detect(response, null));
+        assertTrue(text.startsWith(JS_HEADERS));
+        assertTrue(text.contains("jQuery 3.6.0"));
+        assertFalse(text.contains("xxxx"));
+    }
+}
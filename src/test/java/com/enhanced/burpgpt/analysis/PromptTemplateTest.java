@@ -0,0 +1,78 @@
+package com.enhanced.burpgpt.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import static com.enhanced.burpgpt.analysis.PromptTemplate.Placeholder.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptTemplateTest {
+
+    @Test
+    void rendersEveryPlaceholder() {
+        PromptTemplate template = PromptTemplate.compile("URL: {URL}\nReq:\n{REQUEST}\nResp:\n{RESPONSE}\n{CHUNK_INFO}");
+        PromptTemplate.Values values = new PromptTemplate.Values()
+            .set(URL, "https://example.com/").set(REQUEST, "GET /").set(RESPONSE, "200 OK").set(CHUNK_INFO, "Part 1/2");
+
+        String rendered = template.render(values);
+        assertEquals("URL: https://example.com/\nReq:\nGET /\nResp:\n200 OK\nPart 1/2", rendered);
+        assertEquals(rendered.length(), template.length(values));
+        assertEquals(rendered, template.appendTo(new StringBuilder(), values).toString());
+    }
+
+    @Test
+    void unknownNamesAndBracesStayLiteral() {
+        PromptTemplate template = PromptTemplate.compile("{FOO} {{REQUEST}} {REQUEST");
+        String rendered = template.render(new PromptTemplate.Values().set(REQUEST, "r"));
+        assertEquals("{FOO} {r} {REQUEST", rendered);
+    }
+
+    @Test
+    void unsetValuesRenderEmpty() {
+        assertEquals("a--b", PromptTemplate.compile("a-{CHUNK_INFO}-b").render(new PromptTemplate.Values()));
+    }
+
+    @Test
+    void repeatedPlaceholdersAreAllFilled() {
+        PromptTemplate template = PromptTemplate.compile("{URL} and {URL}");
+        assertEquals("x and x", template.render(new PromptTemplate.Values().set(URL, "x")));
+    }
+
+    @Test
+    void valuesAreNotReparsed() {
+        PromptTemplate template = PromptTemplate.compile("{REQUEST}|{RESPONSE}");
+        PromptTemplate.Values values = new PromptTemplate.Values().set(REQUEST, "{RESPONSE}").set(RESPONSE, "body");
+        assertEquals("{RESPONSE}|body", template.render(values));
+    }
+
+    @Test
+    void usesReportsOnlyPresentPlaceholders() {
+        PromptTemplate template = PromptTemplate.compile("{URL} {HEADERS}");
+        assertTrue(template.uses(URL));
+        assertTrue(template.uses(HEADERS));
+        assertFalse(template.uses(RESPONSE));
+        assertFalse(PromptTemplate.compile(null).uses(REQUEST));
+    }
+
+    @Test
+    void splitAtTheFirstResponse() {
+        PromptTemplate template = PromptTemplate.compile("head {URL} {RESPONSE} tail {CHUNK_INFO}");
+        PromptTemplate[] parts = template.splitAt(RESPONSE);
+        PromptTemplate.Values values = new PromptTemplate.Values().set(URL, "u").set(CHUNK_INFO, "c").set(RESPONSE, "r");
+
+        assertEquals("head u ", parts[0].render(values));
+        assertEquals(" tail c", parts[1].render(values));
+        assertFalse(parts[0].uses(RESPONSE));
+
+        PromptTemplate[] none = PromptTemplate.compile("no response here").splitAt(RESPONSE);
+        assertEquals("no response here", none[0].render(values));
+        assertEquals("", none[1].render(values));
+    }
+
+    @Test
+    void copiedValuesAreIndependent() {
+        PromptTemplate.Values values = new PromptTemplate.Values().set(CHUNK_INFO, "a");
+        PromptTemplate.Values copy = values.copy().set(CHUNK_INFO, "b");
+        assertEquals("a", values.get(CHUNK_INFO));
+        assertEquals("b", copy.get(CHUNK_INFO));
+    }
+}
@@ -0,0 +1,90 @@
+package com.enhanced.burpgpt.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StructuredChunkerTest {
+    private static final Tokenizer TOKENIZER = Tokenizer.forEncoding(Tokenizer.CL100K);
+
+    private static String jsonMessage(String headers, int items) {
+        StringBuilder json = new StringBuilder("{\"users\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) json.append(",");
+            json.append("{\"id\":").append(i).append(",\"email\":\"user").append(i).append("@example.com\",\"bio\":\"")
+                .append("lorem ipsum dolor sit amet ".repeat(3)).append("\"}");
+        }
+        json.append("],\"total\":").append(items).append("}");
+        return headers + json;
+    }
+
+    private static String join(List<StructuredChunker.Chunk> chunks) {
+        StringBuilder sb = new StringBuilder();
+        for (StructuredChunker.Chunk chunk : chunks) sb.append(chunk.text);
+        return sb.toString();
+    }
+
+    @Test
+    void structuredChunksCoverTheMessageWithinBudget() {
+        String message = jsonMessage("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n", 300);
+        List<StructuredChunker.Chunk> chunks = StructuredChunker.split(message, TOKENIZER, 1000, 100, true);
+
+        assertTrue(chunks.size() > 1);
+        assertEquals(message, join(chunks), "structured chunks neither overlap nor drop text");
+        for (StructuredChunker.Chunk chunk : chunks) {
+            assertTrue(TOKENIZER.count(chunk.text) <= 1000, "chunk over budget: " + TOKENIZER.count(chunk.text));
+            assertNotNull(chunk.outline);
+        }
+    }
+
+    @Test
+    void jsonCutsFallBetweenElements() {
+        String message = jsonMessage("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n", 300);
+        List<StructuredChunker.Chunk> chunks = StructuredChunker.split(message, TOKENIZER, 1000, 100, true);
+        for (int i = 1; i < chunks.size(); i++) {
+            String text = chunks.get(i).text;
+            assertTrue(text.startsWith(",{") || text.startsWith("{") || text.startsWith("],"), "cut inside an element: " + text.substring(0, 20));
+        }
+    }
+
+    @Test
+    void sameBodySplitsTheSameWayBehindDifferentHeaders() {
+        String a = jsonMessage("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n", 300);
+        String b = jsonMessage("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nServer: other-host\r\nSet-Cookie: s=1\r\n\r\n", 300);
+        List<StructuredChunker.Chunk> first = StructuredChunker.split(a, TOKENIZER, 1000, 100, true);
+        List<StructuredChunker.Chunk> second = StructuredChunker.split(b, TOKENIZER, 1000, 100, true);
+
+        assertEquals(first.size(), second.size());
+        for (int i = 1; i < first.size(); i++) {
+            assertEquals(first.get(i).text, second.get(i).text);
+        }
+    }
+
+    @Test
+    void plainWindowsOverlapAndHaveNoOutline() {
+        String message = jsonMessage("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n", 300);
+        List<StructuredChunker.Chunk> chunks = StructuredChunker.split(message, TOKENIZER, 1000, 100, false);
+
+        assertTrue(chunks.size() > 1);
+        assertTrue(join(chunks).length() > message.length());
+        for (StructuredChunker.Chunk chunk : chunks) assertNull(chunk.outline);
+    }
+
+    @Test
+    void detectsTheFormatFromTheContentType() {
+        String headers = "HTTP/1.1 200 OK\r\nContent-Type: application/javascript\r\n\r\n";
+        String message = headers + "function a() {}";
+        assertEquals(StructuredChunker.Format.JAVASCRIPT, StructuredChunker.detect(headers, message, headers.length()));
+
+        headers = "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\n\r\n";
+        assertEquals(StructuredChunker.Format.HTML, StructuredChunker.detect(headers, headers + "<html></html>", headers.length()));
+    }
+
+    @Test
+    void emptyMessageHasNoChunks() {
+        assertTrue(StructuredChunker.split("", TOKENIZER, 1000, 100, true).isEmpty());
+        assertTrue(StructuredChunker.split(null, TOKENIZER, 1000, 100, true).isEmpty());
+    }
+}
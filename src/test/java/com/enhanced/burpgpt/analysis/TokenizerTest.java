@@ -0,0 +1,42 @@
+package com.enhanced.burpgpt.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenizerTest {
+    private static final Tokenizer TOKENIZER = Tokenizer.forEncoding(Tokenizer.CL100K);
+
+    @Test
+    void countsMatchCl100k() {
+        assertTrue(TOKENIZER.isExact(), "cl100k ranks are bundled on the classpath");
+        assertEquals(0, TOKENIZER.count(""));
+        assertEquals(2, TOKENIZER.count("hello world"));
+        assertEquals(3, TOKENIZER.count("1234567")); // Digits split into groups of up to three
+    }
+
+    @Test
+    void truncateAndKeepTailStayWithinBudget() {
+        String text = "GET /api/users?id=1 HTTP/1.1\nHost: example.com\n".repeat(50);
+        String head = TOKENIZER.truncate(text, 100);
+        String tail = TOKENIZER.keepTail(text, 100);
+
+        assertTrue(text.startsWith(head));
+        assertTrue(text.endsWith(tail));
+        assertTrue(TOKENIZER.count(head) <= 100);
+        assertTrue(TOKENIZER.count(tail) <= 100);
+        assertSame(text, TOKENIZER.truncate(text, 1_000_000));
+    }
+
+    @Test
+    void splitWindowsCoverTheText() {
+        String text = "word ".repeat(2000);
+        List<String> windows = TOKENIZER.split(text, 300, 50);
+        assertTrue(windows.size() > 1);
+        assertTrue(text.startsWith(windows.get(0)));
+        assertTrue(text.endsWith(windows.get(windows.size() - 1)));
+        for (String window : windows) assertTrue(TOKENIZER.count(window) <= 300);
+    }
+}
@@ -0,0 +1,70 @@
+package com.enhanced.burpgpt.api;
+
+import com.enhanced.burpgpt.analysis.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationHistoryTest {
+    private static final Tokenizer TOKENIZER = Tokenizer.forEncoding(Tokenizer.CL100K);
+
+    private static Map<String, Object> message(String role, String content) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        return message;
+    }
+
+    private static Map<String, Object> toolCall(String arguments) {
+        ChatCompletion completion = new ChatCompletion();
+        completion.getToolCalls().add(new ChatCompletion.ToolCall("call_1", "run_cmd", arguments));
+        return completion.toMessage();
+    }
+
+    @Test
+    void toolCallArgumentsAreCounted() {
+        String arguments = "{\"command\":\"" + "curl -s https://example.com/api ".repeat(50) + "\"}";
+        int plain = ConversationHistory.countTokens(TOKENIZER, message("assistant", null));
+        int withCall = ConversationHistory.countTokens(TOKENIZER, toolCall(arguments));
+        assertTrue(withCall >= plain + TOKENIZER.count(arguments), plain + " / " + withCall);
+    }
+
+    @Test
+    void compactDigestsOldToolOutputsFirst() {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        messages.add(message("system", "You are a tester."));
+        messages.add(message("user", "Analyze the target."));
+        for (int i = 0; i < 6; i++) {
+            messages.add(message("assistant", "Step " + i));
+            messages.add(message("tool", "output line of step " + i + "\n".repeat(1) + "data ".repeat(800)));
+        }
+        ConversationHistory history = new ConversationHistory(TOKENIZER, 2, null);
+        int saved = history.compact(messages, 3000);
+
+        assertTrue(saved > 0);
+        assertEquals("Analyze the target.", messages.get(1).get("content"));
+        assertTrue(((String) messages.get(3).get("content")).contains("earlier tool output digested"));
+        assertFalse(((String) messages.get(messages.size() - 1).get("content")).contains("digested"));
+    }
+
+    @Test
+    void collapseKeepsTaskAndRecentTurns() {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        messages.add(message("system", "You are a tester."));
+        messages.add(message("user", "Analyze the target."));
+        for (int i = 0; i < 20; i++) {
+            messages.add(message("assistant", "Reasoning about step " + i + " " + "detail ".repeat(200)));
+        }
+        ConversationHistory history = new ConversationHistory(TOKENIZER, 2, null);
+        history.compact(messages, 2000);
+
+        assertEquals(5, messages.size());
+        assertTrue(((String) messages.get(2).get("content")).startsWith("[Summary of 18 earlier messages"));
+        assertTrue(((String) messages.get(4).get("content")).startsWith("Reasoning about step 19"));
+    }
+}
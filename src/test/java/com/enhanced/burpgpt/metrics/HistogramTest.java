@@ -0,0 +1,50 @@
+package com.enhanced.burpgpt.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMin());
+    }
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10_000; i++) histogram.record(i);
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        for (double p : new double[] { 50, 90, 99 }) {
+            double expected = p * 100;
+            assertEquals(expected, histogram.percentile(p), expected * 0.07, "p" + p);
+        }
+        assertEquals(10_000, histogram.percentile(100), 10_000 * 0.07);
+        assertTrue(histogram.percentile(100) <= histogram.getMax());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        for (long v = 0; v < 8; v++) {
+            assertEquals(v, Histogram.valueOf(Histogram.bucketOf(v)));
+        }
+        assertEquals(0, Histogram.bucketOf(0));
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getMax());
+        assertEquals(1, histogram.getCount());
+    }
+}
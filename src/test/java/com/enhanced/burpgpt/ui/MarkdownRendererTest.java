@@ -0,0 +1,77 @@
+package com.enhanced.burpgpt.ui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownRendererTest {
+    private static final String SAMPLE = "# Findings\n\n"
+        + "Found **2** issues in `login.php`, see [OWASP](https://owasp.org/).\n\n"
+        + "1. Reflected XSS\n"
+        + "   - parameter `q`\n"
+        + "   - *no* encoding\n"
+        + "2. Missing HSTS\n\n"
+        + "| Issue | Severity |\n"
+        + "|:------|---------:|\n"
+        + "| XSS | High |\n\n"
+        + "> Verify manually.\n\n"
+        + "```html\n<script>alert(1)</script>\n```\n"
+        + "---\n"
+        + "Done.\n";
+
+    @Test
+    void rendersBlocksAndInlineSpans() {
+        String html = MarkdownRenderer.render(SAMPLE);
+        assertTrue(html.contains("<h1>Findings</h1>"), html);
+        assertTrue(html.contains("<b>2</b>"), html);
+        assertTrue(html.contains("<code"), html);
+        assertTrue(html.contains("href='https://owasp.org/'"), html);
+        assertTrue(html.contains("<ol>") && html.contains("<ul>"), html);
+        assertTrue(html.contains("<i>no</i>"), html);
+        assertTrue(html.contains("<table"), html);
+        assertTrue(html.contains("<hr"), html);
+    }
+
+    @Test
+    void codeBlocksAreEscaped() {
+        String html = MarkdownRenderer.render("```\n<script>alert(1)</script>\n```\n");
+        assertFalse(html.contains("<script>"));
+        assertTrue(html.contains("&lt;script&gt;alert(1)&lt;/script&gt;"), html);
+    }
+
+    @Test
+    void plainTextIsEscaped() {
+        String html = MarkdownRenderer.render("a <b>tag</b> & more\n");
+        assertTrue(html.contains("&lt;b&gt;tag&lt;/b&gt; &amp; more"), html);
+    }
+
+    @Test
+    void streamingInPiecesMatchesOneShot() {
+        String expected = MarkdownRenderer.render(SAMPLE);
+        for (int size : new int[] { 1, 3, 7, 64 }) {
+            MarkdownRenderer renderer = new MarkdownRenderer();
+            for (int i = 0; i < SAMPLE.length(); i += size) {
+                renderer.append(SAMPLE.substring(i, Math.min(SAMPLE.length(), i + size)));
+                renderer.html(); // Provisional renders must not disturb the final one
+            }
+            assertEquals(expected, renderer.html(), "piece size " + size);
+        }
+    }
+
+    @Test
+    void linksEndWithinTheLinkLimit() {
+        String far = "[x](" + "a".repeat(600) + ")";
+        assertFalse(MarkdownRenderer.render(far + "\n").contains("<a "));
+        // A line of unclosed brackets: each scan is bounded, so this stays fast
+        String html = MarkdownRenderer.render("[".repeat(200_000) + "]\n");
+        assertFalse(html.contains("<a "));
+    }
+
+    @Test
+    void unfinishedLastLineIsRendered() {
+        MarkdownRenderer renderer = new MarkdownRenderer().append("partial **bold");
+        assertTrue(renderer.html().contains("partial"));
+        renderer.append("** end\n");
+        assertTrue(renderer.html().contains("<b>bold</b>"), renderer.html());
+    }
+}